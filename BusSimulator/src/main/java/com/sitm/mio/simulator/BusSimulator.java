@@ -8,6 +8,12 @@ import java.sql.SQLException;
  * Supports two modes:
  * - DATABASE: Insert datagrams into database (historic mode)
  * - UDP: Send datagrams via UDP to DataCenter (real-time mode)
+ * - FLEET: Synthetic buses driven along the real routes, sent via UDP
+ * 
+ * UDP mode can be paced (replay.pacing):
+ * - INTERVAL: N datagrams every simulation.interval.ms
+ * - TIMED: original event_ts spacing with a speed-up factor
+ * - RATE: fixed datagrams per second
  * 
  * NOT intended for production deployment - development/testing only.
  */
@@ -16,21 +22,58 @@ public class BusSimulator {
     private final Object sender; // DatagramReplayer or UDPDatagramSender
     private final String mode;
     private final long intervalMs;
+    private final ReplayPacer pacer; // null in INTERVAL pacing
+    private final FleetGenerator fleet; // only in FLEET mode
     private volatile boolean running = false;
     
     public BusSimulator() throws Exception {
         this.mode = ConfigLoader.getSimulationMode();
         this.intervalMs = ConfigLoader.getIntervalMs();
         
-        if ("UDP".equals(mode)) {
+        if ("UDP".equals(mode) || "FLEET".equals(mode)) {
             String host = ConfigLoader.getDataCenterHost();
             int port = ConfigLoader.getDataCenterPort();
             this.sender = new UDPDatagramSender(host, port);
-            System.out.println("[BusSimulator] UDP MODE - Sending to " + host + ":" + port);
+            System.out.println("[BusSimulator] " + mode + " MODE - Sending to " + host + ":" + port);
         } else {
             this.sender = new DatagramReplayer();
             System.out.println("[BusSimulator] DATABASE MODE - Inserting to database");
         }
+        
+        this.fleet = "FLEET".equals(mode) ? createFleet((UDPDatagramSender) sender) : null;
+        
+        String pacing = ConfigLoader.getReplayPacing();
+        if ("INTERVAL".equals(pacing) || fleet != null) {
+            this.pacer = null;
+        } else if (!"UDP".equals(mode)) {
+            System.out.println("[BusSimulator] Pacing " + pacing + " only applies to UDP mode - using INTERVAL");
+            this.pacer = null;
+        } else {
+            this.pacer = new ReplayPacer(pacing,
+                ConfigLoader.getReplaySpeedUp(),
+                ConfigLoader.getReplayTargetRate(),
+                ConfigLoader.getReplayMaxGapMs(),
+                ConfigLoader.getReplayReportIntervalMs());
+            if (pacer.isTimed()) {
+                ((UDPDatagramSender) sender).useEventTimeOrder();
+            }
+        }
+    }
+    
+    private static FleetGenerator createFleet(UDPDatagramSender udpSender) throws SQLException {
+        long seed = ConfigLoader.getFleetSeed();
+        RouteNetwork network = RouteNetwork.load(udpSender.getConnection(), new java.util.Random(seed),
+            ConfigLoader.getSpeedMin(), ConfigLoader.getSpeedMax());
+        udpSender.getConnection().commit();
+        
+        return new FleetGenerator(network, udpSender,
+            ConfigLoader.getFleetBusCount(),
+            ConfigLoader.getFleetFirstBusId(),
+            seed,
+            ConfigLoader.getFleetTickMs(),
+            ConfigLoader.getFleetReportIntervalMs(),
+            ConfigLoader.getFleetDwellMinMs(),
+            ConfigLoader.getFleetDwellMaxMs());
     }
     
     /**
@@ -46,12 +89,26 @@ public class BusSimulator {
         System.out.println("=".repeat(60));
         System.out.println("Bus Simulator Started (" + mode + " mode)");
         System.out.println("=".repeat(60));
-        System.out.println("Interval: " + intervalMs + " ms");
+        if (fleet != null) {
+            System.out.println("Fleet: " + ConfigLoader.getFleetBusCount() + " synthetic buses");
+        } else if (pacer == null) {
+            System.out.println("Interval: " + intervalMs + " ms");
+        } else if (pacer.isTimed()) {
+            System.out.println("Pacing: TIMED (speed-up x" + pacer.getSpeedUp() + ")");
+        } else {
+            System.out.println("Pacing: RATE (" + pacer.getTargetRate() + " datagrams/s)");
+        }
         System.out.println("Database: " + ConfigLoader.getDatabaseUrl());
         System.out.println("=".repeat(60));
         System.out.println();
         
-        Thread simulationThread = new Thread(this::simulationLoop, "SimulationThread");
+        if (fleet != null) {
+            fleet.start();
+            return;
+        }
+        
+        Thread simulationThread = new Thread(
+            pacer == null ? this::simulationLoop : this::pacedLoop, "SimulationThread");
         simulationThread.setDaemon(false);
         simulationThread.start();
     }
@@ -105,11 +162,47 @@ public class BusSimulator {
         System.out.println("\n[BusSimulator] Simulation stopped");
     }
     
+    /**
+     * Paced replay loop (TIMED / RATE) - sends continuously, page by page,
+     * letting the pacer decide when each datagram goes out.
+     */
+    private void pacedLoop() {
+        UDPDatagramSender udpSender = (UDPDatagramSender) sender;
+        int pageSize = ConfigLoader.getReplayPageSize();
+        
+        while (running) {
+            try {
+                int count = udpSender.sendNextPage(pageSize, pacer);
+                if (count == 0) {
+                    System.out.println("[BusSimulator] End of history after " +
+                        pacer.getTotalSent() + " datagrams, restarting...");
+                    udpSender.reset();
+                    pacer.reset();
+                }
+                
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (SQLException e) {
+                System.err.println("[BusSimulator] Database error: " + e.getMessage());
+                e.printStackTrace();
+            } catch (Exception e) {
+                System.err.println("[BusSimulator] Unexpected error: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        
+        System.out.println("\n[BusSimulator] Simulation stopped");
+    }
+    
     /**
      * Stop the simulation.
      */
     public void stop() {
         running = false;
+        if (fleet != null) {
+            fleet.stop();
+        }
         if (sender instanceof UDPDatagramSender) {
             ((UDPDatagramSender) sender).close();
         } else {
@@ -119,4 +119,72 @@ public class ConfigLoader {
     public static int getDataCenterPort() {
         return Integer.parseInt(properties.getProperty("datacenter.port", "5000"));
     }
+    
+    public static String getReplayPacing() {
+        return properties.getProperty("replay.pacing", "INTERVAL").toUpperCase();
+    }
+    
+    public static double getReplaySpeedUp() {
+        return Double.parseDouble(properties.getProperty("replay.speedup", "1"));
+    }
+    
+    public static double getReplayTargetRate() {
+        return Double.parseDouble(properties.getProperty("replay.target.rate", "1000"));
+    }
+    
+    public static long getReplayMaxGapMs() {
+        return Long.parseLong(properties.getProperty("replay.max.gap.ms", "60000"));
+    }
+    
+    public static int getReplayPageSize() {
+        return Integer.parseInt(properties.getProperty("replay.page.size", "5000"));
+    }
+    
+    public static long getReplayReportIntervalMs() {
+        return Long.parseLong(properties.getProperty("replay.report.interval.ms", "5000"));
+    }
+    
+    public static int getFleetBusCount() {
+        return Integer.parseInt(properties.getProperty("fleet.bus.count", "1000"));
+    }
+    
+    public static long getFleetFirstBusId() {
+        return Long.parseLong(properties.getProperty("fleet.bus.id.start", "900000"));
+    }
+    
+    public static long getFleetSeed() {
+        return Long.parseLong(properties.getProperty("fleet.seed", "42"));
+    }
+    
+    public static long getFleetTickMs() {
+        return Long.parseLong(properties.getProperty("fleet.tick.ms", "1000"));
+    }
+    
+    public static long getFleetReportIntervalMs() {
+        return Long.parseLong(properties.getProperty("fleet.report.interval.ms", "30000"));
+    }
+    
+    public static long getFleetDwellMinMs() {
+        return Long.parseLong(properties.getProperty("fleet.dwell.min.ms", "10000"));
+    }
+    
+    public static long getFleetDwellMaxMs() {
+        return Long.parseLong(properties.getProperty("fleet.dwell.max.ms", "40000"));
+    }
+    
+    public static int getFetchSize() {
+        return Integer.parseInt(properties.getProperty("replay.fetch.size", "1000"));
+    }
+    
+    public static int getInsertBatchSize() {
+        return Integer.parseInt(properties.getProperty("replay.insert.batch.size", "500"));
+    }
+    
+    public static String getDatagramFormat() {
+        return properties.getProperty("datagram.format", "CSV").toUpperCase();
+    }
+    
+    public static int getBinaryRecordsPerPacket() {
+        return Integer.parseInt(properties.getProperty("datagram.binary.records.per.packet", "24"));
+    }
 }
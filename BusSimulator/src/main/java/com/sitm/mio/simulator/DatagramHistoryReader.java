@@ -0,0 +1,162 @@
+package com.sitm.mio.simulator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Pages through mio.datagrams_history in raw_id (insertion) order, or in
+ * event time order for replays that follow the original timing.
+ *
+ * Uses keyset pagination (raw_id, or (event_ts, datagram_id), greater than
+ * the last seen) instead of LIMIT/OFFSET, so every page is an index range
+ * scan and costs the same at any depth of the history. The separate
+ * event_ts bound lets PostgreSQL skip the partitions already read; rows
+ * without event_ts have no place in event time and are skipped.
+ *
+ * Event time order needs the (event_ts, datagram_id) index that the
+ * DataCenter's HistoryPartitionManager creates; without it every page
+ * would scan and sort the whole table, so a reader created while the
+ * index is missing falls back to raw_id order.
+ *
+ * Rows are streamed with a fetch size, which the PostgreSQL driver only
+ * honours outside auto-commit, so the connection must have auto-commit
+ * disabled; callers commit after each page.
+ */
+public class DatagramHistoryReader {
+
+    private static final String SELECT_PAGE =
+        "SELECT raw_id, event_date_txt, bus_id, line_id, gps_x, gps_y, " +
+        "       field7, field8, field9, datagram_id, event_ts, field12 " +
+        "FROM mio.datagrams_history " +
+        "WHERE raw_id > ? " +
+        "  AND bus_id > 0 AND gps_x > 0 AND gps_y < 0 " + // Valid data only
+        "ORDER BY raw_id " +
+        "LIMIT ?";
+
+    private static final String SELECT_PAGE_BY_EVENT_TS =
+        "SELECT raw_id, event_date_txt, bus_id, line_id, gps_x, gps_y, " +
+        "       field7, field8, field9, datagram_id, event_ts, field12 " +
+        "FROM mio.datagrams_history " +
+        "WHERE event_ts >= ? AND (event_ts, datagram_id) > (?, ?) " +
+        "  AND bus_id > 0 AND gps_x > 0 AND gps_y < 0 " + // Valid data only
+        "ORDER BY event_ts, datagram_id " +
+        "LIMIT ?";
+
+    private static final String EVENT_TS_INDEX = "idx_datagrams_history_event_ts";
+    private static final String SELECT_INDEX_VALID =
+        "SELECT i.indisvalid FROM pg_index i " +
+        "JOIN pg_class c ON c.oid = i.indexrelid " +
+        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "WHERE n.nspname = 'mio' AND c.relname = ?";
+
+    /**
+     * Callback for each row of a page. The ResultSet is positioned on the row.
+     */
+    public interface RowHandler {
+        void onRow(ResultSet rs) throws Exception;
+    }
+
+    private final Connection connection;
+    private final int fetchSize;
+    private final boolean eventTimeOrder;
+    private long lastRawId = 0L;
+    private Timestamp lastEventTs = new Timestamp(0L);
+    private long lastDatagramId = Long.MIN_VALUE;
+
+    public DatagramHistoryReader(Connection connection, int fetchSize) throws SQLException {
+        this(connection, fetchSize, false);
+    }
+
+    /**
+     * @param eventTimeOrder Read in (event_ts, datagram_id) order instead of
+     *        raw_id order, if the event_ts index exists
+     */
+    public DatagramHistoryReader(Connection connection, int fetchSize, boolean eventTimeOrder) throws SQLException {
+        if (connection.getAutoCommit()) {
+            throw new IllegalArgumentException("Streaming reads need a connection with auto-commit disabled");
+        }
+        this.connection = connection;
+        this.fetchSize = fetchSize;
+        this.eventTimeOrder = eventTimeOrder && hasValidIndex(connection, EVENT_TS_INDEX);
+        if (eventTimeOrder && !this.eventTimeOrder) {
+            System.out.println("[DatagramHistoryReader] Index " + EVENT_TS_INDEX +
+                " not found - reading in raw_id order");
+        }
+    }
+
+    /**
+     * Whether the index exists and is usable (a failed concurrent build leaves it invalid).
+     */
+    private static boolean hasValidIndex(Connection connection, String indexName) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_INDEX_VALID)) {
+            ps.setString(1, indexName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        } finally {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Stream the next page of rows to the handler.
+     *
+     * @param pageSize Maximum rows in the page
+     * @param handler Called once per row
+     * @return Number of rows read (0 at the end of the history)
+     */
+    public int readNextPage(int pageSize, RowHandler handler) throws Exception {
+        int count = 0;
+
+        try (PreparedStatement ps = connection.prepareStatement(
+                eventTimeOrder ? SELECT_PAGE_BY_EVENT_TS : SELECT_PAGE)) {
+            ps.setFetchSize(Math.min(fetchSize, pageSize));
+            if (eventTimeOrder) {
+                ps.setTimestamp(1, lastEventTs);
+                ps.setTimestamp(2, lastEventTs);
+                ps.setLong(3, lastDatagramId);
+                ps.setInt(4, pageSize);
+            } else {
+                ps.setLong(1, lastRawId);
+                ps.setInt(2, pageSize);
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lastRawId = rs.getLong("raw_id");
+                    if (eventTimeOrder) {
+                        lastEventTs = rs.getTimestamp("event_ts");
+                        lastDatagramId = rs.getLong("datagram_id");
+                    }
+                    handler.onRow(rs);
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Restart from the beginning of the history.
+     */
+    public void reset() {
+        lastRawId = 0L;
+        lastEventTs = new Timestamp(0L);
+        lastDatagramId = Long.MIN_VALUE;
+    }
+
+    /**
+     * Whether pages come in event time order (requested and the index exists).
+     */
+    public boolean isEventTimeOrder() {
+        return eventTimeOrder;
+    }
+
+    public long getLastRawId() {
+        return lastRawId;
+    }
+}
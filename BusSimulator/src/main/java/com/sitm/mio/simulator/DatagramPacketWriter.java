@@ -0,0 +1,136 @@
+package com.sitm.mio.simulator;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes bus datagrams and sends them to DataCenter over UDP.
+ *
+ * CSV format: one record per packet,
+ *   datagram_id,bus_id,line_id,gps_x,gps_y,timestamp
+ *
+ * BINARY format: several records per packet (big-endian),
+ *   magic u16 0x4D49 ("MI"), version u8 1, count u8,
+ *   then count x six int64 fields in the CSV order.
+ * The layout must match DataCenter's BinaryDatagramParser.
+ */
+public class DatagramPacketWriter {
+
+    public static final String FORMAT_CSV = "CSV";
+    public static final String FORMAT_BINARY = "BINARY";
+
+    private static final short MAGIC = 0x4D49;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4;
+    private static final int RECORD_SIZE = 6 * Long.BYTES;
+    private static final int MAX_RECORDS_PER_PACKET = 255;
+
+    private final DatagramSocket socket;
+    private final InetAddress address;
+    private final int port;
+    private final boolean binary;
+    private final int recordsPerPacket;
+
+    private final ByteBuffer buffer;
+    private final DatagramPacket packet;
+    private final StringBuilder csv = new StringBuilder(96);
+    private int pendingRecords = 0;
+
+    private long packetsSent = 0;
+    private long recordsSent = 0;
+    private long bytesSent = 0;
+
+    /**
+     * @param format FORMAT_CSV or FORMAT_BINARY
+     * @param recordsPerPacket Records packed per binary packet (ignored for CSV)
+     */
+    public DatagramPacketWriter(DatagramSocket socket, InetAddress address, int port,
+                                String format, int recordsPerPacket) {
+        this.socket = socket;
+        this.address = address;
+        this.port = port;
+        this.binary = FORMAT_BINARY.equalsIgnoreCase(format);
+        this.recordsPerPacket = Math.max(1, Math.min(MAX_RECORDS_PER_PACKET, recordsPerPacket));
+
+        int capacity = binary ? HEADER_SIZE + this.recordsPerPacket * RECORD_SIZE : 128;
+        this.buffer = ByteBuffer.allocate(capacity);
+        this.packet = new DatagramPacket(buffer.array(), 0, address, port);
+    }
+
+    /**
+     * Queue one datagram. CSV records are sent immediately; binary records
+     * are sent when the packet is full or on flush().
+     */
+    public void write(long datagramId, long busId, long lineId,
+                      long gpsX, long gpsY, long timestamp) throws IOException {
+        if (binary) {
+            if (pendingRecords == 0) {
+                buffer.clear();
+                buffer.position(HEADER_SIZE);
+            }
+            buffer.putLong(datagramId)
+                  .putLong(busId)
+                  .putLong(lineId)
+                  .putLong(gpsX)
+                  .putLong(gpsY)
+                  .putLong(timestamp);
+            pendingRecords++;
+            if (pendingRecords == recordsPerPacket) {
+                flush();
+            }
+        } else {
+            csv.setLength(0);
+            csv.append(datagramId).append(',')
+               .append(busId).append(',')
+               .append(lineId).append(',')
+               .append(gpsX).append(',')
+               .append(gpsY).append(',')
+               .append(timestamp);
+            byte[] bytes = csv.toString().getBytes(StandardCharsets.US_ASCII);
+            send(bytes, bytes.length, 1);
+        }
+    }
+
+    /**
+     * Send any partially filled binary packet.
+     */
+    public void flush() throws IOException {
+        if (!binary || pendingRecords == 0) {
+            return;
+        }
+        buffer.putShort(0, MAGIC);
+        buffer.put(2, VERSION);
+        buffer.put(3, (byte) pendingRecords);
+        int records = pendingRecords;
+        pendingRecords = 0;
+        send(buffer.array(), buffer.position(), records);
+    }
+
+    private void send(byte[] data, int length, int records) throws IOException {
+        packet.setData(data, 0, length);
+        socket.send(packet);
+        packetsSent++;
+        recordsSent += records;
+        bytesSent += length;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public long getRecordsSent() {
+        return recordsSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+}
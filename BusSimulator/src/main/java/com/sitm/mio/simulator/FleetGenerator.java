@@ -0,0 +1,214 @@
+package com.sitm.mio.simulator;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic fleet that drives virtual buses along the real routes of
+ * RouteNetwork and reports their positions through UDPDatagramSender.
+ *
+ * All bus state lives in parallel primitive arrays indexed by bus slot,
+ * and a single scheduler thread advances the whole fleet every tick:
+ * - on an arc, a bus moves at the arc's free-flow speed times its own
+ *   speed factor;
+ * - on reaching a stop it dwells for a random time, then takes the next arc;
+ * - at the end of a route it turns onto the opposite orientation.
+ * Each bus reports every reportIntervalMs, staggered so reports are spread
+ * evenly over time.
+ *
+ * Runs are reproducible: placement, speeds and dwell times come from one
+ * seeded Random used only by the tick thread.
+ */
+public class FleetGenerator {
+
+    private final RouteNetwork network;
+    private final UDPDatagramSender sender;
+    private final Random random;
+    private final int busCount;
+    private final long tickMs;
+    private final long reportIntervalMs;
+    private final long dwellMinMs;
+    private final long dwellMaxMs;
+
+    // Bus state, one slot per bus
+    private final long[] busId;
+    private final int[] route;
+    private final int[] point;            // Stop the bus last left or is dwelling at
+    private final double[] progressM;     // Distance travelled on the current arc
+    private final float[] speedFactor;
+    private final long[] dwellLeftMs;
+    private final long[] nextReportMs;
+
+    private final ScheduledExecutorService scheduler;
+    private long clockMs = 0L;
+    private long datagramsSent = 0L;
+    private long maxTickNanos = 0L;
+    private long nextStatsMs;
+
+    /**
+     * @param firstBusId Id of the first virtual bus; the rest follow in order
+     */
+    public FleetGenerator(RouteNetwork network, UDPDatagramSender sender, int busCount,
+                          long firstBusId, long seed, long tickMs, long reportIntervalMs,
+                          long dwellMinMs, long dwellMaxMs) {
+        if (network.getRouteCount() == 0) {
+            throw new IllegalArgumentException("Route network has no routes with two or more stops");
+        }
+        this.network = network;
+        this.sender = sender;
+        this.random = new Random(seed);
+        this.busCount = busCount;
+        this.tickMs = tickMs;
+        this.reportIntervalMs = reportIntervalMs;
+        this.dwellMinMs = dwellMinMs;
+        this.dwellMaxMs = Math.max(dwellMinMs, dwellMaxMs);
+
+        this.busId = new long[busCount];
+        this.route = new int[busCount];
+        this.point = new int[busCount];
+        this.progressM = new double[busCount];
+        this.speedFactor = new float[busCount];
+        this.dwellLeftMs = new long[busCount];
+        this.nextReportMs = new long[busCount];
+        placeBuses(firstBusId);
+
+        this.nextStatsMs = reportIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "FleetGeneratorThread");
+            t.setDaemon(false);
+            return t;
+        });
+    }
+
+    /**
+     * Spread buses over all routes at random arcs and offsets.
+     */
+    private void placeBuses(long firstBusId) {
+        int routes = network.getRouteCount();
+        for (int b = 0; b < busCount; b++) {
+            int r = b % routes;
+            int first = network.firstPoint(r);
+            int arcs = network.lastPoint(r) - first;
+            int p = first + random.nextInt(arcs);
+
+            busId[b] = firstBusId + b;
+            route[b] = r;
+            point[b] = p;
+            progressM[b] = network.arcLengthAt(p) * random.nextDouble();
+            speedFactor[b] = 0.85f + 0.3f * random.nextFloat();
+            nextReportMs[b] = (long) (reportIntervalMs * ((double) b / busCount));
+        }
+    }
+
+    public void start() {
+        System.out.println("[FleetGenerator] " + busCount + " buses on " + network.getRouteCount() +
+            " routes (" + network.getPointCount() + " stops), tick " + tickMs + " ms, report every " +
+            reportIntervalMs + " ms");
+        scheduler.scheduleAtFixedRate(this::safeTick, 0, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void safeTick() {
+        try {
+            tick();
+        } catch (Exception e) {
+            // An exception would cancel the scheduled task
+            System.err.println("[FleetGenerator] Error in tick: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Advance every bus by one tick and send the reports that are due.
+     */
+    private void tick() throws Exception {
+        long startNanos = System.nanoTime();
+        clockMs += tickMs;
+        long now = System.currentTimeMillis();
+
+        for (int b = 0; b < busCount; b++) {
+            advance(b, tickMs);
+
+            if (nextReportMs[b] <= clockMs) {
+                nextReportMs[b] += reportIntervalMs;
+                report(b, now);
+            }
+        }
+        sender.flush();
+
+        long tickNanos = System.nanoTime() - startNanos;
+        maxTickNanos = Math.max(maxTickNanos, tickNanos);
+        if (clockMs >= nextStatsMs) {
+            nextStatsMs += reportIntervalMs;
+            System.out.println(String.format("[FleetGenerator] %d datagrams sent, max tick %.2f ms (budget %d ms)",
+                datagramsSent, maxTickNanos / 1e6, tickMs));
+            maxTickNanos = 0L;
+        }
+    }
+
+    private void advance(int b, long elapsedMs) {
+        long remainingMs = elapsedMs;
+        while (remainingMs > 0) {
+            if (dwellLeftMs[b] > 0) {
+                long dwell = Math.min(dwellLeftMs[b], remainingMs);
+                dwellLeftMs[b] -= dwell;
+                remainingMs -= dwell;
+                continue;
+            }
+
+            int p = point[b];
+            double speed = network.arcSpeedAt(p) * speedFactor[b];
+            double leftM = network.arcLengthAt(p) - progressM[b];
+            double stepM = speed * remainingMs / 1000.0;
+            if (stepM < leftM) {
+                progressM[b] += stepM;
+                return;
+            }
+
+            // Reached the next stop: use up the time spent getting there, then dwell
+            remainingMs -= Math.max(1L, (long) Math.ceil(leftM / speed * 1000.0));
+            arriveAtNextStop(b);
+        }
+    }
+
+    private void arriveAtNextStop(int b) {
+        int r = route[b];
+        int next = point[b] + 1;
+        if (next >= network.lastPoint(r)) {
+            // Terminal: turn around onto the opposite orientation
+            r = network.returnRouteOf(r);
+            route[b] = r;
+            next = network.firstPoint(r);
+        }
+        point[b] = next;
+        progressM[b] = 0.0;
+        dwellLeftMs[b] = dwellMinMs + (long) ((dwellMaxMs - dwellMinMs) * random.nextDouble());
+    }
+
+    private void report(int b, long timestamp) throws Exception {
+        int p = point[b];
+        double length = network.arcLengthAt(p);
+        double t = length > 0 ? progressM[b] / length : 0.0;
+        double lat = network.latitudeAt(p) + (network.latitudeAt(p + 1) - network.latitudeAt(p)) * t;
+        double lon = network.longitudeAt(p) + (network.longitudeAt(p + 1) - network.longitudeAt(p)) * t;
+
+        // gps_x = latitude, gps_y = longitude, both * 1e7 (as in datagrams_history)
+        sender.sendDatagram(busId[b], network.lineIdOf(route[b]),
+            Math.round(lat * 1e7), Math.round(lon * 1e7), timestamp);
+        datagramsSent++;
+    }
+
+    public long getDatagramsSent() {
+        return datagramsSent;
+    }
+}
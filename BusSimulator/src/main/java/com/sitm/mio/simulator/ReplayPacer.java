@@ -0,0 +1,184 @@
+package com.sitm.mio.simulator;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides when each replayed datagram is due and waits for it.
+ *
+ * TIMED: follows the original inter-arrival times in event_ts, divided by
+ *   a speed-up factor (1 = real time, 10 = ten times faster, ...).
+ *   Out-of-order timestamps are sent immediately, and gaps longer than
+ *   maxGapMs (night breaks, missing days) are shortened to maxGapMs.
+ * RATE: a fixed target of N datagrams per second.
+ *
+ * Both modes are open-loop: the schedule is computed from the start time,
+ * not from the previous send. A sender that falls behind catches up
+ * instead of silently lowering the offered load, and the lag is reported.
+ */
+public class ReplayPacer {
+
+    public static final String MODE_TIMED = "TIMED";
+    public static final String MODE_RATE = "RATE";
+
+    // Datagrams due within this window are sent together without sleeping
+    private static final long SLACK_NANOS = 1_000_000L;
+
+    private final boolean timed;
+    private final double speedUp;
+    private final double targetRate;
+    private final long maxGapMs;
+    private final long reportIntervalNanos;
+
+    // Schedule
+    private long startNanos = -1L;
+    private long scheduledOffsetNanos;
+    private long lastEventTs = Long.MIN_VALUE;
+
+    // Statistics (whole run and current report window)
+    private long sent;
+    private long totalSent;
+    private long maxLagNanos;
+    private long windowStartNanos;
+    private long windowSent;
+    private long windowScheduledNanos;
+
+    /**
+     * @param mode MODE_TIMED or MODE_RATE
+     * @param speedUp Speed-up factor for TIMED mode
+     * @param targetRate Datagrams per second for RATE mode
+     * @param maxGapMs Longest source gap kept in TIMED mode
+     * @param reportIntervalMs Interval between rate reports
+     */
+    public ReplayPacer(String mode, double speedUp, double targetRate,
+                       long maxGapMs, long reportIntervalMs) {
+        this.timed = !MODE_RATE.equalsIgnoreCase(mode);
+        if (timed && speedUp <= 0) {
+            throw new IllegalArgumentException("Speed-up factor must be positive: " + speedUp);
+        }
+        if (!timed && targetRate <= 0) {
+            throw new IllegalArgumentException("Target rate must be positive: " + targetRate);
+        }
+        this.speedUp = speedUp;
+        this.targetRate = targetRate;
+        this.maxGapMs = maxGapMs;
+        this.reportIntervalNanos = reportIntervalMs * 1_000_000L;
+    }
+
+    /**
+     * How long until the next datagram is due.
+     *
+     * @param eventTs Original timestamp of the datagram (ms), ignored in RATE mode
+     * @return Nanoseconds to wait, 0 if it should be sent now
+     */
+    public long nanosUntilDue(long eventTs) {
+        long now = System.nanoTime();
+        if (startNanos < 0) {
+            startNanos = now;
+            windowStartNanos = now;
+            scheduledOffsetNanos = 0L;
+            lastEventTs = eventTs;
+            return 0L;
+        }
+
+        long offset;
+        if (timed) {
+            long gapMs = eventTs - lastEventTs;
+            if (gapMs < 0) {
+                gapMs = 0; // Out of order: send right away
+            } else {
+                lastEventTs = eventTs;
+            }
+            gapMs = Math.min(gapMs, maxGapMs);
+            offset = scheduledOffsetNanos + (long) (gapMs * 1_000_000L / speedUp);
+        } else {
+            offset = (long) (sent * 1e9 / targetRate);
+        }
+        scheduledOffsetNanos = offset;
+
+        long wait = startNanos + offset - now;
+        return wait > SLACK_NANOS ? wait : 0L;
+    }
+
+    /**
+     * Sleep until the previously computed due time.
+     */
+    public void await(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Record that a datagram went out, and print a report when due.
+     */
+    public void recordSent() {
+        long now = System.nanoTime();
+        sent++;
+        totalSent++;
+        windowSent++;
+
+        long lag = now - (startNanos + scheduledOffsetNanos);
+        if (lag > maxLagNanos) {
+            maxLagNanos = lag;
+        }
+
+        if (now - windowStartNanos >= reportIntervalNanos) {
+            report(now);
+        }
+    }
+
+    private void report(long now) {
+        double elapsedSec = (now - windowStartNanos) / 1e9;
+        double scheduledSec = (scheduledOffsetNanos - windowScheduledNanos) / 1e9;
+        double achieved = windowSent / elapsedSec;
+        double target = timed
+            ? (scheduledSec > 0 ? windowSent / scheduledSec : achieved)
+            : targetRate;
+
+        System.out.println(String.format(
+            "[ReplayPacer] %s: achieved %.1f/s, target %.1f/s (%.1f%%), max lag %.1f ms, total sent %d",
+            timed ? "TIMED x" + speedUp : "RATE",
+            achieved, target, target > 0 ? achieved * 100.0 / target : 0.0,
+            maxLagNanos / 1e6, totalSent));
+
+        windowStartNanos = now;
+        windowSent = 0;
+        windowScheduledNanos = scheduledOffsetNanos;
+        maxLagNanos = 0;
+    }
+
+    /**
+     * Start a new schedule (e.g. when the history wraps around).
+     */
+    public void reset() {
+        startNanos = -1L;
+        scheduledOffsetNanos = 0L;
+        windowScheduledNanos = 0L;
+        lastEventTs = Long.MIN_VALUE;
+        sent = 0;
+        windowSent = 0;
+        maxLagNanos = 0;
+    }
+
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public double getSpeedUp() {
+        return speedUp;
+    }
+
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public long getTotalSent() {
+        return totalSent;
+    }
+}
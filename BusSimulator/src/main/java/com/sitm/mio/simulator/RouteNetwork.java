@@ -0,0 +1,204 @@
+package com.sitm.mio.simulator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The bus network as flat arrays: every route (line, variant, orientation)
+ * is a run of consecutive points (its stops in stopsequence order) in the
+ * point arrays, from routeStart[r] to routeStart[r + 1] - 1.
+ *
+ * Each point also carries the length and free-flow speed of the arc that
+ * starts at it, so the fleet generator can move buses without any per-bus
+ * or per-stop objects.
+ */
+public class RouteNetwork {
+
+    private static final String SELECT_LINE_STOPS =
+        "SELECT ls.lineid, ls.linevariant, ls.orientation, ls.stopsequence, ls.stopid, " +
+        "       s.decimallatitude, s.decimallongitude " +
+        "FROM mio.linestops ls " +
+        "JOIN mio.stops s ON s.stopid = ls.stopid " +
+        "WHERE s.decimallatitude IS NOT NULL AND s.decimallongitude IS NOT NULL " +
+        "ORDER BY ls.lineid, ls.linevariant, ls.orientation, ls.stopsequence";
+
+    private static final double EARTH_RADIUS_M = 6_371_000.0;
+
+    // Routes
+    private final int routeCount;
+    private final int[] routeLineId;
+    private final int[] routeStart;       // routeCount + 1 entries
+    private final int[] returnRoute;      // Same line and variant, other orientation
+
+    // Points (stops of each route, in order)
+    private final long[] stopId;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final double[] arcLengthM;    // Arc from this point to the next one
+    private final double[] arcSpeedMps;   // Free-flow speed on that arc
+
+    private RouteNetwork(int routeCount, int[] routeLineId, int[] routeStart, int[] returnRoute,
+                         long[] stopId, double[] latitude, double[] longitude,
+                         double[] arcLengthM, double[] arcSpeedMps) {
+        this.routeCount = routeCount;
+        this.routeLineId = routeLineId;
+        this.routeStart = routeStart;
+        this.returnRoute = returnRoute;
+        this.stopId = stopId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.arcLengthM = arcLengthM;
+        this.arcSpeedMps = arcSpeedMps;
+    }
+
+    /**
+     * Load every route from mio.linestops. Routes with fewer than two
+     * stops with coordinates are skipped.
+     *
+     * @param random Source of the per-arc speeds (seeded for reproducible runs)
+     * @param minSpeedKmh Slowest free-flow arc speed
+     * @param maxSpeedKmh Fastest free-flow arc speed
+     */
+    public static RouteNetwork load(Connection connection, Random random,
+                                    int minSpeedKmh, int maxSpeedKmh) throws SQLException {
+        int capacity = 1024;
+        int[] lines = new int[capacity];
+        int[] keys = new int[capacity];       // variant * 2 + orientation
+        long[] stops = new long[capacity];
+        double[] lats = new double[capacity];
+        double[] lons = new double[capacity];
+        int rows = 0;
+
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_LINE_STOPS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                if (rows == capacity) {
+                    capacity *= 2;
+                    lines = Arrays.copyOf(lines, capacity);
+                    keys = Arrays.copyOf(keys, capacity);
+                    stops = Arrays.copyOf(stops, capacity);
+                    lats = Arrays.copyOf(lats, capacity);
+                    lons = Arrays.copyOf(lons, capacity);
+                }
+                lines[rows] = rs.getInt("lineid");
+                keys[rows] = rs.getInt("linevariant") * 2 + (rs.getInt("orientation") & 1);
+                stops[rows] = rs.getLong("stopid");
+                lats[rows] = rs.getDouble("decimallatitude");
+                lons[rows] = rs.getDouble("decimallongitude");
+                rows++;
+            }
+        }
+
+        // Split rows into routes, dropping routes too short to drive on
+        int[] routeLine = new int[rows + 1];
+        int[] routeKey = new int[rows + 1];
+        int[] start = new int[rows + 2];
+        int routes = 0;
+        int points = 0;
+        for (int i = 0; i < rows; ) {
+            int j = i;
+            while (j < rows && lines[j] == lines[i] && keys[j] == keys[i]) {
+                j++;
+            }
+            if (j - i >= 2) {
+                System.arraycopy(stops, i, stops, points, j - i);
+                System.arraycopy(lats, i, lats, points, j - i);
+                System.arraycopy(lons, i, lons, points, j - i);
+                routeLine[routes] = lines[i];
+                routeKey[routes] = keys[i];
+                start[routes] = points;
+                routes++;
+                points += j - i;
+            }
+            i = j;
+        }
+        start[routes] = points;
+
+        // Pair each route with its opposite orientation for the turnaround
+        Map<Long, Integer> byKey = new HashMap<>();
+        for (int r = 0; r < routes; r++) {
+            byKey.put(((long) routeLine[r] << 32) | routeKey[r], r);
+        }
+        int[] back = new int[routes];
+        for (int r = 0; r < routes; r++) {
+            Integer other = byKey.get(((long) routeLine[r] << 32) | (routeKey[r] ^ 1));
+            back[r] = other != null ? other : r;
+        }
+
+        double[] length = new double[points];
+        double[] speed = new double[points];
+        double speedRange = Math.max(0, maxSpeedKmh - minSpeedKmh);
+        for (int r = 0; r < routes; r++) {
+            for (int p = start[r]; p < start[r + 1] - 1; p++) {
+                length[p] = distanceMeters(lats[p], lons[p], lats[p + 1], lons[p + 1]);
+                speed[p] = (minSpeedKmh + speedRange * random.nextDouble()) / 3.6;
+            }
+        }
+
+        return new RouteNetwork(routes, Arrays.copyOf(routeLine, routes), Arrays.copyOf(start, routes + 1),
+            back, Arrays.copyOf(stops, points), Arrays.copyOf(lats, points), Arrays.copyOf(lons, points),
+            length, speed);
+    }
+
+    /**
+     * Equirectangular distance; accurate enough between consecutive stops.
+     */
+    private static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_M;
+    }
+
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    public int getPointCount() {
+        return stopId.length;
+    }
+
+    public int lineIdOf(int route) {
+        return routeLineId[route];
+    }
+
+    public int firstPoint(int route) {
+        return routeStart[route];
+    }
+
+    /**
+     * Index of the last stop of the route.
+     */
+    public int lastPoint(int route) {
+        return routeStart[route + 1] - 1;
+    }
+
+    public int returnRouteOf(int route) {
+        return returnRoute[route];
+    }
+
+    public long stopIdAt(int point) {
+        return stopId[point];
+    }
+
+    public double latitudeAt(int point) {
+        return latitude[point];
+    }
+
+    public double longitudeAt(int point) {
+        return longitude[point];
+    }
+
+    public double arcLengthAt(int point) {
+        return arcLengthM[point];
+    }
+
+    public double arcSpeedAt(int point) {
+        return arcSpeedMps[point];
+    }
+}
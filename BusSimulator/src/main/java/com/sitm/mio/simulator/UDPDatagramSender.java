@@ -1,34 +1,25 @@
 package com.sitm.mio.simulator;
 
-import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.Instant;
+import java.sql.Timestamp;
 
 /**
  * Sends real datagrams via UDP to DataCenter (real-time mode).
  * Reads from datagrams_history and sends via UDP instead of inserting to DB.
+ * Rows are read with keyset pagination (DatagramHistoryReader).
  */
 public class UDPDatagramSender {
     
-    private static final String SELECT_DATAGRAMS = 
-        "SELECT event_date_txt, bus_id, line_id, gps_x, gps_y, " +
-        "       field7, field8, field9, datagram_id, field12 " +
-        "FROM mio.datagrams_history " +
-        "WHERE bus_id > 0 AND gps_x > 0 AND gps_y < 0 " + // Valid data only
-        "ORDER BY raw_id " +
-        "LIMIT ? OFFSET ?";
-    
     private Connection connection;
+    private DatagramHistoryReader reader;
     private DatagramSocket socket;
     private InetAddress dataCenterAddress;
     private int dataCenterPort;
-    private long currentOffset = 0;
+    private final DatagramPacketWriter writer;
     private final int batchSize;
     private long datagramIdCounter;
     
@@ -39,9 +30,12 @@ public class UDPDatagramSender {
         this.dataCenterPort = dataCenterPort;
         this.dataCenterAddress = InetAddress.getByName(dataCenterHost);
         this.socket = new DatagramSocket();
+        this.writer = new DatagramPacketWriter(socket, dataCenterAddress, dataCenterPort,
+            ConfigLoader.getDatagramFormat(), ConfigLoader.getBinaryRecordsPerPacket());
         
         System.out.println("[UDPDatagramSender] Initialized");
         System.out.println("  Target: " + dataCenterHost + ":" + dataCenterPort);
+        System.out.println("  Wire format: " + (writer.isBinary() ? "BINARY" : "CSV"));
         System.out.println("  Batch size: " + batchSize + " datagrams per iteration");
     }
     
@@ -51,6 +45,8 @@ public class UDPDatagramSender {
         String password = ConfigLoader.getDatabasePassword();
         
         connection = DriverManager.getConnection(url, user, password);
+        connection.setAutoCommit(false);
+        reader = new DatagramHistoryReader(connection, ConfigLoader.getFetchSize());
         System.out.println("[UDPDatagramSender] Connected to database: " + url);
     }
     
@@ -62,54 +58,127 @@ public class UDPDatagramSender {
      * @throws SQLException if database error occurs
      */
     public int sendNextBatch() throws Exception {
-        int count = 0;
+        int count;
+        try {
+            count = reader.readNextPage(batchSize, rs -> {
+                // Read original datagram
+                long busId = rs.getLong("bus_id");
+                int lineId = rs.getInt("line_id");
+                long gpsX = rs.getLong("gps_x");
+                long gpsY = rs.getLong("gps_y");
+                
+                // Send via UDP (CSV or packed binary, see DatagramPacketWriter)
+                long timestamp = System.currentTimeMillis();
+                writer.write(datagramIdCounter++, busId, lineId, gpsX, gpsY, timestamp);
+                
+                // Log details
+                double lat = gpsX / 1e7;
+                double lon = gpsY / 1e7;
+                System.out.println(String.format("  ✓ Sent UDP: Bus %d (Line %d) at [%.6f, %.6f]", 
+                    busId, lineId, lat, lon));
+            });
+        } catch (Exception e) {
+            connection.rollback();
+            throw e;
+        }
+        writer.flush();
         
-        try (PreparedStatement selectPs = connection.prepareStatement(SELECT_DATAGRAMS)) {
-            selectPs.setInt(1, batchSize);
-            selectPs.setLong(2, currentOffset);
-            
-            try (ResultSet rs = selectPs.executeQuery()) {
-                while (rs.next()) {
-                    // Read original datagram
-                    long busId = rs.getLong("bus_id");
-                    int lineId = rs.getInt("line_id");
-                    long gpsX = rs.getLong("gps_x");
-                    long gpsY = rs.getLong("gps_y");
-                    
-                    // Create UDP datagram
-                    // Format: datagram_id,bus_id,line_id,gps_x,gps_y,timestamp
-                    long timestamp = System.currentTimeMillis();
-                    String data = String.format("%d,%d,%d,%d,%d,%d",
-                        datagramIdCounter++, busId, lineId, gpsX, gpsY, timestamp);
-                    
-                    // Send via UDP
-                    byte[] buffer = data.getBytes();
-                    DatagramPacket packet = new DatagramPacket(
-                        buffer, buffer.length, dataCenterAddress, dataCenterPort);
-                    socket.send(packet);
-                    
-                    count++;
-                    
-                    // Log details
-                    double lat = gpsX / 1e7;
-                    double lon = gpsY / 1e7;
-                    System.out.println(String.format("  ✓ Sent UDP: Bus %d (Line %d) at [%.6f, %.6f]", 
-                        busId, lineId, lat, lon));
-                }
+        // End the read transaction so the server releases the cursor
+        connection.commit();
+        
+        return count;
+    }
+    
+    /**
+     * Read the history in event time order, as TIMED pacing expects.
+     * Takes effect from the beginning of the history. Stays in raw_id order
+     * if the database lacks the event_ts index (see DatagramHistoryReader).
+     */
+    public void useEventTimeOrder() throws SQLException {
+        reader = new DatagramHistoryReader(connection, ConfigLoader.getFetchSize(), true);
+    }
+    
+    /**
+     * Send the next page of datagrams, each one when the pacer says it is due.
+     * Datagrams due together share a packet in BINARY format; the packet is
+     * flushed before every wait so nothing sits in the buffer while sleeping.
+     * 
+     * The page is copied to memory and the read transaction committed before
+     * pacing starts: at real-time speed a page spans minutes, and the open
+     * cursor would otherwise keep the session idle in transaction all along.
+     * 
+     * @param pageSize Rows read from the database per call
+     * @return Number of datagrams sent (0 at the end of the history)
+     */
+    public int sendNextPage(int pageSize, ReplayPacer pacer) throws Exception {
+        long[] eventTs = new long[pageSize];
+        long[] busIds = new long[pageSize];
+        int[] lineIds = new int[pageSize];
+        long[] gpsX = new long[pageSize];
+        long[] gpsY = new long[pageSize];
+        int[] next = {0};
+        
+        int count;
+        try {
+            count = reader.readNextPage(pageSize, rs -> {
+                int i = next[0]++;
+                Timestamp ts = rs.getTimestamp("event_ts");
+                eventTs[i] = ts != null ? ts.getTime() : 0L;
+                busIds[i] = rs.getLong("bus_id");
+                lineIds[i] = rs.getInt("line_id");
+                gpsX[i] = rs.getLong("gps_x");
+                gpsY[i] = rs.getLong("gps_y");
+            });
+        } catch (Exception e) {
+            connection.rollback();
+            throw e;
+        }
+        // End the read transaction so the server releases the cursor
+        connection.commit();
+        
+        for (int i = 0; i < count; i++) {
+            long waitNanos = pacer.nanosUntilDue(eventTs[i]);
+            if (waitNanos > 0) {
+                writer.flush();
+                pacer.await(waitNanos);
             }
             
-            // Update offset for next batch
-            currentOffset += batchSize;
+            writer.write(datagramIdCounter++, busIds[i], lineIds[i], gpsX[i], gpsY[i],
+                System.currentTimeMillis());
+            pacer.recordSent();
         }
+        writer.flush();
         
         return count;
     }
     
+    /**
+     * Send one datagram that does not come from the history (e.g. FleetGenerator).
+     * BINARY packets are only sent when full; call flush() after a burst.
+     */
+    public void sendDatagram(long busId, long lineId, long gpsX, long gpsY, long timestamp) throws Exception {
+        writer.write(datagramIdCounter++, busId, lineId, gpsX, gpsY, timestamp);
+    }
+    
+    /**
+     * Send any partially filled packet.
+     */
+    public void flush() throws Exception {
+        writer.flush();
+    }
+    
+    /**
+     * Database connection, also used to load the route network.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+    
     /**
      * Reset to beginning of datagrams.
      */
     public void reset() {
-        currentOffset = 0;
+        reader.reset();
         System.out.println("[UDPDatagramSender] Reset to beginning");
     }
     
@@ -0,0 +1,91 @@
+package com.sitm.mio.citizen.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import SITM.CitizenInformation;
+
+/**
+ * Small in-process cache of travel time answers, in front of ProxyServer.
+ *
+ * Each answer is kept for as long as ProxyServer said it stays fresh
+ * (CitizenInformation.ttlMillis), capped by maxTtlMillis so that an
+ * invalidation on the server side reaches kiosks reasonably soon. Answers
+ * with no TTL (errors) are not cached. Least recently used entries are
+ * dropped beyond maxEntries.
+ */
+public class LocalCitizenCache {
+
+    private static final class Entry {
+        private final CitizenInformation info;
+        private final long expiresAt;
+
+        private Entry(CitizenInformation info, long expiresAt) {
+            this.info = info;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long maxTtlMillis;
+    private final Map<String, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LocalCitizenCache(int maxEntries, long maxTtlMillis) {
+        this.maxTtlMillis = maxTtlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get a fresh cached answer.
+     * @return CitizenInformation or null if absent or expired
+     */
+    public synchronized CitizenInformation get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            entries.remove(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.info;
+    }
+
+    /**
+     * Cache an answer for the time ProxyServer allows.
+     */
+    public synchronized void put(String key, CitizenInformation info) {
+        long ttl = Math.min(info.ttlMillis, maxTtlMillis);
+        if (ttl <= 0) {
+            return;
+        }
+        entries.put(key, new Entry(info, System.currentTimeMillis() + ttl));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0.0 : (double) getHits() / total;
+    }
+}
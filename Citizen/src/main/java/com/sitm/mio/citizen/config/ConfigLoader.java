@@ -72,6 +72,36 @@ public class ConfigLoader {
         return Integer.parseInt(System.getProperty("proxyserver.port", "10000"));
     }
     
+    /**
+     * Get the ProxyServer shards as host:port endpoints.
+     * Read from -Dproxyserver.shards or proxyserver.shards (comma-separated);
+     * defaults to the single proxyserver.host/proxyserver.port instance.
+     * @return Shard endpoints
+     */
+    public static String[] getProxyServerShards() {
+        String shards = System.getProperty("proxyserver.shards", properties.getProperty("proxyserver.shards", ""));
+        if (shards.trim().isEmpty()) {
+            return new String[] { getProxyServerHost() + ":" + getProxyServerPort() };
+        }
+        return shards.trim().split("\\s*,\\s*");
+    }
+    
+    /**
+     * Get the number of points each shard gets on the consistent-hash ring.
+     * @return Virtual nodes per shard
+     */
+    public static int getVirtualNodesPerShard() {
+        return Integer.parseInt(properties.getProperty("proxyserver.shards.virtual.nodes", "160"));
+    }
+    
+    /**
+     * Get how often shards marked down are probed to rejoin the ring.
+     * @return Interval in seconds
+     */
+    public static int getShardHealthCheckSeconds() {
+        return Integer.parseInt(properties.getProperty("proxyserver.shards.health.check.seconds", "5"));
+    }
+    
     /**
      * Get ProxyServer connection timeout in seconds.
      * @return Timeout in seconds
@@ -104,6 +134,14 @@ public class ConfigLoader {
         return Integer.parseInt(properties.getProperty("cache.max.entries", "100"));
     }
     
+    /**
+     * Get the longest time an answer is kept locally, whatever TTL ProxyServer sends.
+     * @return Maximum local TTL in seconds
+     */
+    public static int getCacheMaxTtlSeconds() {
+        return Integer.parseInt(properties.getProperty("cache.max.ttl.seconds", "300"));
+    }
+    
     /**
      * Get a property value.
      * @param key Property key
@@ -120,10 +158,12 @@ public class ConfigLoader {
     public static void printConfiguration() {
         System.out.println("=== Citizen Configuration ===");
         System.out.println("ProxyServer URL: " + getProxyServerUrl());
+        System.out.println("ProxyServer Shards: " + String.join(", ", getProxyServerShards()));
         System.out.println("Connection Timeout: " + getProxyServerTimeout() + "s");
         System.out.println("Retry Attempts: " + getRetryAttempts());
         System.out.println("Cache Enabled: " + isCacheEnabled());
         System.out.println("Max Cache Entries: " + getMaxCacheEntries());
+        System.out.println("Max Cache TTL: " + getCacheMaxTtlSeconds() + "s");
         System.out.println("============================");
     }
 }
@@ -0,0 +1,142 @@
+package com.sitm.mio.citizen.proxyserver;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring that maps route keys to ProxyServer shards.
+ *
+ * Every shard is placed on the ring at virtualNodes pseudo-random points,
+ * and a key belongs to the first shard point at or after its own hash.
+ * Adding or removing a shard only moves the keys between its points and
+ * their predecessors (about 1/N of the key space), so the other shards
+ * keep their caches warm.
+ *
+ * Thread-safe: readers see an immutable snapshot that is replaced on
+ * every membership change.
+ */
+public class ConsistentHashRing {
+
+    private final int virtualNodes;
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+    private volatile int shardCount = 0;
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Add a shard to the ring (no-op if already present).
+     */
+    public synchronized void add(String shard) {
+        if (contains(shard)) {
+            return;
+        }
+        TreeMap<Long, String> next = new TreeMap<>(ring);
+        for (int i = 0; i < virtualNodes; i++) {
+            next.put(hash(shard + "#" + i), shard);
+        }
+        ring = next;
+        shardCount++;
+    }
+
+    /**
+     * Remove a shard from the ring; its keys move to the following shards.
+     */
+    public synchronized void remove(String shard) {
+        if (!contains(shard)) {
+            return;
+        }
+        TreeMap<Long, String> next = new TreeMap<>(ring);
+        next.values().removeIf(shard::equals);
+        ring = next;
+        shardCount--;
+    }
+
+    /**
+     * Remove a shard unless it is the only one left (there is nowhere to
+     * move its keys, so it is better kept and retried).
+     * @return true if the shard was removed
+     */
+    public synchronized boolean removeUnlessLast(String shard) {
+        if (shardCount <= 1 || !contains(shard)) {
+            return false;
+        }
+        remove(shard);
+        return true;
+    }
+
+    public boolean contains(String shard) {
+        return ring.containsValue(shard);
+    }
+
+    /**
+     * Get the shard that owns a key.
+     * @return Owning shard, or null if the ring is empty
+     */
+    public String shardFor(String key) {
+        NavigableMap<Long, String> current = ring;
+        if (current.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> owner = current.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : current.firstEntry().getValue();
+    }
+
+    /**
+     * Get the distinct shards in ring order starting at the key's owner.
+     * The first is the owner; the rest are the failover order.
+     */
+    public List<String> shardsFor(String key) {
+        NavigableMap<Long, String> current = ring;
+        int count = shardCount;
+        List<String> shards = new ArrayList<>(count);
+        if (current.isEmpty()) {
+            return shards;
+        }
+        long h = hash(key);
+        for (String shard : current.tailMap(h, true).values()) {
+            if (!shards.contains(shard) && shards.add(shard) && shards.size() == count) {
+                return shards;
+            }
+        }
+        for (String shard : current.headMap(h, false).values()) {
+            if (!shards.contains(shard) && shards.add(shard) && shards.size() == count) {
+                return shards;
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Get the number of shards on the ring.
+     */
+    public int size() {
+        return shardCount;
+    }
+
+    /**
+     * First 8 bytes of the MD5 digest: well spread and identical on every client.
+     */
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xFF);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
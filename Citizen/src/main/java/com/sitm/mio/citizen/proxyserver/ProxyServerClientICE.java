@@ -1,61 +1,102 @@
 package com.sitm.mio.citizen.proxyserver;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import com.zeroc.Ice.Communicator;
 import com.zeroc.Ice.ObjectPrx;
+import com.zeroc.Ice.SocketException;
+import com.zeroc.Ice.TimeoutException;
 import com.zeroc.Ice.Util;
 import SITM.CitizenInformation;
 import SITM.ProxyServerPrx;
+import SITM.StopPair;
+import com.sitm.mio.citizen.cache.LocalCitizenCache;
 import com.sitm.mio.citizen.config.ConfigLoader;
 
 /**
  * ICE client for communicating with the remote ProxyServer service.
- * 
+ *
  * This replaces the HTTP-based ProxyServerClient with ICE RPC.
- * 
+ *
  * Features:
  * - ICE RPC for efficient binary communication
  * - Automatic connection management
  * - Type-safe remote method calls
  * - Built-in retry and timeout handling
+ * - Sharding: with several ProxyServers configured, each route key
+ *   (origin-destination) goes to the shard that owns it on a
+ *   consistent-hash ring, so every shard caches its own slice of the
+ *   routes. A shard that cannot be reached leaves the ring (its keys
+ *   move to the next shards) and rejoins once it answers a ping again.
+ *   The last shard in the ring is never removed: the call fails, and the
+ *   next one retries it (ICE reconnects) instead of waiting for the probe.
+ * - Local cache: answers are reused for the TTL ProxyServer sends with
+ *   them, so a repeated query on a kiosk does not leave the device.
+ * - Batch queries: the pairs missing from the local cache are grouped by
+ *   owning shard and each shard gets a single call.
  */
 public class ProxyServerClientICE {
-    
+
     private final Communicator communicator;
-    private final ProxyServerPrx proxyServer;
-    private final String proxyServerEndpoint;
-    
+    private final Map<String, ProxyServerPrx> shards = new LinkedHashMap<>();
+    private final ConsistentHashRing ring;
+    private final ScheduledExecutorService healthChecker;
+    private final LocalCitizenCache localCache;
+
     public ProxyServerClientICE() {
         // Load configuration
-        String host = ConfigLoader.getProxyServerHost();
-        int port = ConfigLoader.getProxyServerPort();
-        this.proxyServerEndpoint = String.format("ProxyServer:tcp -h %s -p %d", host, port);
-        
+        String[] shardEndpoints = ConfigLoader.getProxyServerShards();
+        this.ring = new ConsistentHashRing(ConfigLoader.getVirtualNodesPerShard());
+
         System.out.println("ProxyServerClientICE initializing...");
-        System.out.println("  Endpoint: " + proxyServerEndpoint);
         
+        this.localCache = ConfigLoader.isCacheEnabled()
+            ? new LocalCitizenCache(ConfigLoader.getMaxCacheEntries(), ConfigLoader.getCacheMaxTtlSeconds() * 1000L)
+            : null;
+
         try {
             // Initialize ICE communicator
             this.communicator = Util.initialize();
-            
-            // Create proxy to ProxyServer
-            ObjectPrx base = communicator.stringToProxy(proxyServerEndpoint);
-            this.proxyServer = ProxyServerPrx.checkedCast(base);
-            
-            if (this.proxyServer == null) {
-                throw new RuntimeException("Invalid proxy: " + proxyServerEndpoint);
+
+            // Create a proxy per shard; unreachable shards are found on first use
+            for (String shard : shardEndpoints) {
+                String[] hostPort = shard.split(":");
+                String endpoint = String.format("ProxyServer:tcp -h %s -p %s", hostPort[0], hostPort[1]);
+                ObjectPrx base = communicator.stringToProxy(endpoint);
+                shards.put(shard, ProxyServerPrx.uncheckedCast(base));
+                ring.add(shard);
+                System.out.println("  Endpoint: " + endpoint);
+            }
+
+            if (shards.isEmpty()) {
+                throw new RuntimeException("No ProxyServer endpoints configured");
             }
-            
-            System.out.println("Connected to ProxyServer via ICE");
-            
+
+            System.out.println("Connected to " + shards.size() + " ProxyServer shard(s) via ICE");
+
         } catch (Exception e) {
             System.err.println("Failed to initialize ICE client: " + e.getMessage());
             throw new RuntimeException("ICE initialization failed", e);
         }
+
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ShardHealthCheck");
+            t.setDaemon(true);
+            return t;
+        });
+        int interval = ConfigLoader.getShardHealthCheckSeconds();
+        healthChecker.scheduleWithFixedDelay(this::probeDownShards, interval, interval, TimeUnit.SECONDS);
     }
-    
+
     /**
      * Get citizen travel time information from ProxyServer.
-     * 
+     *
      * @param originId Origin stop ID
      * @param destinationId Destination stop ID
      * @return CitizenInformation with travel time details
@@ -64,30 +105,172 @@ public class ProxyServerClientICE {
         System.out.println("ProxyServerClientICE: Querying via ICE RPC");
         System.out.println("  Origin: " + originId);
         System.out.println("  Destination: " + destinationId);
+
+        // Same key format as the ProxyServer cache
+        String routeKey = originId + "-" + destinationId;
         
-        try {
-            // Make ICE RPC call
-            CitizenInformation info = proxyServer.getCitizenInformation(originId, destinationId);
-            
-            System.out.println("Response received: " + info.message);
-            return info;
-            
-        } catch (Exception e) {
-            System.err.println("ICE RPC call failed: " + e.getMessage());
-            e.printStackTrace();
-            
-            // Return error information
-            CitizenInformation errorInfo = new CitizenInformation();
-            errorInfo.message = "Error: Unable to connect to ProxyServer - " + e.getMessage();
-            return errorInfo;
+        if (localCache != null) {
+            CitizenInformation cached = localCache.get(routeKey);
+            if (cached != null) {
+                System.out.println("Local cache HIT: " + cached.message);
+                return cached;
+            }
+        }
+        
+        Exception lastError = null;
+
+        // Owner first; if it is unreachable, the next shard on the ring takes over the key
+        List<String> candidates = ring.size() > 0 ? ring.shardsFor(routeKey) : new ArrayList<>(shards.keySet());
+        for (String shard : candidates) {
+            try {
+                // Make ICE RPC call
+                CitizenInformation info = shards.get(shard).getCitizenInformation(originId, destinationId);
+
+                System.out.println("Response received from shard " + shard + ": " + info.message);
+                if (localCache != null) {
+                    localCache.put(routeKey, info);
+                }
+                return info;
+
+            } catch (SocketException | TimeoutException e) {
+                markDown(shard, e);
+                lastError = e;
+            } catch (Exception e) {
+                System.err.println("ICE RPC call failed: " + e.getMessage());
+                e.printStackTrace();
+                lastError = e;
+                break;
+            }
+        }
+
+        // Return error information
+        CitizenInformation errorInfo = new CitizenInformation();
+        errorInfo.message = "Error: Unable to connect to ProxyServer - " +
+            (lastError != null ? lastError.getMessage() : "no shard available");
+        return errorInfo;
+    }
+
+    /**
+     * Get citizen travel time information for several stop pairs.
+     * Pairs in the local cache are answered locally; the rest are sent
+     * in one batch call per owning shard.
+     *
+     * @param pairs Origin and destination stop IDs
+     * @return CitizenInformation per pair, in the same order as pairs
+     */
+    public CitizenInformation[] getCitizenInformationBatch(StopPair[] pairs) {
+        System.out.println("ProxyServerClientICE: Batch query via ICE RPC (" + pairs.length + " pairs)");
+
+        CitizenInformation[] results = new CitizenInformation[pairs.length];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < pairs.length; i++) {
+            CitizenInformation cached = localCache != null
+                ? localCache.get(pairs[i].originId + "-" + pairs[i].destinationId)
+                : null;
+            if (cached != null) {
+                results[i] = cached;
+            } else {
+                pending.add(i);
+            }
+        }
+
+        Exception lastError = null;
+
+        // A shard that fails leaves the ring; its pairs are regrouped onto the next owners
+        while (!pending.isEmpty() && ring.size() > 0) {
+            Map<String, List<Integer>> byShard = new LinkedHashMap<>();
+            for (int i : pending) {
+                String shard = ring.shardFor(pairs[i].originId + "-" + pairs[i].destinationId);
+                byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(i);
+            }
+            pending = new ArrayList<>();
+
+            for (Map.Entry<String, List<Integer>> group : byShard.entrySet()) {
+                List<Integer> indexes = group.getValue();
+                StopPair[] shardPairs = new StopPair[indexes.size()];
+                for (int j = 0; j < shardPairs.length; j++) {
+                    shardPairs[j] = pairs[indexes.get(j)];
+                }
+                try {
+                    CitizenInformation[] answers = shards.get(group.getKey()).getCitizenInformationBatch(shardPairs);
+                    for (int j = 0; j < answers.length && j < shardPairs.length; j++) {
+                        results[indexes.get(j)] = answers[j];
+                        if (localCache != null) {
+                            localCache.put(shardPairs[j].originId + "-" + shardPairs[j].destinationId, answers[j]);
+                        }
+                    }
+                } catch (SocketException | TimeoutException e) {
+                    if (markDown(group.getKey(), e)) {
+                        // Regrouped onto the next owners; a kept last shard is not retried in this call
+                        pending.addAll(indexes);
+                    }
+                    lastError = e;
+                } catch (Exception e) {
+                    System.err.println("ICE RPC call failed: " + e.getMessage());
+                    lastError = e;
+                }
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                CitizenInformation errorInfo = new CitizenInformation();
+                errorInfo.message = "Error: Unable to connect to ProxyServer - " +
+                    (lastError != null ? lastError.getMessage() : "no shard available");
+                results[i] = errorInfo;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Take an unreachable shard out of the ring, unless it is the last one.
+     * @return true if it was removed (its keys now belong to other shards)
+     */
+    private boolean markDown(String shard, Exception e) {
+        if (ring.removeUnlessLast(shard)) {
+            System.err.println("ProxyServer shard " + shard + " unreachable, removing from ring: " + e);
+            return true;
+        }
+        System.err.println("ProxyServer shard " + shard + " unreachable, kept as the last shard: " + e);
+        return false;
+    }
+
+    /**
+     * Ping shards that left the ring and add back those that answer.
+     */
+    private void probeDownShards() {
+        for (Map.Entry<String, ProxyServerPrx> shard : shards.entrySet()) {
+            if (ring.contains(shard.getKey())) {
+                continue;
+            }
+            try {
+                shard.getValue().ice_ping();
+                ring.add(shard.getKey());
+                System.out.println("ProxyServer shard " + shard.getKey() + " is back, rejoined ring");
+            } catch (Exception e) {
+                // Still down
+            }
         }
     }
+
+    /**
+     * Get the local cache, or null if it is disabled.
+     */
+    public LocalCitizenCache getLocalCache() {
+        return localCache;
+    }
     
     /**
      * Shutdown the ICE communicator.
      * Should be called when the client is no longer needed.
      */
     public void shutdown() {
+        healthChecker.shutdownNow();
+        if (localCache != null) {
+            System.out.println(String.format("Local cache: %d hits, %d misses (%.1f%% hit rate)",
+                localCache.getHits(), localCache.getMisses(), localCache.getHitRate() * 100));
+        }
         if (communicator != null) {
             try {
                 communicator.destroy();
@@ -1,6 +1,7 @@
 package com.sitm.mio.datacenter;
 
 import com.sitm.mio.datacenter.component.ArcZoneResolver;
+import com.sitm.mio.datacenter.component.AsyncEventBus;
 import com.sitm.mio.datacenter.component.Authenticator;
 import com.sitm.mio.datacenter.component.Controller;
 import com.sitm.mio.datacenter.component.DataCenterFacade;
@@ -70,8 +71,30 @@ public class Main {
 
         IDataCenterFacade facade = new DataCenterFacade(authenticator, stopRepo, lineRepo, travelRepo);
 
+        // History table partitions (created ahead, dropped after retention)
+        com.sitm.mio.datacenter.component.HistoryPartitionManager partitionManager = null;
+        if (com.sitm.mio.datacenter.config.ConfigLoader.isHistoryPartitioningEnabled()) {
+            partitionManager = new com.sitm.mio.datacenter.component.HistoryPartitionManager(
+                com.sitm.mio.datacenter.component.HistoryPartitionManager.Granularity.valueOf(
+                    com.sitm.mio.datacenter.config.ConfigLoader.getHistoryPartitionGranularity()),
+                com.sitm.mio.datacenter.config.ConfigLoader.getHistoryPartitionPremake(),
+                java.time.Duration.ofDays(com.sitm.mio.datacenter.config.ConfigLoader.getHistoryRetentionDays()),
+                com.sitm.mio.datacenter.config.ConfigLoader.getHistoryPartitionMaintenanceMinutes(),
+                com.sitm.mio.datacenter.config.ConfigLoader.isHistoryPartitionMigrationEnabled());
+            partitionManager.start();
+        }
+
         // 3. Event bus
-        IEventBus eventBus = new EventBus();
+        IEventBus eventBus;
+        if ("ASYNC".equals(com.sitm.mio.datacenter.config.ConfigLoader.getEventBusMode())) {
+            eventBus = new AsyncEventBus(
+                com.sitm.mio.datacenter.config.ConfigLoader.getEventBusQueueCapacity(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getEventBusWorkersPerType(),
+                AsyncEventBus.BackpressurePolicy.valueOf(
+                    com.sitm.mio.datacenter.config.ConfigLoader.getEventBusBackpressure()));
+        } else {
+            eventBus = new EventBus();
+        }
         eventBus.start();
 
         // 4. Datagram source (Strategy Pattern)
@@ -81,7 +104,12 @@ public class Main {
         if ("UDP".equals(sourceType)) {
             // Real-time mode: Listen to UDP datagrams
             int udpPort = com.sitm.mio.datacenter.config.ConfigLoader.getUdpReceiverPort();
-            datagramSource = new com.sitm.mio.datacenter.component.UDPDatagramSource(eventBus, udpPort);
+            datagramSource = new com.sitm.mio.datacenter.component.UDPDatagramSource(
+                eventBus, udpPort,
+                com.sitm.mio.datacenter.config.ConfigLoader.getUdpReceiverThreads(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getUdpReceiverBufferBytes(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getUdpReceiverBatchSize(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getUdpReceiverFormat());
             System.out.println("=== REAL-TIME MODE: UDP Datagram Source ===");
             System.out.println("Listening on UDP port: " + udpPort);
         } else {
@@ -107,8 +135,51 @@ public class Main {
             (java.util.function.Consumer<Object>) event -> controller.processDatagram(event)
         );
 
+        // Live arc speeds and stop-to-stop travel times, fed by the controller
+        com.sitm.mio.datacenter.component.TravelStatsAggregator travelStats = null;
+        if (com.sitm.mio.datacenter.config.ConfigLoader.isLiveStatsEnabled()) {
+            travelStats = new com.sitm.mio.datacenter.component.TravelStatsAggregator(
+                arcZoneResolver,
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsMaxBuses(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsMaxArcs(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsMaxStopPairs(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsWindowBuckets(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsWindowMinutes() * 60_000L,
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsMaxGapSeconds() * 1000L,
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsMaxSpeedKmh(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsStopRadiusMeters(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getLiveStatsMaxTravelMinutes() * 60_000L,
+                com.sitm.mio.datacenter.config.ConfigLoader.getDatagramMaxClockSkewSeconds() * 1000L);
+            controller.setTravelStatsAggregator(travelStats);
+        }
+
+        // Last known state of every bus, fed by the controller
+        com.sitm.mio.datacenter.component.BusStateStore busStates = null;
+        if (com.sitm.mio.datacenter.config.ConfigLoader.isBusStateEnabled()) {
+            busStates = new com.sitm.mio.datacenter.component.BusStateStore(
+                com.sitm.mio.datacenter.config.ConfigLoader.getBusStateMaxBuses(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getBusStateMaxGapSeconds() * 1000L,
+                com.sitm.mio.datacenter.config.ConfigLoader.getDatagramMaxClockSkewSeconds() * 1000L);
+            controller.setBusStateStore(busStates);
+        }
+
+        // Write-behind storage of enriched datagrams (published by the controller)
+        com.sitm.mio.datacenter.component.EnrichedDatagramPersister datagramPersister = null;
+        if (com.sitm.mio.datacenter.config.ConfigLoader.isPersisterEnabled()) {
+            datagramPersister = new com.sitm.mio.datacenter.component.EnrichedDatagramPersister(
+                com.sitm.mio.datacenter.config.ConfigLoader.getPersisterBufferCapacity(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getPersisterBatchSize(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getPersisterFlushIntervalMs(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getPersisterOfferTimeoutMs(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getPersisterMaxRetries());
+            datagramPersister.start();
+            eventBus.subscribe(SITM.EnrichedDatagram.class, datagramPersister);
+        }
+
         // 6. Monitoring console
         IMonitoringConsole monitoring = new MonitoringConsole(datagramReceiver, eventBus);
+        monitoring.setDatagramPersister(datagramPersister);
+        monitoring.setDatagramSource(datagramSource);
         monitoring.getSystemHealth();
 
         // 7. Servicio “remoto” (ServiceDataCenter) – por ahora local
@@ -127,24 +198,46 @@ public class Main {
         
         System.out.println("[ICE] Configuration loaded via ConfigLoader");
         
+        com.sitm.mio.datacenter.component.HistoryCursorManager historyCursors = null;
+        
         try (com.zeroc.Ice.Communicator communicator = com.zeroc.Ice.Util.initialize(args, initData)) {
             
             // Create travel time calculator for citizen queries
             com.sitm.mio.datacenter.component.TravelTimeCalculator travelTimeCalculator = 
                 new com.sitm.mio.datacenter.component.TravelTimeCalculator(travelRepo);
+            travelTimeCalculator.setTravelStatsAggregator(travelStats);
             
             // Create ICE servants
             com.sitm.mio.datacenter.ice.DataCenterI dataCenterServant = 
                 new com.sitm.mio.datacenter.ice.DataCenterI(facade, travelTimeCalculator);
             
             com.sitm.mio.datacenter.ice.DataCenterEventPublisherI eventPublisher = 
-                new com.sitm.mio.datacenter.ice.DataCenterEventPublisherI();
+                new com.sitm.mio.datacenter.ice.DataCenterEventPublisherI(
+                    com.sitm.mio.datacenter.config.ConfigLoader.getPublisherQueueCapacity(),
+                    com.sitm.mio.datacenter.config.ConfigLoader.getPublisherMaxConsecutiveFailures(),
+                    com.sitm.mio.datacenter.config.ConfigLoader.getPublisherBatchMaxSize(),
+                    com.sitm.mio.datacenter.config.ConfigLoader.getPublisherBatchLingerMs());
             
             com.sitm.mio.datacenter.ice.AuthenticatorI authenticatorServant = 
                 new com.sitm.mio.datacenter.ice.AuthenticatorI(authenticator);
             
-            // Connect controller to ICE publisher
+            // Streaming history export: cursors are read in chunks, never as one list
+            historyCursors = new com.sitm.mio.datacenter.component.HistoryCursorManager(
+                com.sitm.mio.datacenter.config.ConfigLoader.getHistoryExportMaxCursors(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getHistoryExportFetchSize(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getHistoryExportMaxChunk(),
+                com.sitm.mio.datacenter.config.ConfigLoader.getHistoryExportIdleTimeoutSeconds() * 1000L);
+            historyCursors.start();
+            com.sitm.mio.datacenter.ice.HistoryExportI historyExportServant = 
+                new com.sitm.mio.datacenter.ice.HistoryExportI(historyCursors);
+            
+            // Connect controller and monitoring to ICE publisher
             controller.setIcePublisher(eventPublisher);
+            monitoring.setEventPublisher(eventPublisher);
+            dataCenterServant.setEventPublisher(eventPublisher);
+            dataCenterServant.setTravelStatsAggregator(travelStats);
+            dataCenterServant.setBusStateStore(busStates,
+                com.sitm.mio.datacenter.config.ConfigLoader.getBusStateStaleMinutes() * 60_000L);
             
             // Create object adapter using configuration
             com.zeroc.Ice.ObjectAdapter adapter = communicator.createObjectAdapter("DataCenterAdapter");
@@ -153,6 +246,7 @@ public class Main {
             adapter.add(dataCenterServant, com.zeroc.Ice.Util.stringToIdentity("DataCenter"));
             adapter.add(eventPublisher, com.zeroc.Ice.Util.stringToIdentity("DataCenterEventPublisher"));
             adapter.add(authenticatorServant, com.zeroc.Ice.Util.stringToIdentity("Authenticator"));
+            adapter.add(historyExportServant, com.zeroc.Ice.Util.stringToIdentity("HistoryExport"));
             
             // Activate adapter
             adapter.activate();
@@ -164,11 +258,23 @@ public class Main {
             System.out.println("DataCenter Service: DataCenter:default -p 10003");
             System.out.println("Event Publisher: DataCenterEventPublisher:default -p 10003");
             System.out.println("Authenticator Service: Authenticator:default -p 10003");
+            System.out.println("History Export: HistoryExport:default -p 10003");
             System.out.println("Active subscribers: " + eventPublisher.getSubscriberCount());
             System.out.println("=".repeat(60));
             
             // Wait for shutdown
             communicator.waitForShutdown();
+        } finally {
+            if (historyCursors != null) {
+                historyCursors.stop();
+            }
+            if (datagramPersister != null) {
+                datagramPersister.stop();
+            }
+            if (partitionManager != null) {
+                partitionManager.stop();
+            }
+            com.sitm.mio.datacenter.config.ManageDatabase.shutdown();
         }
     }
 
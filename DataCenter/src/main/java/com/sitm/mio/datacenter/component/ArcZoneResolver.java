@@ -5,21 +5,29 @@ import java.util.List;
 import com.sitm.mio.datacenter.interfaces.IArcZoneResolver;
 import com.sitm.mio.datacenter.interfaces.IStopRepository;
 import com.sitm.mio.datacenter.model.Stop;
+import com.sitm.mio.datacenter.utils.StopSpatialIndex;
 import com.sitm.mio.datacenter.utils.ZoneUtils;
 
 /**
  * Resolves GPS coordinates to arcs and zones.
  * Component from deployment diagram: ResolvedorDeArcosyZonas
  * 
+ * Stops are loaded once into an in-memory StopSpatialIndex; call
+ * reloadStops() after the stop table changes.
+ * 
  * Realizes: IArcZoneResolver
  * Uses: IStopRepository
  */
 public class ArcZoneResolver implements IArcZoneResolver {
     
     private final IStopRepository stopRepository;
+
+    // Swapped as a whole on reload, so readers never see a half-built index
+    private volatile StopSpatialIndex stopIndex = StopSpatialIndex.empty();
     
     public ArcZoneResolver(IStopRepository stopRepository) {
         this.stopRepository = stopRepository;
+        reloadStops();
     }
     
     @Override
@@ -72,90 +80,53 @@ public class ArcZoneResolver implements IArcZoneResolver {
     
     @Override
     public Long getArcId(double latitude, double longitude) {
-        
-        List<Stop> stops = stopRepository.findAll();
-        if (stops == null || stops.size() < 2) {
+        StopSpatialIndex index = stopIndex;
+        long pair = index.nearestPair(latitude, longitude);
+        if (pair == StopSpatialIndex.NO_PAIR) {
             System.out.println("[ArcZoneResolver] Not enough stops to resolve arc.");
             return null;
         }
 
-        Stop best = null;
-        Stop secondBest = null;
-        double bestDist = Double.MAX_VALUE;
-        double secondBestDist = Double.MAX_VALUE;
-
-        for (Stop s : stops) {
-            double d = distanceInMeters(latitude, longitude,
-                                        s.getLatitude(), s.getLongitude());
-            if (d < bestDist) {
-                //We put the best to the second
-                secondBest = best;
-                secondBestDist = bestDist;
-    
-                best = s;
-                bestDist = d;
-            } else if (d < secondBestDist && s != best) {
-                secondBest = s;
-                secondBestDist = d;
-            }
-        }
-
-        if (best == null || secondBest == null) {
-            System.out.println("[ArcZoneResolver] Could not find two nearby stops for arc.");
-            return null;
-        }
-
-        long fromId = best.getId();
-        long toId = secondBest.getId();
+        long fromId = index.stopIdAt(StopSpatialIndex.firstOf(pair));
+        long toId = index.stopIdAt(StopSpatialIndex.secondOf(pair));
     
         long min = Math.min(fromId, toId);
         long max = Math.max(fromId, toId);
 
         //Build the arcId
-        long arcId = min * 1_000_000L + max;
-
-        System.out.println("[ArcZoneResolver] Approx arcId for (" +
-                latitude + ", " + longitude + ") -> arc(" + min + "->" + max +
-                "), arcId=" + arcId);
-    
-        return arcId;
+        return min * 1_000_000L + max;
     }
-    //This method is to seach the nearest stop
-    private Stop findNearestStop(double latitude, double longitude){
-        List<Stop> rawStops = stopRepository.findAll();
 
-        if (rawStops == null || rawStops.isEmpty()) {
-            return null;
-        }
-        Stop best = null;
-        double bestDistance = Double.MAX_VALUE;
-
-        for (Stop stop : rawStops) {
-            double d = distanceInMeters(
-                    latitude, longitude,
-                    stop.getLatitude(), stop.getLongitude()
-            );
-            if (d < bestDistance) {
-                bestDistance = d;
-                best = stop;
-            }
+    /**
+     * Get the stop a coordinate is at, e.g. a bus standing at it.
+     * @return Stop ID, or -1 if no stop is within maxDistanceMeters
+     */
+    @Override
+    public long getNearestStopId(double latitude, double longitude, double maxDistanceMeters) {
+        StopSpatialIndex index = stopIndex;
+        int slot = index.nearest(latitude, longitude);
+        if (slot < 0 || index.distanceMeters(slot, latitude, longitude) > maxDistanceMeters) {
+            return -1L;
         }
-        return best;
+        return index.stopIdAt(slot);
     }
 
-    //This method is for the aprox of distance in meters
-    private double distanceInMeters(double lat1, double lon1, double lat2, double lon2){
-        double Rearth = 6371000;
-
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1)) *
-                Math.cos(Math.toRadians(lat2)) *
-                Math.sin(dLon / 2) * Math.sin(dLon / 2);
+    @Override
+    public void reloadStops() {
+        try {
+            List<Stop> stops = stopRepository.findAll();
+            stopIndex = StopSpatialIndex.build(stops);
+            System.out.println("[ArcZoneResolver] Stop index built with " + stopIndex.size() + " stops");
+        } catch (RuntimeException e) {
+            // Keep serving from the previous index
+            System.err.println("[ArcZoneResolver] Could not reload stops: " + e.getMessage());
+        }
+    }
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return Rearth * c;
+    //This method is to seach the nearest stop
+    private Stop findNearestStop(double latitude, double longitude){
+        StopSpatialIndex index = stopIndex;
+        int slot = index.nearest(latitude, longitude);
+        return slot < 0 ? null : index.stopAt(slot);
     }
 }
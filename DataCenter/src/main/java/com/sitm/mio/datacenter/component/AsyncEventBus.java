@@ -0,0 +1,230 @@
+package com.sitm.mio.datacenter.component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.sitm.mio.datacenter.interfaces.IEventBus;
+import com.sitm.mio.datacenter.model.EventQueueMetrics;
+
+/**
+ * Queued event bus for DataCenter event distribution.
+ * Component from deployment diagram: EventBus
+ *
+ * Each event type gets its own bounded queue drained by its own worker
+ * threads, so publish() only enqueues and the publisher (e.g. the UDP
+ * receive thread) never waits for handlers. When a queue is full the
+ * configured BackpressurePolicy decides what happens.
+ *
+ * With one worker per type (the default) events of a type are handled
+ * in publish order; with more workers ordering is not guaranteed.
+ *
+ * Realizes: IEventBus
+ */
+public class AsyncEventBus implements IEventBus {
+
+    /**
+     * What publish() does when the queue of an event type is full.
+     */
+    public enum BackpressurePolicy {
+        /** Wait until a worker frees a slot. */
+        BLOCK,
+        /** Discard the oldest queued event to make room. */
+        DROP_OLDEST,
+        /** Discard the event being published. */
+        DROP_NEWEST
+    }
+
+    private static final long POLL_TIMEOUT_MS = 200L;
+    private static final long STOP_JOIN_TIMEOUT_MS = 2000L;
+
+    //eventType --> queue, handlers and workers for that type
+    private final Map<Class<?>, Lane> lanes = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+    private final int workersPerType;
+    private final BackpressurePolicy backpressurePolicy;
+    private volatile boolean running = false;
+
+    public AsyncEventBus(int queueCapacity, int workersPerType, BackpressurePolicy backpressurePolicy) {
+        if (queueCapacity <= 0 || workersPerType <= 0) {
+            throw new IllegalArgumentException("queueCapacity and workersPerType must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        this.workersPerType = workersPerType;
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    @Override
+    public void publish(Object event) {
+        if (!running || event == null) {
+            return;
+        }
+
+        Lane lane = lanes.get(event.getClass());
+        if (lane == null || lane.handlers.isEmpty()) {
+            return;
+        }
+
+        lane.stats.recordPublished();
+        lane.enqueue(event);
+    }
+
+    @Override
+    public void subscribe(Class<?> eventType, Object handler) {
+        if (!(handler instanceof Consumer)) {
+            throw new IllegalArgumentException("Handler must be a Consumer<Object>, but was: " +
+                    (handler != null ? handler.getClass().getName() : "null"));
+        }
+
+        @SuppressWarnings("unchecked")
+        Consumer<Object> consumer = (Consumer<Object>) handler;
+
+        Lane lane = lanes.computeIfAbsent(eventType, Lane::new);
+        lane.handlers.add(consumer);
+        if (running) {
+            lane.startWorkers();
+        }
+    }
+
+    @Override
+    public void unsubscribe(Class<?> eventType, Object handler) {
+        if (!(handler instanceof Consumer)) {
+            return;
+        }
+
+        Lane lane = lanes.get(eventType);
+        if (lane != null) {
+            // The lane and its workers stay; publish() skips types without handlers
+            lane.handlers.remove(handler);
+        }
+    }
+
+    @Override
+    public List<EventQueueMetrics> getMetrics() {
+        List<EventQueueMetrics> result = new ArrayList<>();
+        for (Lane lane : lanes.values()) {
+            result.add(lane.stats.toMetrics(lane.eventType, lane.queue.size(), queueCapacity));
+        }
+        return result;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (Lane lane : lanes.values()) {
+            lane.startWorkers();
+        }
+        System.out.println("AsyncEventBus Started (capacity=" + queueCapacity +
+                ", workersPerType=" + workersPerType + ", backpressure=" + backpressurePolicy + ")");
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        // Workers drain what is already queued before exiting
+        for (Lane lane : lanes.values()) {
+            lane.joinWorkers();
+        }
+        System.out.println("AsyncEventBus stopped");
+    }
+
+    /**
+     * Queue, handlers and worker threads of one event type.
+     */
+    private final class Lane {
+        private final Class<?> eventType;
+        private final List<Consumer<Object>> handlers = new CopyOnWriteArrayList<>();
+        private final ArrayBlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final EventTypeStats stats = new EventTypeStats();
+        private final List<Thread> workers = new ArrayList<>();
+
+        private Lane(Class<?> eventType) {
+            this.eventType = eventType;
+        }
+
+        private void enqueue(Object event) {
+            switch (backpressurePolicy) {
+                case BLOCK:
+                    try {
+                        queue.put(event);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        stats.recordDropped();
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(event)) {
+                        if (queue.poll() != null) {
+                            stats.recordDropped();
+                        }
+                    }
+                    break;
+                case DROP_NEWEST:
+                default:
+                    if (!queue.offer(event)) {
+                        stats.recordDropped();
+                    }
+                    break;
+            }
+        }
+
+        private synchronized void startWorkers() {
+            if (!workers.isEmpty()) {
+                return;
+            }
+            for (int i = 0; i < workersPerType; i++) {
+                Thread t = new Thread(this::drainLoop,
+                        "EventBus-" + eventType.getSimpleName() + "-" + i);
+                t.setDaemon(true);
+                workers.add(t);
+                t.start();
+            }
+        }
+
+        private synchronized void joinWorkers() {
+            for (Thread t : workers) {
+                try {
+                    t.join(STOP_JOIN_TIMEOUT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            workers.clear();
+        }
+
+        private void drainLoop() {
+            while (running || !queue.isEmpty()) {
+                Object event;
+                try {
+                    event = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (event != null) {
+                    dispatch(event);
+                }
+            }
+        }
+
+        private void dispatch(Object event) {
+            for (Consumer<Object> handler : handlers) {
+                long startNanos = System.nanoTime();
+                try {
+                    handler.accept(event);
+                } catch (Exception e) {
+                    System.err.println("[AsyncEventBus] Error handling event " +
+                            eventType.getSimpleName() + ": " + e.getMessage());
+                    e.printStackTrace();
+                }
+                stats.recordHandled(System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.sitm.mio.datacenter.component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parser for the binary datagram format sent by BusSimulator.
+ *
+ * Packet layout (big-endian):
+ *   magic   u16  0x4D49 ("MI")
+ *   version u8   1
+ *   count   u8   number of records that follow
+ *   count x { datagram_id, bus_id, line_id, gps_x, gps_y, timestamp } as int64
+ *
+ * The layout must match BusSimulator's DatagramPacketWriter.
+ * CSV packets start with an ASCII digit, so the magic never collides with them.
+ */
+final class BinaryDatagramParser {
+
+    static final short MAGIC = 0x4D49;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 4;
+    static final int RECORD_SIZE = 6 * Long.BYTES;
+
+    private BinaryDatagramParser() {}
+
+    /**
+     * @return true if the buffer starts with the binary magic
+     */
+    static boolean isBinary(ByteBuffer buf) {
+        return buf.remaining() >= 2 && buf.getShort(buf.position()) == MAGIC;
+    }
+
+    /**
+     * Validate the header and advance past it.
+     *
+     * @return Number of records in the packet, or -1 if the header or length is invalid
+     */
+    static int readHeader(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_SIZE || buf.getShort() != MAGIC) {
+            return -1;
+        }
+        byte version = buf.get();
+        int count = buf.get() & 0xFF;
+        if (version != VERSION || buf.remaining() != count * RECORD_SIZE) {
+            return -1;
+        }
+        return count;
+    }
+
+    /**
+     * Read the next record into the holder (the header must have been read).
+     */
+    static void readRecord(ByteBuffer buf, DatagramFields out) {
+        out.datagramId = buf.getLong();
+        out.busId = buf.getLong();
+        out.lineId = buf.getLong();
+        out.gpsX = buf.getLong();
+        out.gpsY = buf.getLong();
+        out.timestamp = buf.getLong();
+    }
+}
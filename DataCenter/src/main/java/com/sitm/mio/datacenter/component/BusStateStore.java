@@ -0,0 +1,294 @@
+package com.sitm.mio.datacenter.component;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sitm.mio.datacenter.model.BusStateRecord;
+import com.sitm.mio.datacenter.utils.GeoUtils;
+import com.sitm.mio.datacenter.utils.ZoneUtils;
+
+/**
+ * Last known state of every bus: position, time, arc, zone, heading and
+ * speed, updated by the Controller for each datagram.
+ *
+ * Fixed capacity, kept in primitive arrays indexed by slot. A bus gets its
+ * slot on its first datagram by CAS on an open-addressing key table, and
+ * keeps it. Each slot is guarded by a sequence number (seqlock): a writer
+ * makes it odd, writes the fields and makes it even again; a reader copies
+ * the fields and retries if the sequence moved meanwhile. Updates of
+ * different buses never contend and readers never block writers, so the
+ * ingestion path takes no lock.
+ *
+ * Speed and heading come from the previous fix of the same bus, which is
+ * read inside the same slot update. Fixes older than the stored one are
+ * ignored, and fixes more than maxClockSkewMillis ahead of the DataCenter
+ * clock are rejected: stored, one would freeze its bus (every later fix
+ * looks older) and push the staleness reference of snapshotZone past every
+ * other bus.
+ */
+public class BusStateStore {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final double UNKNOWN = -1.0;
+    // Below this the GPS jitter decides the heading, so the previous one is kept
+    private static final double MIN_HEADING_METERS = 5.0;
+
+    private final int capacity;
+    private final int mask;
+    private final long maxGapMillis;
+    private final long maxClockSkewMillis;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray sequences;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong latestTimestamp = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private final long[] lineIds;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] timestamps;
+    private final long[] arcIds;
+    private final int[] zones;
+    private final double[] headings;
+    private final double[] speeds;
+
+    public BusStateStore(int capacity, long maxGapMillis, long maxClockSkewMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.maxGapMillis = maxGapMillis;
+        this.maxClockSkewMillis = maxClockSkewMillis;
+
+        // At most half full, so probes stay short and a free slot always exists
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        this.mask = tableSize - 1;
+        long[] emptyKeys = new long[tableSize];
+        Arrays.fill(emptyKeys, EMPTY);
+        this.keys = new AtomicLongArray(emptyKeys);
+        this.sequences = new AtomicLongArray(tableSize);
+
+        this.lineIds = new long[tableSize];
+        this.latitudes = new double[tableSize];
+        this.longitudes = new double[tableSize];
+        this.timestamps = new long[tableSize];
+        this.arcIds = new long[tableSize];
+        this.zones = new int[tableSize];
+        this.headings = new double[tableSize];
+        this.speeds = new double[tableSize];
+
+        System.out.println("[BusStateStore] Capacity " + capacity + " buses");
+    }
+
+    /**
+     * Record a fix of a bus.
+     *
+     * @param arcId Arc of the fix, or null if it could not be resolved
+     * @return false if the fix is older than the stored one, dated in the future or the store is full
+     */
+    public boolean update(long busId, long lineId, double latitude, double longitude,
+                          long timestampMillis, Long arcId, String zoneId) {
+        if (timestampMillis > System.currentTimeMillis() + maxClockSkewMillis) {
+            rejected.increment();
+            return false;
+        }
+        int slot = slotOf(busId, true);
+        if (slot < 0) {
+            rejected.increment();
+            return false;
+        }
+
+        long sequence;
+        while (true) {
+            sequence = sequences.get(slot);
+            if ((sequence & 1) == 0 && sequences.compareAndSet(slot, sequence, sequence + 1)) {
+                break;
+            }
+            // Another datagram of the same bus is being written
+            Thread.onSpinWait();
+        }
+
+        boolean stored = false;
+        try {
+            boolean first = sequence == 0;
+            long previous = timestamps[slot];
+            if (!first && timestampMillis <= previous) {
+                return false;
+            }
+
+            double speed = UNKNOWN;
+            double heading = first ? UNKNOWN : headings[slot];
+            if (!first && timestampMillis - previous <= maxGapMillis) {
+                double meters = GeoUtils.distanceMeters(latitudes[slot], longitudes[slot], latitude, longitude);
+                speed = meters / (timestampMillis - previous) * 3600.0;
+                if (meters >= MIN_HEADING_METERS) {
+                    heading = GeoUtils.bearingDegrees(latitudes[slot], longitudes[slot], latitude, longitude);
+                }
+            }
+
+            lineIds[slot] = lineId;
+            latitudes[slot] = latitude;
+            longitudes[slot] = longitude;
+            timestamps[slot] = timestampMillis;
+            arcIds[slot] = arcId != null ? arcId : -1L;
+            zones[slot] = ZoneUtils.zoneIndexOf(zoneId);
+            headings[slot] = heading;
+            speeds[slot] = speed;
+            stored = true;
+        } finally {
+            // Volatile write: publishes the fields to readers that see the new sequence
+            sequences.set(slot, sequence + 2);
+        }
+
+        updates.increment();
+        latestTimestamp.accumulateAndGet(timestampMillis, Math::max);
+        return stored;
+    }
+
+    /**
+     * Get the last known state of a bus.
+     * @return State, or null if no datagram of the bus was seen
+     */
+    public BusStateRecord get(long busId) {
+        int slot = slotOf(busId, false);
+        return slot < 0 ? null : read(slot);
+    }
+
+    /**
+     * Get the buses whose last fix is in a zone.
+     *
+     * @param maxAgeMillis Skip buses silent for longer than this before the newest fix seen (0 = keep all)
+     * @return Consistent per-bus snapshots
+     */
+    public List<BusStateRecord> snapshotZone(String zoneId, long maxAgeMillis) {
+        int zone = ZoneUtils.zoneIndexOf(zoneId);
+        List<BusStateRecord> result = new ArrayList<>();
+        if (zone < 0) {
+            return result;
+        }
+        long oldest = oldestAccepted(maxAgeMillis);
+        for (int slot = 0; slot <= mask; slot++) {
+            // Cheap pre-filter on the racy field; the copy below is validated
+            if (keys.get(slot) == EMPTY || zones[slot] != zone) {
+                continue;
+            }
+            BusStateRecord state = read(slot);
+            if (state != null && zone == ZoneUtils.zoneIndexOf(state.getZoneId())
+                    && state.getTimestampMillis() >= oldest) {
+                result.add(state);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get every bus.
+     *
+     * @param maxAgeMillis Skip buses silent for longer than this before the newest fix seen (0 = keep all)
+     * @return Consistent per-bus snapshots
+     */
+    public List<BusStateRecord> snapshotAll(long maxAgeMillis) {
+        long oldest = oldestAccepted(maxAgeMillis);
+        List<BusStateRecord> result = new ArrayList<>(size.get());
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys.get(slot) == EMPTY) {
+                continue;
+            }
+            BusStateRecord state = read(slot);
+            if (state != null && state.getTimestampMillis() >= oldest) {
+                result.add(state);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    /**
+     * Datagrams dropped because the store was full or the fix was dated in the future.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private long oldestAccepted(long maxAgeMillis) {
+        long latest = latestTimestamp.get();
+        return maxAgeMillis <= 0 || latest == Long.MIN_VALUE ? Long.MIN_VALUE : latest - maxAgeMillis;
+    }
+
+    /**
+     * Copy a slot, retrying until no write overlapped the copy.
+     * @return State, or null if the slot is claimed but not written yet
+     */
+    private BusStateRecord read(int slot) {
+        while (true) {
+            long sequence = sequences.get(slot);
+            if (sequence == 0) {
+                return null;
+            }
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            long lineId = lineIds[slot];
+            double latitude = latitudes[slot];
+            double longitude = longitudes[slot];
+            long timestamp = timestamps[slot];
+            long arcId = arcIds[slot];
+            int zone = zones[slot];
+            double heading = headings[slot];
+            double speed = speeds[slot];
+
+            // Keep the field reads above from moving past the sequence re-check
+            VarHandle.acquireFence();
+            if (sequences.get(slot) == sequence) {
+                return new BusStateRecord(keys.get(slot), lineId, latitude, longitude, timestamp, arcId,
+                        zone > 0 ? ZoneUtils.zoneName(zone) : "", heading, speed);
+            }
+        }
+    }
+
+    /**
+     * Find the slot of a bus, claiming a free one by CAS if add is set.
+     * @return Slot, or -1 if the bus is unknown (or new and the store is full)
+     */
+    private int slotOf(long busId, boolean add) {
+        int i = (int) ((busId * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (true) {
+            long key = keys.get(i);
+            if (key == busId) {
+                return i;
+            }
+            if (key == EMPTY) {
+                if (!add || size.get() >= capacity) {
+                    return -1;
+                }
+                if (keys.compareAndSet(i, EMPTY, busId)) {
+                    size.incrementAndGet();
+                    return i;
+                }
+                // Lost the race for this slot: look at what was stored there
+                continue;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+}
@@ -21,6 +21,8 @@ public class Controller implements IController {
     private final IArcZoneResolver arcZoneResolver;
     private final IDataCenterFacade facade;
     private DataCenterEventPublisherI icePublisher;
+    private TravelStatsAggregator travelStats;
+    private BusStateStore busStates;
     
     public Controller(IEventBus eventBus, IArcZoneResolver arcZoneResolver, IDataCenterFacade facade) {
         this.eventBus = eventBus;
@@ -36,6 +38,22 @@ public class Controller implements IController {
         this.icePublisher = icePublisher;
     }
     
+    /**
+     * Set the aggregator fed with every processed datagram.
+     * Called from Main when live statistics are enabled.
+     */
+    public void setTravelStatsAggregator(TravelStatsAggregator travelStats) {
+        this.travelStats = travelStats;
+    }
+    
+    /**
+     * Set the store that keeps the last known state of every bus.
+     * Called from Main when the bus state store is enabled.
+     */
+    public void setBusStateStore(BusStateStore busStates) {
+        this.busStates = busStates;
+    }
+    
     @Override
     public void start() {
         // TODO: Start controller
@@ -60,8 +78,9 @@ public class Controller implements IController {
         System.out.println("[Controller] Processing datagram " + event.getDatagramId() + 
                           " from bus " + event.getBusId());
         
-        // 1. Resolve zone from GPS coordinates
+        // 1. Resolve zone and arc from GPS coordinates
         String zoneId = arcZoneResolver.getZoneId(event.getLatitude(), event.getLongitude());
+        Long arcId = arcZoneResolver.getArcId(event.getLatitude(), event.getLongitude());
         
         // 2. Create enriched datagram for ICE
         EnrichedDatagram enriched = new EnrichedDatagram();
@@ -71,10 +90,22 @@ public class Controller implements IController {
         enriched.latitude = event.getLatitude();
         enriched.longitude = event.getLongitude();
         enriched.zoneId = zoneId;
-        enriched.arcId = "ARC_" + zoneId; // TODO: Implement proper arc resolution
+        enriched.arcId = arcId != null ? String.valueOf(arcId) : "";
         enriched.timestamp = event.getEventTimestamp().toEpochMilli();
         
-        System.out.println("[Controller] Enriched datagram with zone: " + zoneId);
+        System.out.println("[Controller] Enriched datagram with zone: " + zoneId + ", arc: " + arcId);
+        
+        // Live arc speeds and stop-to-stop travel times
+        if (travelStats != null) {
+            travelStats.onDatagram(enriched.busId, enriched.latitude, enriched.longitude,
+                                   enriched.timestamp, arcId, zoneId);
+        }
+        
+        // Last known position, heading and speed of the bus
+        if (busStates != null) {
+            busStates.update(enriched.busId, enriched.lineId, enriched.latitude, enriched.longitude,
+                             enriched.timestamp, arcId, zoneId);
+        }
         
         // 3. Publish to ProxyServer via ICE
         if (icePublisher != null) {
@@ -82,6 +113,9 @@ public class Controller implements IController {
         } else {
             System.err.println("[Controller] ICE publisher not set - cannot publish enriched datagram");
         }
+        
+        // 4. Publish internally (stored by EnrichedDatagramPersister)
+        eventBus.publish(enriched);
     }
     
     @Override
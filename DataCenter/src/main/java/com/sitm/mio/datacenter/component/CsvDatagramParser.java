@@ -0,0 +1,93 @@
+package com.sitm.mio.datacenter.component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Byte-level parser for the CSV datagram format sent by BusSimulator:
+ * datagram_id,bus_id,line_id,gps_x,gps_y,timestamp
+ *
+ * Reads ASCII digits straight from the receive buffer into a reusable
+ * DatagramFields, without building Strings or arrays.
+ */
+final class CsvDatagramParser {
+
+    private static final int FIELD_COUNT = 6;
+
+    private CsvDatagramParser() {}
+
+    /**
+     * Parse one record from the remaining bytes of the buffer.
+     * Extra trailing fields are ignored, as with the former split(",") parser.
+     *
+     * @param buf Buffer positioned at the start of the record (position is advanced)
+     * @param out Holder that receives the fields
+     * @return true if all six fields were valid longs
+     */
+    static boolean parse(ByteBuffer buf, DatagramFields out) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            skipWhitespace(buf);
+            if (!buf.hasRemaining()) {
+                return false;
+            }
+
+            boolean negative = false;
+            byte b = buf.get(buf.position());
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                buf.get();
+            }
+
+            long value = 0;
+            int digits = 0;
+            while (buf.hasRemaining()) {
+                b = buf.get(buf.position());
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                int d = b - '0';
+                if (value > (Long.MAX_VALUE - d) / 10) {
+                    return false;
+                }
+                value = value * 10 + d;
+                digits++;
+                buf.get();
+            }
+            if (digits == 0) {
+                return false;
+            }
+
+            skipWhitespace(buf);
+            if (field < FIELD_COUNT - 1) {
+                if (!buf.hasRemaining() || buf.get() != ',') {
+                    return false;
+                }
+            } else if (buf.hasRemaining() && buf.get(buf.position()) != ',') {
+                return false;
+            }
+
+            set(out, field, negative ? -value : value);
+        }
+        return true;
+    }
+
+    private static void skipWhitespace(ByteBuffer buf) {
+        while (buf.hasRemaining()) {
+            byte b = buf.get(buf.position());
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return;
+            }
+            buf.get();
+        }
+    }
+
+    private static void set(DatagramFields out, int field, long value) {
+        switch (field) {
+            case 0: out.datagramId = value; break;
+            case 1: out.busId = value; break;
+            case 2: out.lineId = value; break;
+            case 3: out.gpsX = value; break;
+            case 4: out.gpsY = value; break;
+            default: out.timestamp = value; break;
+        }
+    }
+}
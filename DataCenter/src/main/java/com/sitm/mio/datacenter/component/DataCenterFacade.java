@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -20,6 +21,7 @@ import com.sitm.mio.datacenter.model.Stop;
 import com.sitm.mio.datacenter.model.SystemStatistics;
 import com.sitm.mio.datacenter.model.TravelTimeStat;
 import com.sitm.mio.datacenter.model.ZoneStatistics;
+import com.sitm.mio.datacenter.utils.TimeRangeUtils;
 
 /**
  * Facade providing simplified external access to DataCenter.
@@ -71,27 +73,43 @@ public class DataCenterFacade implements IDataCenterFacade {
 
     }
     
-    @Override
-    public Object getHistoricalData(String timeRange) {
-        System.out.println("[DataCenterFacade] Getting historical data");
-
-        //We don't have to make the filtered
-        final String SQL = 
+    // Bounded on event_ts, so only the partitions of the range are scanned; newest first
+    // (backward scan of the event_ts index) so the row limit keeps the recent data
+    private static final String SQL_HISTORY_RANGE =
         "SELECT raw_id, event_date_txt, bus_id, line_id, gps_x, gps_y, " +
         "       field7, field8, field9, datagram_id, event_ts, field12 " +
         "FROM mio.datagrams_history " +
-        "ORDER BY event_ts " +
-        "LIMIT 100";
+        "WHERE event_ts >= ? AND event_ts < ? " +
+        "ORDER BY event_ts DESC, datagram_id DESC " +
+        "LIMIT ?";
+
+    /**
+     * Get the datagrams of the last timeRange ("1h", "24h", "7d"...),
+     * newest first. The result is truncated to the history.query.max.rows
+     * most recent rows; the HistoryExport cursors return a whole range.
+     */
+    @Override
+    public Object getHistoricalData(String timeRange) {
+        System.out.println("[DataCenterFacade] Getting historical data for the last " + timeRange);
+
+        Duration range = TimeRangeUtils.parse(timeRange);
+        Instant to = Instant.now();
+        Instant from = to.minus(range);
         
         List<DatagramHistoryRecord> result = new ArrayList<>();
 
         try (Connection con = ManageDatabase.gConnection();
-                PreparedStatement ps = con.prepareStatement(SQL);
-                ResultSet rs = ps.executeQuery();){
+                PreparedStatement ps = con.prepareStatement(SQL_HISTORY_RANGE)) {
+
+            ps.setTimestamp(1, Timestamp.from(from));
+            ps.setTimestamp(2, Timestamp.from(to));
+            ps.setInt(3, com.sitm.mio.datacenter.config.ConfigLoader.getHistoryQueryMaxRows());
 
-                    while (rs.next()) { 
-                        result.add(mapRowToDatagramHistoryRecord(rs));
-                    }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) { 
+                    result.add(mapRowToDatagramHistoryRecord(rs));
+                }
+            }
             
         } catch (Exception e) {
             throw new RuntimeException("Error getting the historical data", e);
@@ -4,15 +4,23 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.sitm.mio.datacenter.config.ManageDatabase;
 import com.sitm.mio.datacenter.interfaces.IDatagramSource;
 import com.sitm.mio.datacenter.interfaces.IEventBus;
+import com.sitm.mio.datacenter.model.DatagramSourceMetrics;
 import com.sitm.mio.datacenter.model.EventNewDatagram;
 
 /**
  * Historic datagram source - polls database for historical data.
  * Strategy implementation for reading from mio.datagrams_history table.
+ *
+ * Reads in event time order with a keyset on (event_ts, datagram_id).
+ * The separate event_ts bound lets PostgreSQL skip the partitions that
+ * were already read. Rows without event_ts have no place in that order;
+ * they are read first, in raw_id order, with their own keyset. Both scans
+ * rely on the indexes HistoryPartitionManager creates.
  */
 public class DatabaseDatagramSource implements IDatagramSource {
     
@@ -21,14 +29,24 @@ public class DatabaseDatagramSource implements IDatagramSource {
         "SELECT raw_id, event_date_txt, bus_id, line_id, gps_x, gps_y, " +
         "       datagram_id, event_ts " +
         "FROM " + TABLE_NAME + " " +
-        "WHERE datagram_id > ? " +
-        "ORDER BY datagram_id ASC " +
+        "WHERE event_ts >= ? AND (event_ts, datagram_id) > (?, ?) " +
+        "ORDER BY event_ts ASC, datagram_id ASC " +
+        "LIMIT 100";
+    private static final String SQL_POLL_NULL_TS =
+        "SELECT raw_id, event_date_txt, bus_id, line_id, gps_x, gps_y, " +
+        "       datagram_id, event_ts " +
+        "FROM " + TABLE_NAME + " " +
+        "WHERE event_ts IS NULL AND raw_id > ? " +
+        "ORDER BY raw_id ASC " +
         "LIMIT 100";
 
     private final IEventBus eventBus;
     private volatile boolean running = false;
+    private Instant lastEventTs = Instant.EPOCH;
     private long lastDatagramId = 0L;
+    private long lastNullTsRawId = 0L;
     private final long pollIntervalMs;
+    private final LongAdder rowsRead = new LongAdder();
     
     public DatabaseDatagramSource(IEventBus eventBus) {
         this(eventBus, 10000L); // Default: poll every 10 seconds
@@ -67,33 +85,52 @@ public class DatabaseDatagramSource implements IDatagramSource {
     }
 
     private void pollOnce() {
-        try (Connection con = ManageDatabase.gConnection();
-                PreparedStatement ps = con.prepareStatement(SQL_POLL)) {
-            
-            ps.setLong(1, lastDatagramId);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                int count = 0;
-                while (rs.next()) { 
-                    EventNewDatagram event = mapRowToEvent(rs);
-                    lastDatagramId = event.getDatagramId();
-                    count++;
-
-                    // Publish to event bus
-                    eventBus.publish(event);
-                    System.out.println("[DatabaseDatagramSource] Published datagram #" + event.getDatagramId());
+        try (Connection con = ManageDatabase.gConnection()) {
+            int count = 0;
+
+            try (PreparedStatement ps = con.prepareStatement(SQL_POLL_NULL_TS)) {
+                ps.setLong(1, lastNullTsRawId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lastNullTsRawId = rs.getLong("raw_id");
+                        publish(mapRowToEvent(rs));
+                        count++;
+                    }
                 }
+            }
+
+            try (PreparedStatement ps = con.prepareStatement(SQL_POLL)) {
+                java.sql.Timestamp lastTs = java.sql.Timestamp.from(lastEventTs);
+                ps.setTimestamp(1, lastTs);
+                ps.setTimestamp(2, lastTs);
+                ps.setLong(3, lastDatagramId);
 
-                if (count > 0) {
-                    System.out.println("[DatabaseDatagramSource] Processed " + count + " new datagrams");
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        EventNewDatagram event = mapRowToEvent(rs);
+                        lastEventTs = event.getEventTimestamp();
+                        lastDatagramId = event.getDatagramId();
+                        publish(event);
+                        count++;
+                    }
                 }
             }
+
+            if (count > 0) {
+                System.out.println("[DatabaseDatagramSource] Processed " + count + " new datagrams");
+            }
         } catch (Exception e) {
             System.err.println("[DatabaseDatagramSource] Error polling database: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    private void publish(EventNewDatagram event) {
+        rowsRead.increment();
+        eventBus.publish(event);
+        System.out.println("[DatabaseDatagramSource] Published datagram #" + event.getDatagramId());
+    }
+
     private EventNewDatagram mapRowToEvent(ResultSet rs) throws Exception {
         long datagramId = rs.getLong("datagram_id");
         long busId = rs.getLong("bus_id");
@@ -128,4 +165,10 @@ public class DatabaseDatagramSource implements IDatagramSource {
     public String getSourceType() {
         return "Database (Historic)";
     }
+    
+    @Override
+    public DatagramSourceMetrics getMetrics() {
+        long rows = rowsRead.sum();
+        return new DatagramSourceMetrics(getSourceType(), rows, rows, 0, -1);
+    }
 }
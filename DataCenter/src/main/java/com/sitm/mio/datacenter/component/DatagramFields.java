@@ -0,0 +1,29 @@
+package com.sitm.mio.datacenter.component;
+
+import java.time.Instant;
+
+import com.sitm.mio.datacenter.model.EventNewDatagram;
+
+/**
+ * Mutable holder for the raw fields of one bus datagram.
+ * Each receive thread reuses a single instance, so parsing does not allocate;
+ * an immutable EventNewDatagram is only created for records that parse.
+ */
+final class DatagramFields {
+
+    long datagramId;
+    long busId;
+    long lineId;
+    long gpsX;
+    long gpsY;
+    long timestamp;
+
+    /**
+     * Convert to the event published on the EventBus.
+     * GPS coordinates arrive as integers * 1e7 (gps_x = latitude, gps_y = longitude).
+     */
+    EventNewDatagram toEvent() {
+        return new EventNewDatagram(datagramId, busId, lineId,
+                gpsX / 1e7, gpsY / 1e7, Instant.ofEpochMilli(timestamp));
+    }
+}
@@ -0,0 +1,263 @@
+package com.sitm.mio.datacenter.component;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import com.sitm.mio.datacenter.config.ManageDatabase;
+import com.sitm.mio.datacenter.model.PersisterMetrics;
+import SITM.EnrichedDatagram;
+
+/**
+ * Write-behind persister for enriched datagrams.
+ *
+ * Subscribed to EnrichedDatagram events on the EventBus. Each datagram is
+ * only added to a bounded in-memory buffer; a single writer thread drains
+ * it and stores the datagrams in mio.enriched_datagrams with PostgreSQL
+ * COPY, one statement per batch of up to batchSize rows (or whatever
+ * arrived within flushIntervalMs).
+ *
+ * Back-pressure: when the buffer is full the handler waits up to
+ * offerTimeoutMs for the writer to make room, which in turn slows down the
+ * event bus lane. If the database stays too slow for that long the
+ * datagram is dropped and counted, so a dead database cannot stall
+ * real-time publishing. A failed COPY is retried maxRetries times before
+ * its batch is dropped.
+ */
+public class EnrichedDatagramPersister implements Consumer<Object> {
+
+    private static final String TABLE_NAME = "mio.enriched_datagrams";
+    private static final String SQL_CREATE_TABLE =
+        "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+        "  datagram_id BIGINT NOT NULL," +
+        "  bus_id BIGINT NOT NULL," +
+        "  line_id BIGINT NOT NULL," +
+        "  latitude DOUBLE PRECISION NOT NULL," +
+        "  longitude DOUBLE PRECISION NOT NULL," +
+        "  zone_id VARCHAR(64)," +
+        "  arc_id VARCHAR(64)," +
+        "  event_ts TIMESTAMPTZ NOT NULL" +
+        ")";
+    private static final String SQL_CREATE_INDEX =
+        "CREATE INDEX IF NOT EXISTS idx_enriched_datagrams_event_ts ON " + TABLE_NAME + " (event_ts)";
+    private static final String SQL_COPY =
+        "COPY " + TABLE_NAME + " (datagram_id, bus_id, line_id, latitude, longitude, zone_id, arc_id, event_ts) " +
+        "FROM STDIN WITH (FORMAT csv)";
+
+    private static final long POLL_TIMEOUT_MS = 200L;
+    private static final long RETRY_BACKOFF_MS = 500L;
+    private static final long STOP_JOIN_TIMEOUT_MS = 10000L;
+
+    private final ArrayBlockingQueue<EnrichedDatagram> buffer;
+    private final int bufferCapacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final int maxRetries;
+
+    private volatile boolean running = false;
+    private Thread writer;
+
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder rowsDropped = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder copyNanos = new LongAdder();
+    private final AtomicLong lastFlushMillis = new AtomicLong(-1);
+    private final AtomicLong maxFlushMillis = new AtomicLong(0);
+
+    public EnrichedDatagramPersister(int bufferCapacity, int batchSize, long flushIntervalMs,
+                                     long offerTimeoutMs, int maxRetries) {
+        if (bufferCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("bufferCapacity and batchSize must be positive");
+        }
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.bufferCapacity = bufferCapacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Create the table if needed and start the writer thread.
+     */
+    public void start() {
+        if (running) return;
+
+        ensureTable();
+        running = true;
+        writer = new Thread(this::writeLoop, "EnrichedDatagramPersister");
+        writer.setDaemon(true);
+        writer.start();
+        System.out.println("[EnrichedDatagramPersister] Started (buffer=" + bufferCapacity +
+                ", batch=" + batchSize + ", flushInterval=" + flushIntervalMs + "ms)");
+    }
+
+    /**
+     * Stop accepting datagrams and write what is still buffered.
+     */
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(STOP_JOIN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        System.out.println("[EnrichedDatagramPersister] Stopped, " + buffer.size() + " datagrams not written");
+    }
+
+    /**
+     * EventBus handler: buffer an enriched datagram for writing.
+     */
+    @Override
+    public void accept(Object event) {
+        if (!running || !(event instanceof EnrichedDatagram)) {
+            return;
+        }
+        try {
+            if (!buffer.offer((EnrichedDatagram) event, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rowsDropped.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rowsDropped.increment();
+        }
+    }
+
+    public PersisterMetrics getMetrics() {
+        long rows = rowsWritten.sum();
+        long nanos = copyNanos.sum();
+        double rowsPerSecond = nanos > 0 ? rows * 1e9 / nanos : 0.0;
+        return new PersisterMetrics(buffer.size(), bufferCapacity, rows, rowsDropped.sum(),
+                flushes.sum(), failedFlushes.sum(), lastFlushMillis.get(), maxFlushMillis.get(),
+                rowsPerSecond);
+    }
+
+    private void ensureTable() {
+        try (Connection con = ManageDatabase.gConnection();
+                Statement st = con.createStatement()) {
+            st.execute(SQL_CREATE_TABLE);
+            st.execute(SQL_CREATE_INDEX);
+        } catch (Exception e) {
+            // Writes will fail and be retried/dropped; the datagram flow itself is unaffected
+            System.err.println("[EnrichedDatagramPersister] Could not create " + TABLE_NAME + ": " + e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        List<EnrichedDatagram> batch = new ArrayList<>(batchSize);
+        StringBuilder csv = new StringBuilder(batchSize * 96);
+        while (running || !buffer.isEmpty()) {
+            try {
+                EnrichedDatagram first = buffer.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Fill the batch, waiting at most flushIntervalMs after its first datagram
+                long deadline = System.currentTimeMillis() + flushIntervalMs;
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || wait <= 0 || !running) {
+                        break;
+                    }
+                    EnrichedDatagram next = buffer.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch, csv);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<EnrichedDatagram> batch, StringBuilder csv) throws InterruptedException {
+        csv.setLength(0);
+        for (EnrichedDatagram d : batch) {
+            appendCsvRow(csv, d);
+        }
+
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            long start = System.nanoTime();
+            try (Connection con = ManageDatabase.gConnection()) {
+                CopyManager copy = con.unwrap(PGConnection.class).getCopyAPI();
+                long rows = copy.copyIn(SQL_COPY, new StringReader(csv.toString()));
+
+                long nanos = System.nanoTime() - start;
+                long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+                rowsWritten.add(rows);
+                flushes.increment();
+                copyNanos.add(nanos);
+                lastFlushMillis.set(millis);
+                maxFlushMillis.accumulateAndGet(millis, Math::max);
+                System.out.println(String.format(
+                    "[EnrichedDatagramPersister] Flushed %d rows in %d ms (%.0f rows/s), backlog %d",
+                    rows, millis, rows * 1e9 / Math.max(1L, nanos), buffer.size()));
+                return;
+            } catch (Exception e) {
+                failedFlushes.increment();
+                System.err.println("[EnrichedDatagramPersister] COPY of " + batch.size() + " rows failed (attempt " +
+                        (attempt + 1) + "/" + (maxRetries + 1) + "): " + e.getMessage());
+                if (attempt < maxRetries) {
+                    Thread.sleep(RETRY_BACKOFF_MS * (attempt + 1));
+                }
+            }
+        }
+        rowsDropped.add(batch.size());
+    }
+
+    private static void appendCsvRow(StringBuilder csv, EnrichedDatagram d) {
+        csv.append(d.datagramId).append(',')
+           .append(d.busId).append(',')
+           .append(d.lineId).append(',')
+           .append(d.latitude).append(',')
+           .append(d.longitude).append(',');
+        appendCsvText(csv, d.zoneId);
+        csv.append(',');
+        appendCsvText(csv, d.arcId);
+        csv.append(',')
+           .append(Instant.ofEpochMilli(d.timestamp))
+           .append('\n');
+    }
+
+    /**
+     * Quoted CSV field; null becomes an empty unquoted field (NULL for COPY).
+     */
+    private static void appendCsvText(StringBuilder csv, String value) {
+        if (value == null) {
+            return;
+        }
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        csv.append('"');
+    }
+}
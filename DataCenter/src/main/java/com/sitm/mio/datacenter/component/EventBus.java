@@ -4,20 +4,26 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 import com.sitm.mio.datacenter.interfaces.IEventBus;
+import com.sitm.mio.datacenter.model.EventQueueMetrics;
 
 /**
  * Central event bus for DataCenter event distribution.
  * Component from deployment diagram: EventBus
  * 
+ * Handlers run synchronously on the publisher's thread.
+ * See AsyncEventBus for the queued variant.
+ * 
  * Realizes: IEventBus
  */
 public class EventBus implements IEventBus {
     
-    //eventType --> List of handlers
+    //eventType --> List of handlers (copy-on-write, so publish iterates without copying)
     private final Map<Class<?>, List<Consumer<Object>>> handlers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, EventTypeStats> stats = new ConcurrentHashMap<>();
     private volatile boolean running = false;
 
     @Override
@@ -33,9 +39,11 @@ public class EventBus implements IEventBus {
             return;
         }
 
-        List<Consumer<Object>> snapshot = new ArrayList<>(eventHandlers);
+        EventTypeStats typeStats = stats.computeIfAbsent(eventType, k -> new EventTypeStats());
+        typeStats.recordPublished();
 
-        for (Consumer<Object> handler : snapshot) {
+        for (Consumer<Object> handler : eventHandlers) {
+            long startNanos = System.nanoTime();
             try {
                 handler.accept(event);
             } catch (Exception e) {
@@ -43,8 +51,8 @@ public class EventBus implements IEventBus {
                         eventType.getSimpleName() + ": " + e.getMessage());
                         e.printStackTrace();
             }
+            typeStats.recordHandled(System.nanoTime() - startNanos);
         }
-        System.out.println("Publishing event: " + event);
     }
     
     @Override
@@ -59,7 +67,7 @@ public class EventBus implements IEventBus {
         Consumer<Object> consumer = (Consumer<Object>) handler;
 
         handlers
-            .computeIfAbsent(eventType, k -> new ArrayList<>())
+            .computeIfAbsent(eventType, k -> new CopyOnWriteArrayList<>())
             .add(consumer);
     }
     
@@ -82,6 +90,13 @@ public class EventBus implements IEventBus {
         }
     }
     
+    @Override
+    public List<EventQueueMetrics> getMetrics() {
+        List<EventQueueMetrics> result = new ArrayList<>();
+        stats.forEach((type, typeStats) -> result.add(typeStats.toMetrics(type, 0, 0)));
+        return result;
+    }
+    
     @Override
     public void start() {
         running = true;
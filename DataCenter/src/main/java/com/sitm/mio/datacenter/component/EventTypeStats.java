@@ -0,0 +1,42 @@
+package com.sitm.mio.datacenter.component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sitm.mio.datacenter.model.EventQueueMetrics;
+
+/**
+ * Delivery counters for one event type, shared by EventBus and AsyncEventBus.
+ */
+class EventTypeStats {
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder handlerNanos = new LongAdder();
+    private final AtomicLong maxHandlerNanos = new AtomicLong();
+
+    void recordPublished() {
+        published.increment();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordHandled(long elapsedNanos) {
+        handled.increment();
+        handlerNanos.add(elapsedNanos);
+        if (elapsedNanos > maxHandlerNanos.get()) {
+            maxHandlerNanos.accumulateAndGet(elapsedNanos, Math::max);
+        }
+    }
+
+    EventQueueMetrics toMetrics(Class<?> eventType, int queueDepth, int queueCapacity) {
+        long count = handled.sum();
+        double avgMicros = count == 0 ? 0.0 : handlerNanos.sum() / 1_000.0 / count;
+        return new EventQueueMetrics(eventType.getSimpleName(), queueDepth, queueCapacity,
+                published.sum(), dropped.sum(), count,
+                avgMicros, maxHandlerNanos.get() / 1_000.0);
+    }
+}
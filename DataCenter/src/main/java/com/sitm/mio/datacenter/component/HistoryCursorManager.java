@@ -0,0 +1,272 @@
+package com.sitm.mio.datacenter.component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.sitm.mio.datacenter.config.ManageDatabase;
+import com.sitm.mio.datacenter.utils.TimeRangeUtils;
+import SITM.HistoryChunk;
+import SITM.HistoryRecord;
+
+/**
+ * Server-side cursors over mio.datagrams_history for the streaming export.
+ *
+ * Opening a cursor runs the time-bounded range query on a dedicated pooled
+ * connection with autocommit off and a JDBC fetch size, so PostgreSQL
+ * streams the rows through a portal fetchSize at a time instead of
+ * materializing the whole range. Each fetch reads at most maxChunk rows
+ * from the open ResultSet; memory per cursor is one fetch buffer plus the
+ * chunk being returned, whatever the size of the range.
+ *
+ * Every open cursor holds a connection, so at most maxCursors may be open;
+ * cursors are closed when exhausted, on request, or by a reaper once they
+ * have not been fetched for idleTimeoutMs (a client that went away).
+ */
+public class HistoryCursorManager {
+
+    // Same order as the (event_ts, datagram_id) index, so the partitions are scanned in order
+    private static final String SQL_HISTORY_CURSOR =
+        "SELECT datagram_id, bus_id, line_id, gps_x, gps_y, event_ts " +
+        "FROM mio.datagrams_history " +
+        "WHERE event_ts >= ? AND event_ts < ? " +
+        "ORDER BY event_ts, datagram_id";
+
+    private static final class Cursor {
+        private final String id;
+        private final String timeRange;
+        private final Connection con;
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private long lastAccess = System.currentTimeMillis();
+        private long rowsRead;
+        private boolean closed;
+
+        private Cursor(String id, String timeRange, Connection con, PreparedStatement ps, ResultSet rs) {
+            this.id = id;
+            this.timeRange = timeRange;
+            this.con = con;
+            this.ps = ps;
+            this.rs = rs;
+        }
+    }
+
+    private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+    private final Semaphore openPermits;
+    private final int maxCursors;
+    private final int fetchSize;
+    private final int maxChunk;
+    private final long idleTimeoutMs;
+    private ScheduledExecutorService reaper;
+
+    public HistoryCursorManager(int maxCursors, int fetchSize, int maxChunk, long idleTimeoutMs) {
+        this.maxCursors = maxCursors;
+        this.openPermits = new Semaphore(maxCursors);
+        this.fetchSize = fetchSize;
+        this.maxChunk = maxChunk;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Start closing cursors that stay idle longer than idleTimeoutMs.
+     */
+    public void start() {
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HistoryCursorReaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, idleTimeoutMs / 2);
+        reaper.scheduleWithFixedDelay(this::closeIdleCursors, period, period, TimeUnit.MILLISECONDS);
+        System.out.println("[HistoryCursorManager] Started (maxCursors=" + maxCursors + ", fetchSize=" +
+                fetchSize + ", maxChunk=" + maxChunk + ", idleTimeout=" + idleTimeoutMs + "ms)");
+    }
+
+    /**
+     * Stop the reaper and close every open cursor.
+     */
+    public void stop() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        for (Cursor cursor : cursors.values()) {
+            close(cursor);
+        }
+    }
+
+    /**
+     * Open a cursor over the datagrams of the last timeRange, oldest first.
+     *
+     * @param timeRange Time range ("1h", "24h", "7d"...)
+     * @return Cursor ID
+     * @throws IllegalArgumentException if the time range is invalid
+     * @throws IllegalStateException if maxCursors cursors are already open
+     */
+    public String open(String timeRange) throws SQLException {
+        Duration range = TimeRangeUtils.parse(timeRange);
+        if (!openPermits.tryAcquire()) {
+            throw new IllegalStateException("Too many open history cursors (max " + maxCursors + ")");
+        }
+
+        Instant to = Instant.now();
+        Instant from = to.minus(range);
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = ManageDatabase.gConnection();
+            // The PostgreSQL driver only honours the fetch size inside a transaction
+            con.setAutoCommit(false);
+            ps = con.prepareStatement(SQL_HISTORY_CURSOR, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, Timestamp.from(from));
+            ps.setTimestamp(2, Timestamp.from(to));
+            rs = ps.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(rs, ps, con);
+            openPermits.release();
+            throw e;
+        }
+
+        String id = UUID.randomUUID().toString();
+        cursors.put(id, new Cursor(id, timeRange, con, ps, rs));
+        System.out.println("[HistoryCursorManager] Opened cursor " + id + " for the last " + timeRange +
+                " (" + cursors.size() + " open)");
+        return id;
+    }
+
+    /**
+     * Read the next records of a cursor. The cursor is closed once the
+     * range is exhausted (the chunk is then marked done).
+     *
+     * @param cursorId Cursor returned by open
+     * @param maxRecords Records wanted, capped at maxChunk
+     * @return The next chunk
+     * @throws IllegalArgumentException if the cursor is unknown or closed
+     */
+    public HistoryChunk fetch(String cursorId, int maxRecords) throws SQLException {
+        Cursor cursor = cursors.get(cursorId);
+        if (cursor == null) {
+            throw new IllegalArgumentException("Unknown or expired history cursor: " + cursorId);
+        }
+
+        synchronized (cursor) {
+            if (cursor.closed) {
+                throw new IllegalArgumentException("Unknown or expired history cursor: " + cursorId);
+            }
+
+            int limit = Math.max(1, Math.min(maxRecords, maxChunk));
+            List<HistoryRecord> records = new ArrayList<>(Math.min(limit, fetchSize));
+            boolean done = false;
+            try {
+                while (records.size() < limit) {
+                    if (!cursor.rs.next()) {
+                        done = true;
+                        break;
+                    }
+                    records.add(mapRowToHistoryRecord(cursor.rs));
+                }
+            } catch (SQLException e) {
+                close(cursor);
+                throw e;
+            }
+
+            cursor.rowsRead += records.size();
+            cursor.lastAccess = System.currentTimeMillis();
+            if (done) {
+                close(cursor);
+            }
+            return new HistoryChunk(records.toArray(new HistoryRecord[0]), done);
+        }
+    }
+
+    /**
+     * Close a cursor before it is exhausted. Unknown IDs are ignored.
+     */
+    public void close(String cursorId) {
+        Cursor cursor = cursors.get(cursorId);
+        if (cursor != null) {
+            close(cursor);
+        }
+    }
+
+    /**
+     * Get the number of open cursors.
+     */
+    public int getOpenCursors() {
+        return cursors.size();
+    }
+
+    private void close(Cursor cursor) {
+        synchronized (cursor) {
+            if (cursor.closed) {
+                return;
+            }
+            cursor.closed = true;
+            cursors.remove(cursor.id);
+            try {
+                // Read-only: end the transaction before the connection goes back to the pool
+                cursor.con.rollback();
+            } catch (SQLException e) {
+                // Connection is discarded or reset by the pool
+            }
+            closeQuietly(cursor.rs, cursor.ps, cursor.con);
+            openPermits.release();
+        }
+        System.out.println("[HistoryCursorManager] Closed cursor " + cursor.id + " for the last " +
+                cursor.timeRange + " after " + cursor.rowsRead + " rows");
+    }
+
+    private void closeIdleCursors() {
+        long now = System.currentTimeMillis();
+        for (Cursor cursor : cursors.values()) {
+            // Checked under the cursor lock so a fetch in progress is never cut off
+            synchronized (cursor) {
+                if (!cursor.closed && now - cursor.lastAccess > idleTimeoutMs) {
+                    System.out.println("[HistoryCursorManager] Cursor " + cursor.id + " idle for more than " +
+                            idleTimeoutMs + "ms, closing");
+                    close(cursor);
+                }
+            }
+        }
+    }
+
+    private static HistoryRecord mapRowToHistoryRecord(ResultSet rs) throws SQLException {
+        Timestamp ts = rs.getTimestamp("event_ts");
+        // NOTE: In database, gps_x = latitude, gps_y = longitude
+        return new HistoryRecord(
+                rs.getLong("datagram_id"),
+                rs.getLong("bus_id"),
+                rs.getLong("line_id"),
+                rs.getLong("gps_x") / 1e7,
+                rs.getLong("gps_y") / 1e7,
+                ts != null ? ts.getTime() : 0L
+        );
+    }
+
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                // Already closed or connection broken
+            }
+        }
+    }
+}
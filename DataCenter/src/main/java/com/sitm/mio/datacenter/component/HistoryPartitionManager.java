@@ -0,0 +1,371 @@
+package com.sitm.mio.datacenter.component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sitm.mio.datacenter.config.ManageDatabase;
+
+/**
+ * Keeps mio.datagrams_history range-partitioned by event_ts.
+ *
+ * The table is split into one partition per day or per hour (UTC), named
+ * datagrams_history_pYYYYMMDD or datagrams_history_pYYYYMMDDHH. A
+ * maintenance task creates the partitions for the current period and the
+ * next premakePeriods, and drops those that ended more than the retention
+ * ago. Queries bounded on event_ts then only touch the partitions of their
+ * range (partition pruning), however large the table grows. A default
+ * partition catches rows outside every range, so inserts never fail.
+ * Dropping a partition locks the parent exclusively, so it is tried with a
+ * short lock_timeout and left for the next run if readers or writers hold
+ * the table meanwhile. Only the managed pYYYYMMDD(HH) partitions expire:
+ * the legacy and default partitions are kept until removed by hand.
+ *
+ * The indexes the readers rely on (event_ts keyset, raw_id keyset, rows
+ * without event_ts) are created whether or not the table is partitioned;
+ * on a plain table they are built CONCURRENTLY so inserts go on meanwhile.
+ *
+ * An existing unpartitioned table can be converted once (migrate): it is
+ * renamed to datagrams_history_legacy and attached as the partition for
+ * everything before the first managed period. A range partition cannot hold
+ * NULL keys, so legacy rows without event_ts are moved to the default
+ * partition first. The conversion runs in one transaction and is rolled
+ * back if any step fails. It takes an ACCESS EXCLUSIVE lock on the table
+ * and scans it, so it is opt-in (history.partition.migrate) and meant for
+ * a single start in a maintenance window.
+ */
+public class HistoryPartitionManager {
+
+    public enum Granularity {
+        DAILY(ChronoUnit.DAYS, "yyyyMMdd"),
+        HOURLY(ChronoUnit.HOURS, "yyyyMMddHH");
+
+        private final ChronoUnit unit;
+        private final DateTimeFormatter suffix;
+
+        Granularity(ChronoUnit unit, String suffixPattern) {
+            this.unit = unit;
+            this.suffix = DateTimeFormatter.ofPattern(suffixPattern);
+        }
+    }
+
+    private static final DateTimeFormatter BOUND_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    private static final String SCHEMA = "mio";
+    private static final String TABLE = "datagrams_history";
+    private static final String TABLE_NAME = SCHEMA + "." + TABLE;
+    private static final String LEGACY_TABLE = TABLE + "_legacy";
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+
+    // relkind of the table: 'p' partitioned, 'r' plain, no row if missing
+    private static final String SQL_RELKIND =
+        "SELECT c.relkind FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "WHERE n.nspname = ? AND c.relname = ?";
+    private static final String SQL_PARTITIONS =
+        "SELECT c.relname FROM pg_inherits i " +
+        "JOIN pg_class c ON c.oid = i.inhrelid " +
+        "JOIN pg_class p ON p.oid = i.inhparent " +
+        "JOIN pg_namespace n ON n.oid = p.relnamespace " +
+        "WHERE n.nspname = ? AND p.relname = ?";
+    private static final String SQL_LEGACY_MAX_TS =
+        "SELECT max(event_ts) FROM " + SCHEMA + "." + LEGACY_TABLE;
+    // Same columns in the same order (CREATE TABLE ... LIKE), so * matches on both sides
+    private static final String SQL_MOVE_NULL_TS =
+        "WITH moved AS (DELETE FROM " + SCHEMA + "." + LEGACY_TABLE + " WHERE event_ts IS NULL RETURNING *) " +
+        "INSERT INTO " + SCHEMA + "." + DEFAULT_PARTITION + " SELECT * FROM moved";
+    // Serves the time-bounded history queries and the keyset scans of DatabaseDatagramSource
+    // and DatagramHistoryReader (BusSimulator, TIMED pacing)
+    private static final String INDEX_EVENT_TS = "idx_datagrams_history_event_ts";
+    private static final String INDEX_EVENT_TS_COLUMNS = "(event_ts, datagram_id)";
+    // Serves the raw_id keyset scan of the BusSimulator (DatagramHistoryReader). A unique index on a
+    // partitioned table must include event_ts, so this one is plain; the raw_id sequence keeps values unique
+    private static final String INDEX_RAW_ID = "idx_datagrams_history_raw_id";
+    private static final String INDEX_RAW_ID_COLUMNS = "(raw_id)";
+    // Serves the raw_id scan DatabaseDatagramSource uses for rows without event_ts
+    private static final String INDEX_NULL_TS = "idx_datagrams_history_null_ts";
+    private static final String INDEX_NULL_TS_COLUMNS = "(raw_id) WHERE event_ts IS NULL";
+    private static final String[][] INDEXES = {
+        {INDEX_EVENT_TS, INDEX_EVENT_TS_COLUMNS},
+        {INDEX_RAW_ID, INDEX_RAW_ID_COLUMNS},
+        {INDEX_NULL_TS, INDEX_NULL_TS_COLUMNS}
+    };
+    // A failed CREATE INDEX CONCURRENTLY leaves an invalid index that IF NOT EXISTS would keep
+    private static final String SQL_INDEX_INVALID =
+        "SELECT NOT i.indisvalid FROM pg_index i " +
+        "JOIN pg_class c ON c.oid = i.indexrelid " +
+        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "WHERE n.nspname = ? AND c.relname = ?";
+    // Bound on the wait for the parent's ACCESS EXCLUSIVE lock when dropping a partition
+    private static final String DROP_LOCK_TIMEOUT = "2s";
+    // lock_not_available
+    private static final String SQLSTATE_LOCK_TIMEOUT = "55P03";
+
+    private final Granularity granularity;
+    private final int premakePeriods;
+    private final Duration retention;
+    private final long maintenanceIntervalMinutes;
+    private final boolean migrate;
+    private ScheduledExecutorService scheduler;
+
+    public HistoryPartitionManager(Granularity granularity, int premakePeriods, Duration retention,
+                                   long maintenanceIntervalMinutes, boolean migrate) {
+        this.granularity = granularity;
+        this.premakePeriods = premakePeriods;
+        this.retention = retention;
+        this.maintenanceIntervalMinutes = maintenanceIntervalMinutes;
+        this.migrate = migrate;
+    }
+
+    /**
+     * Run maintenance now and then every maintenanceIntervalMinutes.
+     */
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HistoryPartitionMaintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runMaintenance, 0, maintenanceIntervalMinutes, TimeUnit.MINUTES);
+        System.out.println("[HistoryPartitionManager] Started (" + granularity + " partitions, premake=" +
+                premakePeriods + ", retention=" + retention.toDays() + "d)");
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Create upcoming partitions and drop expired ones.
+     */
+    public void runMaintenance() {
+        try (Connection con = ManageDatabase.gConnection()) {
+            String relkind = relkind(con);
+            if (relkind == null) {
+                System.err.println("[HistoryPartitionManager] " + TABLE_NAME + " does not exist, nothing to manage");
+                return;
+            }
+            if (!"p".equals(relkind)) {
+                if (!migrate) {
+                    System.err.println("[HistoryPartitionManager] " + TABLE_NAME +
+                            " is not partitioned; set history.partition.migrate=true to convert it");
+                    createIndexes(con, true);
+                    return;
+                }
+                convertToPartitioned(con);
+            }
+
+            createPartitions(con);
+            dropExpiredPartitions(con);
+            createIndexes(con, false);
+        } catch (Exception e) {
+            System.err.println("[HistoryPartitionManager] Maintenance failed: " + e.getMessage());
+        }
+    }
+
+    private String relkind(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(SQL_RELKIND)) {
+            ps.setString(1, SCHEMA);
+            ps.setString(2, TABLE);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private void convertToPartitioned(Connection con) throws SQLException {
+        System.out.println("[HistoryPartitionManager] Converting " + TABLE_NAME + " to a partitioned table...");
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (Statement st = con.createStatement()) {
+            st.execute("ALTER TABLE " + TABLE_NAME + " RENAME TO " + LEGACY_TABLE);
+            // Free the names for the parent's indexes; once attached, the legacy ones are reused
+            // as its partition indexes instead of being built again
+            for (String[] index : INDEXES) {
+                st.execute("ALTER INDEX IF EXISTS " + SCHEMA + "." + index[0] +
+                        " RENAME TO " + index[0] + "_legacy");
+            }
+            st.execute("CREATE TABLE " + TABLE_NAME + " (LIKE " + SCHEMA + "." + LEGACY_TABLE +
+                    " INCLUDING DEFAULTS) PARTITION BY RANGE (event_ts)");
+
+            // The legacy rows cover everything up to the end of the current period (or of their latest row)
+            Instant upper = periodStart(Instant.now()).plus(1, granularity.unit);
+            try (ResultSet rs = st.executeQuery(SQL_LEGACY_MAX_TS)) {
+                if (rs.next() && rs.getTimestamp(1) != null) {
+                    Instant legacyMax = rs.getTimestamp(1).toInstant();
+                    Instant legacyUpper = periodStart(legacyMax).plus(1, granularity.unit);
+                    if (legacyUpper.isAfter(upper)) {
+                        upper = legacyUpper;
+                    }
+                }
+            }
+            // NULL event_ts only fits the default partition; the ATTACH below would reject it
+            st.execute("CREATE TABLE IF NOT EXISTS " + SCHEMA + "." + DEFAULT_PARTITION +
+                    " PARTITION OF " + TABLE_NAME + " DEFAULT");
+            int nullRows = st.executeUpdate(SQL_MOVE_NULL_TS);
+            if (nullRows > 0) {
+                System.out.println("[HistoryPartitionManager] Moved " + nullRows +
+                        " rows without event_ts to " + DEFAULT_PARTITION);
+            }
+            st.execute("ALTER TABLE " + TABLE_NAME + " ATTACH PARTITION " + SCHEMA + "." + LEGACY_TABLE +
+                    " FOR VALUES FROM (MINVALUE) TO (" + literal(upper) + ")");
+            for (String[] index : INDEXES) {
+                st.execute(createIndex(index, false));
+            }
+            con.commit();
+            System.out.println("[HistoryPartitionManager] " + TABLE_NAME + " converted; existing rows kept in " +
+                    LEGACY_TABLE + " (up to " + upper + ")");
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Create the reader indexes that are missing; no-op once they exist, and
+     * new partitions inherit them.
+     *
+     * @param concurrently Build without blocking inserts (plain table only,
+     *        CONCURRENTLY is not supported on a partitioned parent)
+     */
+    private void createIndexes(Connection con, boolean concurrently) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            for (String[] index : INDEXES) {
+                if (isInvalid(con, index[0])) {
+                    System.err.println("[HistoryPartitionManager] Rebuilding invalid index " + index[0]);
+                    st.execute("DROP INDEX " + (concurrently ? "CONCURRENTLY " : "") +
+                            "IF EXISTS " + SCHEMA + "." + index[0]);
+                }
+                st.execute(createIndex(index, concurrently));
+            }
+        }
+    }
+
+    private static String createIndex(String[] index, boolean concurrently) {
+        return "CREATE INDEX " + (concurrently ? "CONCURRENTLY " : "") + "IF NOT EXISTS " +
+                index[0] + " ON " + TABLE_NAME + " " + index[1];
+    }
+
+    private boolean isInvalid(Connection con, String indexName) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(SQL_INDEX_INVALID)) {
+            ps.setString(1, SCHEMA);
+            ps.setString(2, indexName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void createPartitions(Connection con) throws SQLException {
+        Instant start = periodStart(Instant.now());
+        try (Statement st = con.createStatement()) {
+            for (int i = 0; i <= premakePeriods; i++) {
+                Instant from = start.plus(i, granularity.unit);
+                Instant to = from.plus(1, granularity.unit);
+                String name = PARTITION_PREFIX + granularity.suffix.format(LocalDateTime.ofInstant(from, ZoneOffset.UTC));
+                try {
+                    st.execute("CREATE TABLE IF NOT EXISTS " + SCHEMA + "." + name +
+                            " PARTITION OF " + TABLE_NAME +
+                            " FOR VALUES FROM (" + literal(from) + ") TO (" + literal(to) + ")");
+                } catch (SQLException e) {
+                    // 42P17: the range is still covered by the legacy partition
+                    if (!"42P17".equals(e.getSQLState())) {
+                        // e.g. the default partition already holds rows of this range
+                        System.err.println("[HistoryPartitionManager] Could not create partition " + name +
+                                ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private void dropExpiredPartitions(Connection con) throws SQLException {
+        Instant cutoff = Instant.now().minus(retention);
+        List<String> expired = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(SQL_PARTITIONS)) {
+            ps.setString(1, SCHEMA);
+            ps.setString(2, TABLE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    Instant end = partitionEnd(name);
+                    if (end != null && !end.isAfter(cutoff)) {
+                        expired.add(name);
+                    }
+                }
+            }
+        }
+
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (Statement st = con.createStatement()) {
+            for (String name : expired) {
+                // Waiting in the lock queue would block every insert queued behind the DROP
+                st.execute("SET LOCAL lock_timeout = '" + DROP_LOCK_TIMEOUT + "'");
+                try {
+                    st.execute("DROP TABLE IF EXISTS " + SCHEMA + "." + name);
+                    con.commit();
+                    System.out.println("[HistoryPartitionManager] Dropped expired partition " + name);
+                } catch (SQLException e) {
+                    con.rollback();
+                    if (!SQLSTATE_LOCK_TIMEOUT.equals(e.getSQLState())) {
+                        throw e;
+                    }
+                    System.err.println("[HistoryPartitionManager] " + TABLE_NAME +
+                            " is busy, dropping " + name + " on the next run");
+                    return;
+                }
+            }
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * End of the range of a managed partition, or null for other partitions
+     * (legacy, default, or created with another granularity).
+     */
+    private Instant partitionEnd(String partitionName) {
+        if (!partitionName.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        String suffix = partitionName.substring(PARTITION_PREFIX.length());
+        try {
+            LocalDateTime from = granularity == Granularity.DAILY
+                    ? java.time.LocalDate.parse(suffix, granularity.suffix).atStartOfDay()
+                    : LocalDateTime.parse(suffix, granularity.suffix);
+            return from.toInstant(ZoneOffset.UTC).plus(1, granularity.unit);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * SQL timestamptz literal of a partition bound (UTC).
+     */
+    private static String literal(Instant instant) {
+        return "'" + BOUND_FORMAT.format(instant) + "+00'";
+    }
+
+    private Instant periodStart(Instant instant) {
+        return instant.truncatedTo(granularity.unit);
+    }
+}
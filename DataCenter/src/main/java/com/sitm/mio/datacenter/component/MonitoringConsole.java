@@ -4,7 +4,9 @@ import java.sql.Connection;
 
 import com.sitm.mio.datacenter.config.ManageDatabase;
 import com.sitm.mio.datacenter.interfaces.IDatagramReceiver;
+import com.sitm.mio.datacenter.interfaces.IDatagramSource;
 import com.sitm.mio.datacenter.interfaces.IEventBus;
+import com.sitm.mio.datacenter.interfaces.IEventPublisherStats;
 import com.sitm.mio.datacenter.interfaces.IMonitoringConsole;
 import com.sitm.mio.datacenter.model.SystemHealthStatus;
 import com.sitm.mio.datacenter.model.SystemMetrics;
@@ -18,6 +20,9 @@ import com.sitm.mio.datacenter.model.SystemMetrics;
 public class MonitoringConsole implements IMonitoringConsole {
     private final IDatagramReceiver datagramReceiver;
     private final IEventBus eventBus;
+    private IEventPublisherStats eventPublisher;
+    private EnrichedDatagramPersister datagramPersister;
+    private IDatagramSource datagramSource;
     
     private long eventsLogged = 0;
 
@@ -28,6 +33,31 @@ public class MonitoringConsole implements IMonitoringConsole {
     }
 
 
+    /**
+     * Set the ICE publisher whose subscriber metrics are reported.
+     * Called from Main after ICE initialization.
+     */
+    @Override
+    public void setEventPublisher(IEventPublisherStats eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Set the persister whose write-behind metrics are reported.
+     */
+    @Override
+    public void setDatagramPersister(EnrichedDatagramPersister persister) {
+        this.datagramPersister = persister;
+    }
+
+    /**
+     * Set the source whose ingestion counters are reported.
+     */
+    @Override
+    public void setDatagramSource(IDatagramSource datagramSource) {
+        this.datagramSource = datagramSource;
+    }
+
     @Override
     public Object getSystemHealth() {
         boolean dbUp = checkDatabase();
@@ -49,7 +79,12 @@ public class MonitoringConsole implements IMonitoringConsole {
     @Override
     public Object getMetrics() {
         SystemMetrics metrics =
-                new SystemMetrics(eventsLogged, System.currentTimeMillis());
+                new SystemMetrics(eventsLogged, System.currentTimeMillis(),
+                        ManageDatabase.getPoolMetrics(),
+                        eventBus != null ? eventBus.getMetrics() : java.util.List.of(),
+                        eventPublisher != null ? eventPublisher.getSubscriberMetrics() : java.util.List.of(),
+                        datagramPersister != null ? datagramPersister.getMetrics() : null,
+                        datagramSource != null ? datagramSource.getMetrics() : null);
         System.out.println("[MonitoringConsole] Metrics: " + metrics);
         return metrics;
     }
@@ -0,0 +1,264 @@
+package com.sitm.mio.datacenter.component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sitm.mio.datacenter.interfaces.IArcZoneResolver;
+import com.sitm.mio.datacenter.model.WindowStatistics;
+import com.sitm.mio.datacenter.utils.GeoUtils;
+import com.sitm.mio.datacenter.utils.LongIndexMap;
+import com.sitm.mio.datacenter.utils.SlidingWindowStats;
+
+/**
+ * Incremental per-arc speed and per-stop-pair travel time statistics,
+ * computed from consecutive datagrams of the same bus as the Controller
+ * processes them.
+ *
+ * - Speed: distance over time between a bus's previous fix and the
+ *   current one, attributed to the arc of the current fix. Gaps longer
+ *   than maxGapMillis and implausible speeds are skipped.
+ * - Travel time: a bus is at a stop while it is within stopRadiusMeters
+ *   of it. When it reaches a stop other than the last one it was at, the
+ *   time since it left that stop is a sample for the directed pair.
+ *
+ * Both feed SlidingWindowStats, so every datagram costs O(1) and the
+ * statistics always cover the last window of event time. The previous fix
+ * of each bus is kept in primitive arrays indexed by bus slot. When the bus
+ * table is full, buses silent for longer than any fix could still be paired
+ * with (maxGapMillis and maxTravelMillis) give their slot back, at most once
+ * per window bucket of event time.
+ *
+ * Event time only moves forward, so a single fix from a bus clock set in
+ * the future would empty every window and make the later fixes of that bus
+ * look out of order. Fixes more than maxClockSkewMillis ahead of the
+ * DataCenter clock are therefore rejected before they touch any state.
+ */
+public class TravelStatsAggregator {
+
+    // Histograms: 3 km/h bins up to 96 km/h, 30 s bins up to 32 min
+    private static final double SPEED_HISTOGRAM_MAX_KMH = 96.0;
+    private static final int SPEED_BINS = 32;
+    private static final double TRAVEL_HISTOGRAM_MAX_MINUTES = 32.0;
+    private static final int TRAVEL_BINS = 64;
+
+    private final IArcZoneResolver arcZoneResolver;
+    private final SlidingWindowStats arcSpeeds;
+    private final SlidingWindowStats pairTravelTimes;
+    private final long windowMillis;
+    private final long maxGapMillis;
+    private final double maxSpeedKmh;
+    private final double stopRadiusMeters;
+    private final long maxTravelMillis;
+    private final long maxClockSkewMillis;
+    private final long bucketMillis;
+
+    // arcId -> zone of the first fix seen on it
+    private final Map<Long, String> arcZones = new ConcurrentHashMap<>();
+
+    // Previous fix per bus, guarded by the instance lock
+    private final LongIndexMap buses;
+    private final long[] lastTimestamp;
+    private final double[] lastLatitude;
+    private final double[] lastLongitude;
+    private final long[] lastStopId;
+    private final long[] lastStopTimestamp;
+    private long untrackedDatagrams;
+    private long futureDatagrams;
+    private long reclaimedBuses;
+    private long latestTimestamp = Long.MIN_VALUE;
+    private long lastBusReclaim = Long.MIN_VALUE;
+
+    public TravelStatsAggregator(IArcZoneResolver arcZoneResolver, int maxBuses, int maxArcs, int maxStopPairs,
+                                 int windowBuckets, long windowMillis, long maxGapMillis, double maxSpeedKmh,
+                                 double stopRadiusMeters, long maxTravelMillis, long maxClockSkewMillis) {
+        this.arcZoneResolver = arcZoneResolver;
+        long bucketMillis = Math.max(1L, windowMillis / windowBuckets);
+        this.arcSpeeds = new SlidingWindowStats(maxArcs, windowBuckets, bucketMillis,
+                SPEED_HISTOGRAM_MAX_KMH, SPEED_BINS);
+        this.pairTravelTimes = new SlidingWindowStats(maxStopPairs, windowBuckets, bucketMillis,
+                TRAVEL_HISTOGRAM_MAX_MINUTES, TRAVEL_BINS);
+        this.windowMillis = windowMillis;
+        this.maxGapMillis = maxGapMillis;
+        this.maxSpeedKmh = maxSpeedKmh;
+        this.stopRadiusMeters = stopRadiusMeters;
+        this.maxTravelMillis = maxTravelMillis;
+        this.maxClockSkewMillis = maxClockSkewMillis;
+        this.bucketMillis = bucketMillis;
+
+        this.buses = new LongIndexMap(maxBuses);
+        this.lastTimestamp = new long[maxBuses];
+        this.lastLatitude = new double[maxBuses];
+        this.lastLongitude = new double[maxBuses];
+        this.lastStopId = new long[maxBuses];
+        this.lastStopTimestamp = new long[maxBuses];
+
+        System.out.println("[TravelStatsAggregator] Tracking up to " + maxBuses + " buses, " + maxArcs +
+                " arcs, " + maxStopPairs + " stop pairs over " + getWindowMinutes() + " min");
+    }
+
+    /**
+     * Update the statistics with a bus fix.
+     *
+     * @param arcId Arc of the fix, or null if it could not be resolved
+     */
+    public void onDatagram(long busId, double latitude, double longitude, long timestampMillis,
+                           Long arcId, String zoneId) {
+        if (timestampMillis > System.currentTimeMillis() + maxClockSkewMillis) {
+            synchronized (this) {
+                futureDatagrams++;
+            }
+            return;
+        }
+        long stopId = arcZoneResolver.getNearestStopId(latitude, longitude, stopRadiusMeters);
+
+        double speedKmh = -1.0;
+        long fromStopId = -1L;
+        long travelMillis = 0L;
+
+        synchronized (this) {
+            latestTimestamp = Math.max(latestTimestamp, timestampMillis);
+            int slot = buses.get(busId);
+            if (slot < 0) {
+                slot = buses.getOrAdd(busId);
+                if (slot < 0 && reclaimIdleBuses() > 0) {
+                    slot = buses.getOrAdd(busId);
+                }
+                if (slot < 0) {
+                    untrackedDatagrams++;
+                    return;
+                }
+                lastTimestamp[slot] = Long.MIN_VALUE;
+                lastStopId[slot] = -1L;
+            }
+
+            long previous = lastTimestamp[slot];
+            if (previous != Long.MIN_VALUE && timestampMillis <= previous) {
+                // Duplicate or out of order: nothing to measure against
+                return;
+            }
+            if (previous != Long.MIN_VALUE && timestampMillis - previous <= maxGapMillis) {
+                double meters = GeoUtils.distanceMeters(lastLatitude[slot], lastLongitude[slot], latitude, longitude);
+                speedKmh = meters / (timestampMillis - previous) * 3600.0;
+            }
+            lastTimestamp[slot] = timestampMillis;
+            lastLatitude[slot] = latitude;
+            lastLongitude[slot] = longitude;
+
+            if (stopId >= 0) {
+                if (lastStopId[slot] >= 0 && lastStopId[slot] != stopId) {
+                    fromStopId = lastStopId[slot];
+                    travelMillis = timestampMillis - lastStopTimestamp[slot];
+                }
+                // While the bus stays at a stop this keeps moving, so travel is counted from departure
+                lastStopId[slot] = stopId;
+                lastStopTimestamp[slot] = timestampMillis;
+            }
+        }
+
+        if (arcId != null && speedKmh >= 0.0 && speedKmh <= maxSpeedKmh) {
+            arcSpeeds.add(arcId, speedKmh, timestampMillis);
+            if (zoneId != null) {
+                arcZones.putIfAbsent(arcId, zoneId);
+            }
+        }
+        if (fromStopId >= 0 && travelMillis <= maxTravelMillis) {
+            pairTravelTimes.add(pairKey(fromStopId, stopId), travelMillis / 60000.0, timestampMillis);
+        }
+    }
+
+    /**
+     * Get the speed statistics of an arc over the window.
+     * @return Speeds in km/h, or null if no bus crossed it in the window
+     */
+    public WindowStatistics getArcSpeed(long arcId) {
+        return arcSpeeds.get(arcId);
+    }
+
+    /**
+     * Get the speed statistics of every arc in a zone with data in the window.
+     * @return arcId -> speeds in km/h
+     */
+    public Map<Long, WindowStatistics> getZoneArcSpeeds(String zoneId) {
+        Map<Long, WindowStatistics> result = new LinkedHashMap<>();
+        for (Map.Entry<Long, String> arc : arcZones.entrySet()) {
+            if (arc.getValue().equals(zoneId)) {
+                WindowStatistics stats = arcSpeeds.get(arc.getKey());
+                if (stats != null) {
+                    result.put(arc.getKey(), stats);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the travel time statistics between two consecutive stops.
+     * @return Travel times in minutes, or null if no bus made the trip in the window
+     */
+    public WindowStatistics getTravelTime(long originStopId, long destinationStopId) {
+        return pairTravelTimes.get(pairKey(originStopId, destinationStopId));
+    }
+
+    public long getWindowMinutes() {
+        return windowMillis / 60000;
+    }
+
+    /**
+     * Granularity at which samples leave the window, i.e. how long a live
+     * answer stays accurate.
+     */
+    public long getBucketMillis() {
+        return pairTravelTimes.getBucketMillis();
+    }
+
+    public int getTrackedArcs() {
+        return arcSpeeds.size();
+    }
+
+    public int getTrackedStopPairs() {
+        return pairTravelTimes.size();
+    }
+
+    /**
+     * Datagrams and samples dropped because a table was full or the fix was dated in the future.
+     */
+    public synchronized long getRejected() {
+        return untrackedDatagrams + futureDatagrams + arcSpeeds.getRejected() + pairTravelTimes.getRejected();
+    }
+
+    /**
+     * Idle buses, arcs and stop pairs dropped to make room for new ones.
+     */
+    public synchronized long getReclaimed() {
+        return reclaimedBuses + arcSpeeds.getReclaimed() + pairTravelTimes.getReclaimed();
+    }
+
+    /**
+     * Free the slots of buses whose last fix can no longer yield a speed or
+     * travel time sample. Called with the instance lock held.
+     * @return Number of slots freed
+     */
+    private int reclaimIdleBuses() {
+        if (lastBusReclaim != Long.MIN_VALUE && latestTimestamp - lastBusReclaim < bucketMillis) {
+            return 0;
+        }
+        lastBusReclaim = latestTimestamp;
+
+        long oldest = latestTimestamp - Math.max(maxGapMillis, maxTravelMillis);
+        int freed = 0;
+        for (int slot = 0; slot < buses.slotCount(); slot++) {
+            if (!buses.isFree(slot) && lastTimestamp[slot] < oldest) {
+                buses.remove(buses.keyAt(slot));
+                freed++;
+            }
+        }
+        reclaimedBuses += freed;
+        return freed;
+    }
+
+    // Directed, unlike arc IDs; same 10^6 stop ID space as ArcZoneResolver.getArcId
+    private static long pairKey(long originStopId, long destinationStopId) {
+        return originStopId * 1_000_000L + destinationStopId;
+    }
+}
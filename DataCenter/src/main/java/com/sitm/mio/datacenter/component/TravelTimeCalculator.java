@@ -1,6 +1,8 @@
 package com.sitm.mio.datacenter.component;
 
 import com.sitm.mio.datacenter.interfaces.ITravelTimeStatsRepository;
+import com.sitm.mio.datacenter.model.TravelTimeAnswer;
+import com.sitm.mio.datacenter.model.WindowStatistics;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,30 +12,122 @@ import java.util.List;
  * 
  * This is the DataCenter's implementation of travel time calculation,
  * separate from OperationControl's CalculateAverageTime which is for operators.
+ * 
+ * Live statistics from the TravelStatsAggregator are preferred when buses
+ * made the trip within its window; otherwise the stored statistics are used.
+ * Live answers change as the window slides, so they may only be cached for
+ * one window bucket.
  */
 public class TravelTimeCalculator {
     
     private final ITravelTimeStatsRepository travelTimeRepo;
+    private TravelStatsAggregator travelStats;
     
     public TravelTimeCalculator(ITravelTimeStatsRepository travelTimeRepo) {
         this.travelTimeRepo = travelTimeRepo;
     }
     
+    /**
+     * Set the aggregator with live travel times between consecutive stops.
+     */
+    public void setTravelStatsAggregator(TravelStatsAggregator travelStats) {
+        this.travelStats = travelStats;
+    }
+    
     /**
      * Calculate average travel time between two stops.
      * 
      * @param originStopId Origin stop ID
      * @param destinationStopId Destination stop ID
-     * @return Formatted message with travel time information
+     * @return Formatted message with travel time information, and its cache TTL
      */
-    public String calculateTravelTime(long originStopId, long destinationStopId) {
+    public TravelTimeAnswer calculateTravelTime(long originStopId, long destinationStopId) {
         System.out.println("[TravelTimeCalculator] Calculating travel time: " + 
                           originStopId + " -> " + destinationStopId);
         
+        TravelTimeAnswer live = liveTravelTime(originStopId, destinationStopId);
+        if (live != null) {
+            return live;
+        }
+        
+        // Query historical travel time data
+        List<Double> travelTimes = queryTravelTimes(originStopId, destinationStopId);
+        return new TravelTimeAnswer(formatTravelTime(originStopId, destinationStopId, travelTimes), 0L);
+    }
+    
+    /**
+     * Calculate average travel times for several stop pairs.
+     * Historical data for all pairs is fetched with a single query.
+     * 
+     * @param originStopIds Origin stop IDs
+     * @param destinationStopIds Destination stop IDs, same length as originStopIds
+     * @return Formatted messages and their cache TTLs, one per pair, in the order of the arrays
+     */
+    public TravelTimeAnswer[] calculateTravelTimes(long[] originStopIds, long[] destinationStopIds) {
+        System.out.println("[TravelTimeCalculator] Calculating travel times for " + 
+                          originStopIds.length + " stop pairs");
+        
+        TravelTimeAnswer[] messages = new TravelTimeAnswer[originStopIds.length];
+        List<Integer> stored = new ArrayList<>();
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = liveTravelTime(originStopIds[i], destinationStopIds[i]);
+            if (messages[i] == null) {
+                stored.add(i);
+            }
+        }
+        if (stored.isEmpty()) {
+            return messages;
+        }
+        
+        // Pairs without live data: one query for all of them
+        long[] origins = new long[stored.size()];
+        long[] destinations = new long[stored.size()];
+        for (int j = 0; j < origins.length; j++) {
+            origins[j] = originStopIds[stored.get(j)];
+            destinations[j] = destinationStopIds[stored.get(j)];
+        }
+        List<List<Double>> travelTimes = queryTravelTimesBatch(origins, destinations);
+        for (int j = 0; j < origins.length; j++) {
+            messages[stored.get(j)] = new TravelTimeAnswer(
+                formatTravelTime(origins[j], destinations[j], travelTimes.get(j)), 0L);
+        }
+        return messages;
+    }
+    
+    /**
+     * Build the citizen answer for a pair from the live statistics, cacheable
+     * until the window next slides.
+     * @return Answer, or null if no bus made the trip within the window
+     */
+    private TravelTimeAnswer liveTravelTime(long originStopId, long destinationStopId) {
+        if (travelStats == null) {
+            return null;
+        }
+        WindowStatistics live = travelStats.getTravelTime(originStopId, destinationStopId);
+        if (live == null) {
+            return null;
+        }
+        
+        System.out.println("[TravelTimeCalculator] Live result: " + live.getMean() + " minutes (avg)");
+        String message = String.format(
+            "Travel time from stop %d to stop %d:\n" +
+            "  Average: %.1f minutes\n" +
+            "  Range: %.1f - %.1f minutes\n" +
+            "  9 in 10 trips under: %.1f minutes\n" +
+            "  Based on %d trips in the last %d minutes",
+            originStopId, destinationStopId,
+            live.getMean(), live.getMin(), live.getMax(), live.getP90(),
+            live.getCount(), travelStats.getWindowMinutes()
+        );
+        return new TravelTimeAnswer(message, travelStats.getBucketMillis());
+    }
+    
+    /**
+     * Build the citizen message for a pair from its historical travel times,
+     * simulating them when there are none.
+     */
+    private String formatTravelTime(long originStopId, long destinationStopId, List<Double> travelTimes) {
         try {
-            // Query historical travel time data
-            List<Double> travelTimes = queryTravelTimes(originStopId, destinationStopId);
-            
             if (travelTimes.isEmpty()) {
                 // Fallback to simulation
                 System.out.println("[TravelTimeCalculator] No historical data, using simulation");
@@ -84,6 +178,26 @@ public class TravelTimeCalculator {
         return new ArrayList<>();
     }
     
+    /**
+     * Query historical travel times for several pairs from repository.
+     */
+    private List<List<Double>> queryTravelTimesBatch(long[] originStopIds, long[] destinationStopIds) {
+        try {
+            if (travelTimeRepo instanceof TravelTimeStatsRepository) {
+                TravelTimeStatsRepository repo = (TravelTimeStatsRepository) travelTimeRepo;
+                return repo.queryTravelTimesBatch(originStopIds, destinationStopIds);
+            }
+        } catch (Exception e) {
+            System.err.println("[TravelTimeCalculator] Error querying data: " + e.getMessage());
+        }
+        
+        List<List<Double>> empty = new ArrayList<>(originStopIds.length);
+        for (int i = 0; i < originStopIds.length; i++) {
+            empty.add(new ArrayList<>());
+        }
+        return empty;
+    }
+    
     /**
      * Simulate travel times (fallback when no historical data available).
      */
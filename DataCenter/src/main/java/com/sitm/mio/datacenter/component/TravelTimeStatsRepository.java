@@ -21,6 +21,17 @@ public class TravelTimeStatsRepository implements ITravelTimeStatsRepository {
         "SELECT avg_time_minutes FROM mio.travel_time_stats " +
         "WHERE origin_stop_id = ? AND destination_stop_id = ? " +
         "ORDER BY last_updated DESC LIMIT 10";
+    
+    // Same 10 latest samples per pair as SQL_QUERY_TRAVEL_TIMES, for every pair in one round trip.
+    // The ordinality column maps each row back to its position in the request arrays.
+    private static final String SQL_QUERY_TRAVEL_TIMES_BATCH =
+        "SELECT p.idx, s.avg_time_minutes " +
+        "FROM unnest(?::bigint[], ?::bigint[]) WITH ORDINALITY AS p(origin_stop_id, destination_stop_id, idx) " +
+        "CROSS JOIN LATERAL (" +
+        "  SELECT t.avg_time_minutes FROM mio.travel_time_stats t " +
+        "  WHERE t.origin_stop_id = p.origin_stop_id AND t.destination_stop_id = p.destination_stop_id " +
+        "  ORDER BY t.last_updated DESC LIMIT 10" +
+        ") s";
 
     @Override
     public void save(TravelTimeStat stat) {
@@ -71,4 +82,46 @@ public class TravelTimeStatsRepository implements ITravelTimeStatsRepository {
         
         return times;
     }
+    
+    /**
+     * Query travel times for several routes with a single statement.
+     * @param originStopIds Origin stop IDs
+     * @param destinationStopIds Destination stop IDs, same length as originStopIds
+     * @return Recent average travel times per route, in the order of the arrays
+     */
+    public List<List<Double>> queryTravelTimesBatch(long[] originStopIds, long[] destinationStopIds) {
+        List<List<Double>> times = new ArrayList<>(originStopIds.length);
+        for (int i = 0; i < originStopIds.length; i++) {
+            times.add(new ArrayList<>());
+        }
+        if (originStopIds.length == 0) {
+            return times;
+        }
+        
+        Long[] origins = new Long[originStopIds.length];
+        Long[] destinations = new Long[destinationStopIds.length];
+        for (int i = 0; i < originStopIds.length; i++) {
+            origins[i] = originStopIds[i];
+            destinations[i] = destinationStopIds[i];
+        }
+        
+        try (Connection con = ManageDatabase.gConnection();
+                PreparedStatement ps = con.prepareStatement(SQL_QUERY_TRAVEL_TIMES_BATCH)) {
+            
+            ps.setArray(1, con.createArrayOf("bigint", origins));
+            ps.setArray(2, con.createArrayOf("bigint", destinations));
+            
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // Ordinality is 1-based
+                    times.get((int) rs.getLong("idx") - 1).add(rs.getDouble("avg_time_minutes"));
+                }
+            }
+            
+        } catch (Exception e) {
+            System.err.println("[TravelTimeStatsRepository] Error querying travel times batch: " + e.getMessage());
+        }
+        
+        return times;
+    }
 }
\ No newline at end of file
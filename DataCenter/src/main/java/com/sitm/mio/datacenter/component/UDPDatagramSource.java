@@ -1,129 +1,261 @@
 package com.sitm.mio.datacenter.component;
 
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.time.Instant;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.sitm.mio.datacenter.interfaces.IDatagramSource;
 import com.sitm.mio.datacenter.interfaces.IEventBus;
-import com.sitm.mio.datacenter.model.EventNewDatagram;
+import com.sitm.mio.datacenter.model.DatagramSourceMetrics;
 
 /**
  * Real-time datagram source - listens to UDP datagrams from BusSimulator.
  * Strategy implementation for receiving live telemetry data.
- * 
- * Expected datagram format (comma-separated):
- * datagram_id,bus_id,line_id,gps_x,gps_y,timestamp
+ *
+ * Accepted datagram formats, detected per packet:
+ * - CSV, one record per packet: datagram_id,bus_id,line_id,gps_x,gps_y,timestamp
+ * - Binary, several records per packet (see BinaryDatagramParser)
+ *
+ * Each receive thread owns a non-blocking DatagramChannel bound with
+ * SO_REUSEPORT (when the platform supports it), so the kernel spreads
+ * packets across threads. On every wakeup a thread drains up to a batch
+ * of packets and parses them in place from a reused direct buffer.
  */
 public class UDPDatagramSource implements IDatagramSource {
-    
+
+    private static final int MAX_DATAGRAM_SIZE = 65_507;
+    private static final long SELECT_TIMEOUT_MS = 500L;
+
     private final IEventBus eventBus;
     private final int udpPort;
+    private final int receiveThreads;
+    private final int receiveBufferBytes;
+    private final int batchSize;
+    private final boolean acceptCsv;
+    private final boolean acceptBinary;
     private volatile boolean running = false;
-    private DatagramSocket socket;
-    
+    private final List<Receiver> receivers = new ArrayList<>();
+
+    private final LongAdder packetsReceived = new LongAdder();
+    private final LongAdder datagramsPublished = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+
     public UDPDatagramSource(IEventBus eventBus, int udpPort) {
+        this(eventBus, udpPort, 1, 4 * 1024 * 1024, 64, "AUTO");
+    }
+
+    /**
+     * @param format "AUTO" (CSV and binary), "CSV" or "BINARY"
+     */
+    public UDPDatagramSource(IEventBus eventBus, int udpPort,
+                             int receiveThreads, int receiveBufferBytes, int batchSize,
+                             String format) {
         this.eventBus = eventBus;
         this.udpPort = udpPort;
+        this.receiveThreads = Math.max(1, receiveThreads);
+        this.receiveBufferBytes = receiveBufferBytes;
+        this.batchSize = Math.max(1, batchSize);
+        this.acceptCsv = !"BINARY".equals(format);
+        this.acceptBinary = !"CSV".equals(format);
     }
-    
+
     @Override
-    public void start() {
+    public synchronized void start() {
         if (running) return;
-        
+
         running = true;
-        System.out.println("[UDPDatagramSource] Starting UDP listener on port " + udpPort);
-        
-        Thread t = new Thread(this::listenLoop, "UDPDatagramSourceThread");
-        t.setDaemon(true);
-        t.start();
-    }
-    
-    private void listenLoop() {
+        System.out.println("[UDPDatagramSource] Starting UDP listener on port " + udpPort +
+                " (" + receiveThreads + " thread(s), rcvbuf=" + receiveBufferBytes + " bytes)");
+
         try {
-            socket = new DatagramSocket(udpPort);
+            int threads = receiveThreads;
+            DatagramChannel first = openChannel(threads > 1);
+            if (threads > 1 && !first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                System.err.println("[UDPDatagramSource] SO_REUSEPORT not supported - using one receive thread");
+                threads = 1;
+            }
+            receivers.add(new Receiver(first));
+            for (int i = 1; i < threads; i++) {
+                receivers.add(new Receiver(openChannel(true)));
+            }
             System.out.println("[UDPDatagramSource] UDP socket bound to port " + udpPort);
-            
-            byte[] buffer = new byte[1024];
-            
-            while (running) {
-                try {
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                    socket.receive(packet);
-                    
-                    String data = new String(packet.getData(), 0, packet.getLength());
-                    EventNewDatagram event = parseDatagram(data);
-                    
-                    if (event != null) {
-                        eventBus.publish(event);
-                        System.out.println("[UDPDatagramSource] Published datagram #" + event.getDatagramId());
-                    }
-                    
-                } catch (Exception e) {
-                    if (running) {
-                        System.err.println("[UDPDatagramSource] Error receiving datagram: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("[UDPDatagramSource] Error starting UDP socket: " + e.getMessage());
+            e.printStackTrace();
+            stop();
+            return;
+        }
+
+        for (int i = 0; i < receivers.size(); i++) {
+            Thread t = new Thread(receivers.get(i), "UDPDatagramSourceThread-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private DatagramChannel openChannel(boolean reusePort) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        if (reusePort && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferBytes);
+        channel.configureBlocking(false);
+        channel.bind(new InetSocketAddress(udpPort));
+
+        int granted = channel.getOption(StandardSocketOptions.SO_RCVBUF);
+        if (granted < receiveBufferBytes) {
+            System.err.println("[UDPDatagramSource] Kernel granted rcvbuf of " + granted +
+                    " bytes (requested " + receiveBufferBytes + "); raise net.core.rmem_max");
+        }
+        return channel;
+    }
+
+    /**
+     * Receive loop of one thread: its own channel, selector, buffer and parse holder.
+     */
+    private final class Receiver implements Runnable {
+        private final DatagramChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        private final DatagramFields fields = new DatagramFields();
+
+        private Receiver(DatagramChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try (Selector selector = Selector.open()) {
+                channel.register(selector, SelectionKey.OP_READ);
+
+                while (running) {
+                    if (selector.select(SELECT_TIMEOUT_MS) == 0) {
+                        continue;
                     }
+                    selector.selectedKeys().clear();
+                    drainBatch();
                 }
+            } catch (Exception e) {
+                if (running) {
+                    System.err.println("[UDPDatagramSource] Error receiving datagram: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            } finally {
+                close();
             }
-            
-        } catch (Exception e) {
-            System.err.println("[UDPDatagramSource] Error starting UDP socket: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
+        }
+
+        private void drainBatch() throws IOException {
+            for (int i = 0; i < batchSize; i++) {
+                buffer.clear();
+                if (channel.receive(buffer) == null) {
+                    return;
+                }
+                buffer.flip();
+                packetsReceived.increment();
+                handlePacket();
+            }
+        }
+
+        private void handlePacket() {
+            if (BinaryDatagramParser.isBinary(buffer)) {
+                int count = acceptBinary ? BinaryDatagramParser.readHeader(buffer) : -1;
+                if (count < 0) {
+                    recordParseFailure();
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    BinaryDatagramParser.readRecord(buffer, fields);
+                    eventBus.publish(fields.toEvent());
+                }
+                datagramsPublished.add(count);
+            } else if (acceptCsv && CsvDatagramParser.parse(buffer, fields)) {
+                eventBus.publish(fields.toEvent());
+                datagramsPublished.increment();
+            } else {
+                recordParseFailure();
+            }
+        }
+
+        private void recordParseFailure() {
+            parseFailures.increment();
+            long failures = parseFailures.sum();
+            // Rate-limited: a misbehaving sender must not flood the log
+            if (failures == 1 || failures % 1000 == 0) {
+                System.err.println("[UDPDatagramSource] Invalid datagram format (" +
+                        failures + " parse failures so far)");
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore close errors
             }
         }
     }
-    
+
     /**
-     * Parse UDP datagram string into EventNewDatagram.
-     * Format: datagram_id,bus_id,line_id,gps_x,gps_y,timestamp
+     * Read the per-socket drop counter the kernel keeps for our port.
+     * Linux only: sums the "drops" column of /proc/net/udp{,6}.
+     *
+     * @return Dropped packets, or -1 if unavailable
      */
-    private EventNewDatagram parseDatagram(String data) {
-        try {
-            String[] parts = data.trim().split(",");
-            if (parts.length < 6) {
-                System.err.println("[UDPDatagramSource] Invalid datagram format: " + data);
-                return null;
+    private long readKernelDrops() {
+        String localPort = String.format(":%04X", udpPort);
+        long drops = 0;
+        boolean found = false;
+        for (String file : new String[] {"/proc/net/udp", "/proc/net/udp6"}) {
+            Path path = Path.of(file);
+            if (!Files.isReadable(path)) {
+                continue;
+            }
+            try {
+                for (String line : Files.readAllLines(path)) {
+                    String[] cols = line.trim().split("\\s+");
+                    if (cols.length > 1 && cols[1].endsWith(localPort)) {
+                        drops += Long.parseLong(cols[cols.length - 1]);
+                        found = true;
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                return -1;
             }
-            
-            long datagramId = Long.parseLong(parts[0]);
-            long busId = Long.parseLong(parts[1]);
-            long lineId = Long.parseLong(parts[2]);
-            long gpsX = Long.parseLong(parts[3]);
-            long gpsY = Long.parseLong(parts[4]);
-            long timestamp = Long.parseLong(parts[5]);
-            
-            // Convert GPS coordinates (stored as integers * 1e7)
-            // NOTE: gps_x = latitude, gps_y = longitude
-            double latitude = gpsX / 1e7;
-            double longitude = gpsY / 1e7;
-            
-            Instant eventTs = Instant.ofEpochMilli(timestamp);
-            
-            return new EventNewDatagram(datagramId, busId, lineId, latitude, longitude, eventTs);
-            
-        } catch (Exception e) {
-            System.err.println("[UDPDatagramSource] Error parsing datagram: " + e.getMessage());
-            return null;
         }
+        return found ? drops : -1;
     }
-    
+
     @Override
-    public void stop() {
+    public DatagramSourceMetrics getMetrics() {
+        return new DatagramSourceMetrics(getSourceType(),
+                packetsReceived.sum(), datagramsPublished.sum(),
+                parseFailures.sum(), readKernelDrops());
+    }
+
+    @Override
+    public synchronized void stop() {
         running = false;
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
+        for (Receiver receiver : receivers) {
+            receiver.close();
         }
+        receivers.clear();
         System.out.println("[UDPDatagramSource] Stopped");
     }
-    
+
     @Override
     public boolean isRunning() {
         return running;
     }
-    
+
     @Override
     public String getSourceType() {
         return "UDP (Real-time)";
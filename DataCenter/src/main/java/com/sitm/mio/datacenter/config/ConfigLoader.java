@@ -140,6 +140,54 @@ public class ConfigLoader {
         return properties.getProperty("database.password", "postgres");
     }
     
+    /**
+     * Get maximum number of pooled database connections.
+     * @return Pool max size
+     */
+    public static int getDatabasePoolMaxSize() {
+        return Integer.parseInt(properties.getProperty("database.pool.max.size", "10"));
+    }
+    
+    /**
+     * Get minimum number of idle pooled connections.
+     * @return Pool min idle
+     */
+    public static int getDatabasePoolMinIdle() {
+        return Integer.parseInt(properties.getProperty("database.pool.min.idle", "2"));
+    }
+    
+    /**
+     * Get time after which idle pooled connections above the minimum are closed.
+     * @return Idle timeout in ms
+     */
+    public static long getDatabasePoolIdleTimeoutMs() {
+        return Long.parseLong(properties.getProperty("database.pool.idle.timeout.ms", "300000"));
+    }
+    
+    /**
+     * Get maximum lifetime of a pooled connection.
+     * @return Max lifetime in ms
+     */
+    public static long getDatabasePoolMaxLifetimeMs() {
+        return Long.parseLong(properties.getProperty("database.pool.max.lifetime.ms", "1800000"));
+    }
+    
+    /**
+     * Get maximum time a caller waits to borrow a connection.
+     * @return Connection timeout in ms
+     */
+    public static long getDatabasePoolConnectionTimeoutMs() {
+        return Long.parseLong(properties.getProperty("database.pool.connection.timeout.ms", "5000"));
+    }
+    
+    /**
+     * Get timeout for validating a connection before it is borrowed.
+     * @return Validation timeout in ms
+     */
+    public static long getDatabasePoolValidationTimeoutMs() {
+        return Long.parseLong(properties.getProperty("database.pool.validation.timeout.ms", "1000"));
+    }
+    
     /**
      * Get datagram source strategy.
      * @return "DATABASE" or "UDP"
@@ -148,6 +196,327 @@ public class ConfigLoader {
         return properties.getProperty("datagram.source", "DATABASE").toUpperCase();
     }
     
+    /**
+     * Get event bus mode.
+     * @return "SYNC" (handlers on publisher thread) or "ASYNC" (queued)
+     */
+    public static String getEventBusMode() {
+        return properties.getProperty("eventbus.mode", "SYNC").toUpperCase();
+    }
+    
+    /**
+     * Get capacity of each per-event-type queue in async mode.
+     * @return Queue capacity
+     */
+    public static int getEventBusQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("eventbus.queue.capacity", "10000"));
+    }
+    
+    /**
+     * Get number of worker threads per event type in async mode.
+     * @return Worker count
+     */
+    public static int getEventBusWorkersPerType() {
+        return Integer.parseInt(properties.getProperty("eventbus.workers.per.type", "1"));
+    }
+    
+    /**
+     * Get what to do when an async queue is full.
+     * @return "BLOCK", "DROP_OLDEST" or "DROP_NEWEST"
+     */
+    public static String getEventBusBackpressure() {
+        return properties.getProperty("eventbus.backpressure", "BLOCK").toUpperCase();
+    }
+    
+    /**
+     * Get capacity of each subscriber's outbound queue in the ICE event publisher.
+     * @return Queue capacity
+     */
+    public static int getPublisherQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("publisher.queue.capacity", "10000"));
+    }
+    
+    /**
+     * Get number of failed deliveries in a row after which a subscriber is evicted.
+     * @return Failure threshold
+     */
+    public static int getPublisherMaxConsecutiveFailures() {
+        return Integer.parseInt(properties.getProperty("publisher.max.consecutive.failures", "5"));
+    }
+    
+    /**
+     * Get maximum number of datagrams per onEnrichedDatagrams batch.
+     * @return Batch size
+     */
+    public static int getPublisherBatchMaxSize() {
+        return Integer.parseInt(properties.getProperty("publisher.batch.max.size", "256"));
+    }
+    
+    /**
+     * Get how long a partial batch may wait for more datagrams.
+     * @return Linger time in ms (0 sends as soon as the subscriber is idle)
+     */
+    public static long getPublisherBatchLingerMs() {
+        return Long.parseLong(properties.getProperty("publisher.batch.linger.ms", "20"));
+    }
+    
+    /**
+     * Check whether enriched datagrams are stored in mio.enriched_datagrams.
+     * @return true if the write-behind persister is enabled
+     */
+    public static boolean isPersisterEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("persister.enabled", "true"));
+    }
+    
+    /**
+     * Get capacity of the persister's in-memory buffer.
+     * @return Buffered datagrams
+     */
+    public static int getPersisterBufferCapacity() {
+        return Integer.parseInt(properties.getProperty("persister.buffer.capacity", "100000"));
+    }
+    
+    /**
+     * Get maximum number of rows per COPY.
+     * @return Batch size
+     */
+    public static int getPersisterBatchSize() {
+        return Integer.parseInt(properties.getProperty("persister.batch.size", "5000"));
+    }
+    
+    /**
+     * Get how long a partial batch may wait for more datagrams before it is written.
+     * @return Flush interval in ms
+     */
+    public static long getPersisterFlushIntervalMs() {
+        return Long.parseLong(properties.getProperty("persister.flush.interval.ms", "1000"));
+    }
+    
+    /**
+     * Get how long the event handler waits for room in a full buffer before dropping.
+     * @return Offer timeout in ms
+     */
+    public static long getPersisterOfferTimeoutMs() {
+        return Long.parseLong(properties.getProperty("persister.offer.timeout.ms", "100"));
+    }
+    
+    /**
+     * Get number of times a failed COPY is retried before its batch is dropped.
+     * @return Retry count
+     */
+    public static int getPersisterMaxRetries() {
+        return Integer.parseInt(properties.getProperty("persister.max.retries", "3"));
+    }
+    
+    /**
+     * Check whether mio.datagrams_history partitions are managed by DataCenter.
+     * @return true if partition maintenance is enabled
+     */
+    public static boolean isHistoryPartitioningEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("history.partition.enabled", "true"));
+    }
+    
+    /**
+     * Get the time span of each history partition.
+     * @return "DAILY" or "HOURLY"
+     */
+    public static String getHistoryPartitionGranularity() {
+        return properties.getProperty("history.partition.granularity", "DAILY").toUpperCase();
+    }
+    
+    /**
+     * Get number of future partitions created ahead of time.
+     * @return Periods created after the current one
+     */
+    public static int getHistoryPartitionPremake() {
+        return Integer.parseInt(properties.getProperty("history.partition.premake", "3"));
+    }
+    
+    /**
+     * Get how long history partitions are kept before being dropped.
+     * @return Retention in days
+     */
+    public static int getHistoryRetentionDays() {
+        return Integer.parseInt(properties.getProperty("history.retention.days", "90"));
+    }
+    
+    /**
+     * Get interval between partition maintenance runs.
+     * @return Interval in minutes
+     */
+    public static long getHistoryPartitionMaintenanceMinutes() {
+        return Long.parseLong(properties.getProperty("history.partition.maintenance.minutes", "60"));
+    }
+    
+    /**
+     * Check whether an unpartitioned mio.datagrams_history may be converted.
+     * @return true to convert it on startup
+     */
+    public static boolean isHistoryPartitionMigrationEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("history.partition.migrate", "false"));
+    }
+    
+    /**
+     * Get maximum number of rows returned by a historical data query.
+     * @return Row limit
+     */
+    public static int getHistoryQueryMaxRows() {
+        return Integer.parseInt(properties.getProperty("history.query.max.rows", "1000"));
+    }
+    
+    /**
+     * Get maximum number of history export cursors open at once.
+     * Each open cursor holds a pooled database connection.
+     * @return Cursor limit
+     */
+    public static int getHistoryExportMaxCursors() {
+        return Integer.parseInt(properties.getProperty("history.export.max.cursors", "4"));
+    }
+    
+    /**
+     * Get number of rows the JDBC driver fetches per round trip for a history cursor.
+     * @return Fetch size
+     */
+    public static int getHistoryExportFetchSize() {
+        return Integer.parseInt(properties.getProperty("history.export.fetch.size", "1000"));
+    }
+    
+    /**
+     * Get maximum number of records returned by one history export chunk.
+     * @return Chunk size limit
+     */
+    public static int getHistoryExportMaxChunk() {
+        return Integer.parseInt(properties.getProperty("history.export.max.chunk", "5000"));
+    }
+    
+    /**
+     * Get time after which an unused history cursor is closed.
+     * @return Idle timeout in seconds
+     */
+    public static long getHistoryExportIdleTimeoutSeconds() {
+        return Long.parseLong(properties.getProperty("history.export.idle.timeout.seconds", "60"));
+    }
+    
+    /**
+     * Check whether live arc speeds and stop-to-stop travel times are computed.
+     * @return true if the Controller feeds the TravelStatsAggregator
+     */
+    public static boolean isLiveStatsEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("livestats.enabled", "true"));
+    }
+    
+    /**
+     * Get maximum number of buses whose previous fix is tracked.
+     * @return Bus capacity
+     */
+    public static int getLiveStatsMaxBuses() {
+        return Integer.parseInt(properties.getProperty("livestats.max.buses", "4096"));
+    }
+    
+    /**
+     * Get maximum number of arcs with speed statistics.
+     * @return Arc capacity
+     */
+    public static int getLiveStatsMaxArcs() {
+        return Integer.parseInt(properties.getProperty("livestats.max.arcs", "16384"));
+    }
+    
+    /**
+     * Get maximum number of stop pairs with travel time statistics.
+     * @return Stop pair capacity
+     */
+    public static int getLiveStatsMaxStopPairs() {
+        return Integer.parseInt(properties.getProperty("livestats.max.stop.pairs", "8192"));
+    }
+    
+    /**
+     * Get time span covered by the live statistics.
+     * @return Window in minutes
+     */
+    public static long getLiveStatsWindowMinutes() {
+        return Long.parseLong(properties.getProperty("livestats.window.minutes", "60"));
+    }
+    
+    /**
+     * Get number of buckets the window is split into (its expiry granularity).
+     * @return Bucket count
+     */
+    public static int getLiveStatsWindowBuckets() {
+        return Integer.parseInt(properties.getProperty("livestats.window.buckets", "6"));
+    }
+    
+    /**
+     * Get longest time between two fixes of a bus that still yields a speed.
+     * @return Gap in seconds
+     */
+    public static long getLiveStatsMaxGapSeconds() {
+        return Long.parseLong(properties.getProperty("livestats.max.gap.seconds", "120"));
+    }
+    
+    /**
+     * Get highest plausible bus speed; faster samples are GPS noise.
+     * @return Speed in km/h
+     */
+    public static double getLiveStatsMaxSpeedKmh() {
+        return Double.parseDouble(properties.getProperty("livestats.max.speed.kmh", "90"));
+    }
+    
+    /**
+     * Get distance within which a bus counts as being at a stop.
+     * @return Radius in meters
+     */
+    public static double getLiveStatsStopRadiusMeters() {
+        return Double.parseDouble(properties.getProperty("livestats.stop.radius.meters", "40"));
+    }
+    
+    /**
+     * Get longest trip between consecutive stops that is still a travel time sample.
+     * @return Travel time in minutes
+     */
+    public static long getLiveStatsMaxTravelMinutes() {
+        return Long.parseLong(properties.getProperty("livestats.max.travel.minutes", "30"));
+    }
+    
+    /**
+     * Get how far ahead of the DataCenter clock a datagram may be dated (bus clock skew).
+     * @return Skew in seconds
+     */
+    public static long getDatagramMaxClockSkewSeconds() {
+        return Long.parseLong(properties.getProperty("datagram.max.clock.skew.seconds", "300"));
+    }
+    
+    /**
+     * Check whether the last known state of every bus is kept.
+     * @return true if the Controller feeds the BusStateStore
+     */
+    public static boolean isBusStateEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("busstate.enabled", "true"));
+    }
+    
+    /**
+     * Get maximum number of buses in the state store.
+     * @return Bus capacity
+     */
+    public static int getBusStateMaxBuses() {
+        return Integer.parseInt(properties.getProperty("busstate.max.buses", "4096"));
+    }
+    
+    /**
+     * Get longest time between two fixes of a bus that still yields speed and heading.
+     * @return Gap in seconds
+     */
+    public static long getBusStateMaxGapSeconds() {
+        return Long.parseLong(properties.getProperty("busstate.max.gap.seconds", "120"));
+    }
+    
+    /**
+     * Get how long a bus can go without reporting before zone queries leave it out.
+     * @return Age in minutes (0 = never)
+     */
+    public static long getBusStateStaleMinutes() {
+        return Long.parseLong(properties.getProperty("busstate.stale.minutes", "30"));
+    }
+    
     /**
      * Get UDP receiver port.
      * @return UDP receiver port
@@ -156,6 +525,38 @@ public class ConfigLoader {
         return Integer.parseInt(properties.getProperty("udp.receiver.port", "5000"));
     }
     
+    /**
+     * Get number of UDP receive threads (one SO_REUSEPORT socket each).
+     * @return Receive thread count
+     */
+    public static int getUdpReceiverThreads() {
+        return Integer.parseInt(properties.getProperty("udp.receiver.threads", "1"));
+    }
+    
+    /**
+     * Get requested kernel receive buffer size per UDP socket.
+     * @return Buffer size in bytes
+     */
+    public static int getUdpReceiverBufferBytes() {
+        return Integer.parseInt(properties.getProperty("udp.receiver.buffer.bytes", "4194304"));
+    }
+    
+    /**
+     * Get maximum number of packets drained per socket wakeup.
+     * @return Batch size
+     */
+    public static int getUdpReceiverBatchSize() {
+        return Integer.parseInt(properties.getProperty("udp.receiver.batch.size", "64"));
+    }
+    
+    /**
+     * Get accepted UDP datagram wire format.
+     * @return "AUTO" (detect CSV or binary per packet), "CSV" or "BINARY"
+     */
+    public static String getUdpReceiverFormat() {
+        return properties.getProperty("udp.receiver.format", "AUTO").toUpperCase();
+    }
+    
     /**
      * Get database poll interval in milliseconds.
      * @return Poll interval in ms
@@ -226,6 +627,7 @@ public class ConfigLoader {
         System.out.println("Server: " + getServerHost() + ":" + getServerPort());
         System.out.println("Database URL: " + getDatabaseUrl());
         System.out.println("Database User: " + getDatabaseUser());
+        System.out.println("Database Pool Size: " + getDatabasePoolMinIdle() + ".." + getDatabasePoolMaxSize());
         System.out.println("UDP Receiver Port: " + getUdpReceiverPort());
         System.out.println("================================");
         System.out.println("=== ICE Configuration ===");
@@ -1,37 +1,120 @@
 package com.sitm.mio.datacenter.config;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
+import javax.sql.DataSource;
+
+import com.sitm.mio.datacenter.model.ConnectionPoolMetrics;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
 /**
  * Database connection manager for DataCenter.
  * Uses ConfigLoader to get database credentials from config.properties.
+ *
+ * Connections come from a bounded HikariCP pool. Closing a connection
+ * returns it to the pool, so callers keep using try-with-resources.
  */
 public class ManageDatabase {
 
+    private static final String POOL_NAME = "DataCenterPool";
+
+    private static volatile HikariDataSource dataSource;
+    private static final PoolMetricsTracker metricsTracker = new PoolMetricsTracker();
+
+    /**
+     * Get the pooled DataSource, creating it on first use.
+     * @return Shared DataSource
+     */
+    public static DataSource getDataSource() {
+        HikariDataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (ManageDatabase.class) {
+                ds = dataSource;
+                if (ds == null) {
+                    ds = createDataSource();
+                    dataSource = ds;
+                }
+            }
+        }
+        return ds;
+    }
+
+    private static HikariDataSource createDataSource() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(POOL_NAME);
+        config.setJdbcUrl(ConfigLoader.getDatabaseUrl());
+        config.setUsername(ConfigLoader.getDatabaseUser());
+        config.setPassword(ConfigLoader.getDatabasePassword());
+
+        config.setMaximumPoolSize(ConfigLoader.getDatabasePoolMaxSize());
+        config.setMinimumIdle(ConfigLoader.getDatabasePoolMinIdle());
+        config.setIdleTimeout(ConfigLoader.getDatabasePoolIdleTimeoutMs());
+        config.setMaxLifetime(ConfigLoader.getDatabasePoolMaxLifetimeMs());
+        config.setConnectionTimeout(ConfigLoader.getDatabasePoolConnectionTimeoutMs());
+        // Idle connections are checked with Connection.isValid() before being handed out
+        config.setValidationTimeout(ConfigLoader.getDatabasePoolValidationTimeoutMs());
+        config.setMetricsTrackerFactory((poolName, poolStats) -> metricsTracker);
+
+        // Do not fail startup when the database is down; borrowers get the error instead
+        config.setInitializationFailTimeout(-1);
+
+        System.out.println("[ManageDatabase] Connection pool " + POOL_NAME + " created for: " + config.getJdbcUrl() +
+                " (max=" + config.getMaximumPoolSize() + ", minIdle=" + config.getMinimumIdle() + ")");
+        return new HikariDataSource(config);
+    }
+
     /**
      * Get a database connection using configuration from ConfigLoader.
      * @return Database connection
      * @throws SQLException if connection fails
      */
     public static Connection gConnection() throws SQLException {
-        String url = ConfigLoader.getDatabaseUrl();
-        String user = ConfigLoader.getDatabaseUser();
-        String password = ConfigLoader.getDatabasePassword();
-        
         try {
-            Connection conn = DriverManager.getConnection(url, user, password);
-            System.out.println("[ManageDatabase] Connection established to: " + url);
-            return conn;
+            return getDataSource().getConnection();
         } catch (SQLException e) {
             System.err.println("[ManageDatabase] Failed to connect to database");
-            System.err.println("  URL: " + url);
-            System.err.println("  User: " + user);
+            System.err.println("  URL: " + ConfigLoader.getDatabaseUrl());
+            System.err.println("  User: " + ConfigLoader.getDatabaseUser());
             System.err.println("  Error: " + e.getMessage());
             throw e;
         }
     }
-    
+
+    /**
+     * Snapshot of the connection pool state.
+     * @return Pool metrics (all zero if the pool was never used)
+     */
+    public static ConnectionPoolMetrics getPoolMetrics() {
+        HikariDataSource ds = dataSource;
+        HikariPoolMXBean pool = (ds != null) ? ds.getHikariPoolMXBean() : null;
+
+        int active = (pool != null) ? pool.getActiveConnections() : 0;
+        int idle = (pool != null) ? pool.getIdleConnections() : 0;
+        int total = (pool != null) ? pool.getTotalConnections() : 0;
+        int waiting = (pool != null) ? pool.getThreadsAwaitingConnection() : 0;
+
+        return new ConnectionPoolMetrics(active, idle, total, waiting,
+                metricsTracker.getAcquiredCount(),
+                metricsTracker.getAverageWaitMicros(),
+                metricsTracker.getMaxWaitMicros(),
+                metricsTracker.getTimeoutCount());
+    }
+
+    /**
+     * Close the pool and all its connections.
+     */
+    public static void shutdown() {
+        synchronized (ManageDatabase.class) {
+            if (dataSource != null) {
+                dataSource.close();
+                dataSource = null;
+                System.out.println("[ManageDatabase] Connection pool closed");
+            }
+        }
+    }
+
     /**
      * Test database connection.
      * @return true if connection successful
@@ -0,0 +1,47 @@
+package com.sitm.mio.datacenter.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+
+/**
+ * Collects connection wait times reported by the HikariCP pool.
+ * Used by ManageDatabase to expose pool metrics.
+ */
+class PoolMetricsTracker implements IMetricsTracker {
+
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquiredCount.increment();
+        totalWaitNanos.add(elapsedAcquiredNanos);
+        maxWaitNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeoutCount.increment();
+    }
+
+    long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    double getAverageWaitMicros() {
+        long count = acquiredCount.sum();
+        return count == 0 ? 0.0 : totalWaitNanos.sum() / 1_000.0 / count;
+    }
+
+    double getMaxWaitMicros() {
+        return maxWaitNanos.get() / 1_000.0;
+    }
+
+    long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+}
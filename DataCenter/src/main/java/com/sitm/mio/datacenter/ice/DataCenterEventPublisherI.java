@@ -1,65 +1,333 @@
 package com.sitm.mio.datacenter.ice;
 
 import com.zeroc.Ice.Current;
-import SITM.DataCenterEventSubscriber;
+import com.zeroc.Ice.OperationNotExistException;
+import SITM.CacheInvalidation;
 import SITM.DataCenterEventSubscriberPrx;
 import SITM.EnrichedDatagram;
 
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import com.sitm.mio.datacenter.interfaces.IEventPublisherStats;
+import com.sitm.mio.datacenter.model.SubscriberMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * ICE Servant for publishing enriched datagrams to ProxyServer.
  * Manages subscriptions and broadcasts events.
+ *
+ * Every subscriber has its own bounded outbound queue, drained with
+ * asynchronous invocations (AMI), one at a time so order is kept.
+ * Publishing only enqueues, so a slow subscriber never blocks the
+ * ingestion thread or the other subscribers:
+ * - when its queue is full the oldest datagram is dropped;
+ * - a failed delivery is counted and skipped, and the subscriber is
+ *   evicted only after maxConsecutiveFailures failures in a row.
+ *
+ * Datagrams are micro-batched into onEnrichedDatagrams: a batch is sent
+ * when maxBatchSize datagrams are queued or the oldest one has waited
+ * lingerMs, whichever comes first (while a call is in flight the next
+ * batch simply accumulates). Subscribers built before the batch
+ * operation existed are detected on the first batch and switched to
+ * single-record onEnrichedDatagram calls; that first batch is resent one
+ * record at a time before the rest of the queue.
+ *
+ * Cache invalidations are rare and tiny, so they skip the queue and go
+ * straight out as one-off asynchronous calls.
+ *
+ * Each queued datagram carries the time it was enqueued. The linger wait
+ * and the reported lag are measured from it, not from the datagram's own
+ * timestamp, so replayed or late data does not look like a slow
+ * subscriber.
  */
-public class DataCenterEventPublisherI implements SITM.DataCenterEventPublisher {
-    
-    private final Set<DataCenterEventSubscriberPrx> subscribers = new CopyOnWriteArraySet<>();
-    
+public class DataCenterEventPublisherI implements SITM.DataCenterEventPublisher, IEventPublisherStats {
+
+    private final Map<DataCenterEventSubscriberPrx, SubscriberChannel> subscribers = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+    private final int maxConsecutiveFailures;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ScheduledExecutorService lingerTimer;
+
+    public DataCenterEventPublisherI() {
+        this(10_000, 5, 256, 20);
+    }
+
+    public DataCenterEventPublisherI(int queueCapacity, int maxConsecutiveFailures,
+                                     int maxBatchSize, long lingerMs) {
+        if (queueCapacity <= 0 || maxConsecutiveFailures <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException(
+                    "queueCapacity, maxConsecutiveFailures and maxBatchSize must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, lingerMs));
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "EventPublisherLingerThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
     @Override
     public void subscribe(DataCenterEventSubscriberPrx subscriber, Current current) {
         if (subscriber != null) {
-            subscribers.add(subscriber);
+            subscribers.computeIfAbsent(subscriber, SubscriberChannel::new);
             System.out.println("[DataCenterEventPublisher] New subscriber registered. Total: " + subscribers.size());
         }
     }
-    
+
     @Override
     public void unsubscribe(DataCenterEventSubscriberPrx subscriber, Current current) {
-        subscribers.remove(subscriber);
+        if (subscriber != null) {
+            SubscriberChannel channel = subscribers.remove(subscriber);
+            if (channel != null) {
+                channel.queue.clear();
+                channel.retry.clear();
+            }
+        }
         System.out.println("[DataCenterEventPublisher] Subscriber removed. Total: " + subscribers.size());
     }
-    
+
     /**
      * Publish an enriched datagram to all subscribers.
      * Called internally by DataCenter when new data is processed.
-     * 
+     * Returns after enqueueing; delivery happens asynchronously.
+     *
      * @param datagram The enriched datagram to publish
      */
     public void publishEnrichedDatagram(EnrichedDatagram datagram) {
-        if (subscribers.isEmpty()) {
-            return;
-        }
-        
-        System.out.println("[DataCenterEventPublisher] Publishing datagram " + datagram.datagramId + 
-                          " to " + subscribers.size() + " subscriber(s)");
-        
-        // Broadcast to all subscribers
-        for (DataCenterEventSubscriberPrx subscriber : subscribers) {
+        for (SubscriberChannel channel : subscribers.values()) {
+            channel.enqueue(datagram);
+        }
+    }
+
+    /**
+     * Publish a cache invalidation to all subscribers.
+     * Fire-and-forget: a failed invalidation only means that subscriber
+     * keeps its entry until the TTL runs out.
+     *
+     * @param invalidation The origin-destination pair whose cached answers are stale
+     */
+    public void publishCacheInvalidation(CacheInvalidation invalidation) {
+        for (SubscriberChannel channel : subscribers.values()) {
             try {
-                subscriber.onEnrichedDatagram(datagram);
+                channel.subscriber.onCacheInvalidationAsync(invalidation).whenComplete((ignored, error) -> {
+                    if (error != null && !(error instanceof OperationNotExistException)) {
+                        System.err.println("[DataCenterEventPublisher] Error sending cache invalidation: " + error);
+                    }
+                });
             } catch (Exception e) {
-                System.err.println("[DataCenterEventPublisher] Error notifying subscriber: " + e.getMessage());
-                // Remove dead subscriber
-                subscribers.remove(subscriber);
+                System.err.println("[DataCenterEventPublisher] Error sending cache invalidation: " + e.getMessage());
             }
         }
     }
-    
+
     /**
      * Get the number of active subscribers.
      */
     public int getSubscriberCount() {
         return subscribers.size();
     }
+
+    /**
+     * Get delivery counters of every active subscriber.
+     */
+    @Override
+    public List<SubscriberMetrics> getSubscriberMetrics() {
+        List<SubscriberMetrics> result = new ArrayList<>();
+        for (SubscriberChannel channel : subscribers.values()) {
+            result.add(channel.toMetrics());
+        }
+        return result;
+    }
+
+    private void evict(SubscriberChannel channel) {
+        if (subscribers.remove(channel.subscriber, channel)) {
+            channel.queue.clear();
+            channel.retry.clear();
+            System.err.println("[DataCenterEventPublisher] Subscriber evicted after " +
+                              maxConsecutiveFailures + " consecutive failures. Total: " + subscribers.size());
+        }
+    }
+
+    /**
+     * A datagram waiting in a subscriber queue.
+     */
+    private static final class Queued {
+        private final EnrichedDatagram datagram;
+        private final long enqueuedNanos;
+
+        private Queued(EnrichedDatagram datagram, long enqueuedNanos) {
+            this.datagram = datagram;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * Outbound queue and delivery state of one subscriber.
+     */
+    private final class SubscriberChannel {
+        private final DataCenterEventSubscriberPrx subscriber;
+        private final ArrayBlockingQueue<Queued> queue = new ArrayBlockingQueue<>(queueCapacity);
+        // Batch refused by a subscriber without onEnrichedDatagrams, resent one by one ahead of the queue
+        private final ConcurrentLinkedQueue<Queued> retry = new ConcurrentLinkedQueue<>();
+        // True while an invocation is outstanding; only its owner drains the queue
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+        private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+        private volatile boolean batchSupported = true;
+
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder batchesSent = new LongAdder();
+        private volatile int consecutiveFailures = 0;
+        private volatile long lagMillis = -1L;
+
+        private SubscriberChannel(DataCenterEventSubscriberPrx subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void enqueue(EnrichedDatagram datagram) {
+            Queued queued = new Queued(datagram, System.nanoTime());
+            while (!queue.offer(queued)) {
+                if (queue.poll() != null) {
+                    dropped.increment();
+                }
+            }
+            trySend();
+        }
+
+        private void trySend() {
+            // Loop instead of returning on an empty queue: a datagram enqueued
+            // between poll() and sending.set(false) would otherwise be stranded
+            while ((!retry.isEmpty() || !queue.isEmpty()) && sending.compareAndSet(false, true)) {
+                boolean batch = batchSupported;
+                Queued oldest = queue.peek();
+                if (batch && lingerNanos > 0 && oldest != null && queue.size() < maxBatchSize) {
+                    long wait = oldest.enqueuedNanos + lingerNanos - System.nanoTime();
+                    if (wait > 0) {
+                        sending.set(false);
+                        scheduleFlush(wait);
+                        return;
+                    }
+                }
+
+                List<Queued> next = new ArrayList<>(batch ? Math.min(queue.size(), maxBatchSize) : 1);
+                Queued retried = retry.poll();
+                if (retried != null) {
+                    next.add(retried);
+                } else {
+                    queue.drainTo(next, batch ? maxBatchSize : 1);
+                }
+                if (next.isEmpty()) {
+                    sending.set(false);
+                    continue;
+                }
+
+                CompletableFuture<Void> future;
+                try {
+                    future = batch
+                            ? subscriber.onEnrichedDatagramsAsync(datagramsOf(next))
+                            : subscriber.onEnrichedDatagramAsync(next.get(0).datagram);
+                } catch (Exception e) {
+                    if (!onFailed(e, next.size())) {
+                        return;
+                    }
+                    continue;
+                }
+
+                if (future.isDone()) {
+                    // Completed synchronously (e.g. collocated): keep looping, no recursion
+                    if (!complete(future, next, batch)) {
+                        return;
+                    }
+                    continue;
+                }
+                future.whenComplete((ignored, error) -> {
+                    if (complete(future, next, batch)) {
+                        trySend();
+                    }
+                });
+                return;
+            }
+        }
+
+        private void scheduleFlush(long delayNanos) {
+            if (flushScheduled.compareAndSet(false, true)) {
+                lingerTimer.schedule(() -> {
+                    flushScheduled.set(false);
+                    trySend();
+                }, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Record the outcome of a finished invocation and release the channel.
+         * @return false if the subscriber was evicted
+         */
+        private boolean complete(CompletableFuture<Void> future, List<Queued> sent, boolean batch) {
+            try {
+                future.join();
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (batch && cause instanceof OperationNotExistException) {
+                    // Subscriber predates onEnrichedDatagrams: resend this batch and the rest one by one
+                    batchSupported = false;
+                    retry.addAll(sent);
+                    sending.set(false);
+                    System.out.println("[DataCenterEventPublisher] Subscriber does not support batches - " +
+                                      "using single-record delivery: " + subscriber);
+                    return true;
+                }
+                return onFailed(cause, sent.size());
+            }
+            delivered.add(sent.size());
+            batchesSent.increment();
+            consecutiveFailures = 0;
+            // Time the newest delivered datagram spent queued and in flight
+            lagMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent.get(sent.size() - 1).enqueuedNanos);
+            sending.set(false);
+            return true;
+        }
+
+        private boolean onFailed(Throwable error, int datagrams) {
+            failed.add(datagrams);
+            int failures = ++consecutiveFailures; // Only the sending owner writes it
+            sending.set(false);
+            if (failures >= maxConsecutiveFailures) {
+                evict(this);
+                return false;
+            }
+            if (failures == 1) {
+                System.err.println("[DataCenterEventPublisher] Error notifying subscriber: " + error);
+            }
+            return true;
+        }
+
+        private EnrichedDatagram[] datagramsOf(List<Queued> batch) {
+            EnrichedDatagram[] datagrams = new EnrichedDatagram[batch.size()];
+            for (int i = 0; i < datagrams.length; i++) {
+                datagrams[i] = batch.get(i).datagram;
+            }
+            return datagrams;
+        }
+
+        private SubscriberMetrics toMetrics() {
+            return new SubscriberMetrics(subscriber.toString(), queue.size() + retry.size(), queueCapacity,
+                    delivered.sum(), dropped.sum(), failed.sum(), consecutiveFailures, lagMillis,
+                    batchSupported, batchesSent.sum());
+        }
+    }
 }
@@ -1,10 +1,21 @@
 package com.sitm.mio.datacenter.ice;
 
+import java.util.List;
+import java.util.Map;
+
 import com.zeroc.Ice.Current;
+import SITM.ArcSpeedStatistics;
+import SITM.BusState;
 import SITM.CitizenInfoRequest;
 import SITM.CitizenInfoResponse;
+import SITM.LiveStatistics;
 import com.sitm.mio.datacenter.interfaces.IDataCenterFacade;
+import com.sitm.mio.datacenter.component.BusStateStore;
+import com.sitm.mio.datacenter.component.TravelStatsAggregator;
 import com.sitm.mio.datacenter.component.TravelTimeCalculator;
+import com.sitm.mio.datacenter.model.BusStateRecord;
+import com.sitm.mio.datacenter.model.TravelTimeAnswer;
+import com.sitm.mio.datacenter.model.WindowStatistics;
 
 /**
  * ICE Servant implementation for DataCenter interface.
@@ -14,31 +25,84 @@ public class DataCenterI implements SITM.DataCenter {
     
     private final IDataCenterFacade facade;
     private final TravelTimeCalculator travelTimeCalculator;
+    private DataCenterEventPublisherI eventPublisher;
+    private TravelStatsAggregator travelStats;
+    private BusStateStore busStates;
+    private long busStateMaxAgeMillis;
     
     public DataCenterI(IDataCenterFacade facade, TravelTimeCalculator travelTimeCalculator) {
         this.facade = facade;
         this.travelTimeCalculator = travelTimeCalculator;
     }
     
+    /**
+     * Set the publisher used to tell ProxyServers about changed travel times.
+     */
+    public void setEventPublisher(DataCenterEventPublisherI eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+    
+    /**
+     * Set the aggregator that answers live statistics queries.
+     */
+    public void setTravelStatsAggregator(TravelStatsAggregator travelStats) {
+        this.travelStats = travelStats;
+    }
+    
+    /**
+     * Set the store that answers bus state queries.
+     * @param maxAgeMillis Buses silent for longer than this are left out of zone queries (0 = keep all)
+     */
+    public void setBusStateStore(BusStateStore busStates, long maxAgeMillis) {
+        this.busStates = busStates;
+        this.busStateMaxAgeMillis = maxAgeMillis;
+    }
+    
     @Override
     public CitizenInfoResponse getCitizenInformation(CitizenInfoRequest request, Current current) {
         System.out.println("[DataCenterI] ICE request: getCitizenInformation(" + 
                           request.originStopId + " -> " + request.destinationStopId + ")");
         
         // Calculate actual travel time using TravelTimeCalculator
-        String message = travelTimeCalculator.calculateTravelTime(
+        TravelTimeAnswer answer = travelTimeCalculator.calculateTravelTime(
             request.originStopId, 
             request.destinationStopId
         );
         
         CitizenInfoResponse response = new CitizenInfoResponse();
-        response.message = message;
+        response.message = answer.getMessage();
         response.fromCache = false;
         response.timestamp = System.currentTimeMillis();
+        response.ttlMillis = answer.getCacheTtlMillis();
         
         return response;
     }
     
+    @Override
+    public CitizenInfoResponse[] getCitizenInformationBatch(CitizenInfoRequest[] requests, Current current) {
+        System.out.println("[DataCenterI] ICE request: getCitizenInformationBatch(" + 
+                          requests.length + " pairs)");
+        
+        long[] origins = new long[requests.length];
+        long[] destinations = new long[requests.length];
+        for (int i = 0; i < requests.length; i++) {
+            origins[i] = requests[i].originStopId;
+            destinations[i] = requests[i].destinationStopId;
+        }
+        
+        // One query for all pairs
+        TravelTimeAnswer[] answers = travelTimeCalculator.calculateTravelTimes(origins, destinations);
+        
+        long now = System.currentTimeMillis();
+        CitizenInfoResponse[] responses = new CitizenInfoResponse[requests.length];
+        for (int i = 0; i < requests.length; i++) {
+            responses[i] = new CitizenInfoResponse(answers[i].getMessage(), false, now,
+                                                   answers[i].getCacheTtlMillis());
+        }
+        
+        return responses;
+    }
+    
     @Override
     public void submitTravelTime(SITM.TravelTimeSubmission submission, Current current) {
         System.out.println(String.format(
@@ -64,12 +128,92 @@ public class DataCenterI implements SITM.DataCenter {
             
             System.out.println("[DataCenterI] Travel time submitted successfully for zone: " + submission.zoneId);
             
+            // Cached answers for this pair are now stale on every ProxyServer
+            if (eventPublisher != null) {
+                SITM.CacheInvalidation invalidation = new SITM.CacheInvalidation();
+                invalidation.originStopId = submission.originStopId;
+                invalidation.destinationStopId = submission.destinationStopId;
+                invalidation.timestamp = System.currentTimeMillis();
+                eventPublisher.publishCacheInvalidation(invalidation);
+            }
+            
         } catch (Exception e) {
             System.err.println("[DataCenterI] Error saving travel time: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    @Override
+    public ArcSpeedStatistics[] getZoneArcSpeeds(String zoneId, Current current) {
+        System.out.println("[DataCenterI] ICE request: getZoneArcSpeeds(" + zoneId + ")");
+        
+        if (travelStats == null) {
+            return new ArcSpeedStatistics[0];
+        }
+        
+        Map<Long, WindowStatistics> speeds = travelStats.getZoneArcSpeeds(zoneId);
+        ArcSpeedStatistics[] result = new ArcSpeedStatistics[speeds.size()];
+        int i = 0;
+        for (Map.Entry<Long, WindowStatistics> arc : speeds.entrySet()) {
+            result[i++] = new ArcSpeedStatistics(arc.getKey(), zoneId, toLiveStatistics(arc.getValue()));
+        }
+        return result;
+    }
+    
+    @Override
+    public LiveStatistics getLiveTravelTime(long originStopId, long destinationStopId, Current current) {
+        System.out.println("[DataCenterI] ICE request: getLiveTravelTime(" + 
+                          originStopId + " -> " + destinationStopId + ")");
+        
+        WindowStatistics stats = travelStats != null
+            ? travelStats.getTravelTime(originStopId, destinationStopId)
+            : null;
+        return toLiveStatistics(stats);
+    }
+    
+    @Override
+    public BusState getBusState(long busId, Current current) {
+        System.out.println("[DataCenterI] ICE request: getBusState(" + busId + ")");
+        
+        BusStateRecord state = busStates != null ? busStates.get(busId) : null;
+        if (state == null) {
+            return new BusState(busId, 0, 0.0, 0.0, 0, -1, "", -1.0, -1.0);
+        }
+        return toBusState(state);
+    }
+    
+    @Override
+    public BusState[] getBusesInZone(String zoneId, Current current) {
+        System.out.println("[DataCenterI] ICE request: getBusesInZone(" + zoneId + ")");
+        
+        if (busStates == null) {
+            return new BusState[0];
+        }
+        
+        List<BusStateRecord> states = busStates.snapshotZone(zoneId, busStateMaxAgeMillis);
+        BusState[] result = new BusState[states.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = toBusState(states.get(i));
+        }
+        return result;
+    }
+    
+    private BusState toBusState(BusStateRecord state) {
+        return new BusState(state.getBusId(), state.getLineId(), state.getLatitude(), state.getLongitude(),
+                            state.getTimestampMillis(), state.getArcId(), state.getZoneId(),
+                            state.getHeadingDegrees(), state.getSpeedKmh());
+    }
+    
+    private LiveStatistics toLiveStatistics(WindowStatistics stats) {
+        long windowMinutes = travelStats != null ? travelStats.getWindowMinutes() : 0;
+        if (stats == null) {
+            return new LiveStatistics(0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, windowMinutes);
+        }
+        return new LiveStatistics(stats.getCount(), stats.getMean(), stats.getStdDev(),
+                                  stats.getMin(), stats.getMax(), stats.getP50(), stats.getP90(),
+                                  windowMinutes);
+    }
+    
     @Override
     public boolean ping(Current current) {
         System.out.println("[DataCenterI] ICE ping received");
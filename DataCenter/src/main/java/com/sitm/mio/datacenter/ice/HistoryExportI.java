@@ -0,0 +1,60 @@
+package com.sitm.mio.datacenter.ice;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import com.zeroc.Ice.Current;
+import SITM.HistoryChunk;
+import SITM.HistoryExportException;
+import com.sitm.mio.datacenter.component.HistoryCursorManager;
+
+/**
+ * ICE Servant implementation for HistoryExport interface.
+ * Wraps HistoryCursorManager; each call reads at most one chunk, so it
+ * runs on the dispatch thread and returns a completed future.
+ */
+public class HistoryExportI implements SITM.HistoryExport {
+
+    private final HistoryCursorManager cursorManager;
+
+    public HistoryExportI(HistoryCursorManager cursorManager) {
+        this.cursorManager = cursorManager;
+    }
+
+    @Override
+    public CompletionStage<String> openCursorAsync(String timeRange, Current current) {
+        System.out.println("[HistoryExportI] ICE request: openCursor(" + timeRange + ")");
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        try {
+            result.complete(cursorManager.open(timeRange));
+        } catch (Exception e) {
+            result.completeExceptionally(toExportException(e));
+        }
+        return result;
+    }
+
+    @Override
+    public CompletionStage<HistoryChunk> fetchChunkAsync(String cursorId, int maxRecords, Current current) {
+        CompletableFuture<HistoryChunk> result = new CompletableFuture<>();
+        try {
+            result.complete(cursorManager.fetch(cursorId, maxRecords));
+        } catch (Exception e) {
+            result.completeExceptionally(toExportException(e));
+        }
+        return result;
+    }
+
+    @Override
+    public CompletionStage<Void> closeCursorAsync(String cursorId, Current current) {
+        cursorManager.close(cursorId);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static HistoryExportException toExportException(Exception e) {
+        if (!(e instanceof IllegalArgumentException) && !(e instanceof IllegalStateException)) {
+            System.err.println("[HistoryExportI] History export failed: " + e.getMessage());
+        }
+        return new HistoryExportException(e.getMessage());
+    }
+}
@@ -8,4 +8,6 @@
         Object resolveArcAndZone(double latitude, double longitude);
         String getZoneId(double latitude, double longitude);
         Long getArcId(double latitude, double longitude);
+        long getNearestStopId(double latitude, double longitude, double maxDistanceMeters);
+        void reloadStops();
     }
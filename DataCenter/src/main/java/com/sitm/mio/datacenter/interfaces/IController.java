@@ -1,5 +1,7 @@
 package com.sitm.mio.datacenter.interfaces;
 
+import com.sitm.mio.datacenter.component.BusStateStore;
+import com.sitm.mio.datacenter.component.TravelStatsAggregator;
 import com.sitm.mio.datacenter.ice.DataCenterEventPublisherI;
 
 /**
@@ -12,4 +14,6 @@ public interface IController {
     void processDatagram(Object datagram);
     Object handleQuery(String queryType, Object params);
     void setIcePublisher(DataCenterEventPublisherI icePublisher);
+    void setTravelStatsAggregator(TravelStatsAggregator travelStats);
+    void setBusStateStore(BusStateStore busStates);
 }
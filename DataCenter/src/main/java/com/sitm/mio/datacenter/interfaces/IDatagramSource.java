@@ -1,5 +1,7 @@
 package com.sitm.mio.datacenter.interfaces;
 
+import com.sitm.mio.datacenter.model.DatagramSourceMetrics;
+
 /**
  * Strategy interface for datagram sources.
  * Allows switching between historic (database) and real-time (UDP) sources.
@@ -27,4 +29,10 @@ public interface IDatagramSource {
      * @return Source type name (e.g., "Database", "UDP")
      */
     String getSourceType();
+    
+    /**
+     * Get ingestion counters for this source.
+     * @return Packets received, datagrams published, parse failures and kernel drops
+     */
+    DatagramSourceMetrics getMetrics();
 }
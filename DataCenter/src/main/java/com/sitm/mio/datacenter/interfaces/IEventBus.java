@@ -1,10 +1,14 @@
 package com.sitm.mio.datacenter.interfaces;
 
+import java.util.List;
+
+import com.sitm.mio.datacenter.model.EventQueueMetrics;
+
 /**
  * Interface for event distribution within DataCenter.
  * Central event bus for publishing and subscribing to domain events.
  * 
- * Realized by: EventBus
+ * Realized by: EventBus (synchronous), AsyncEventBus (queued)
  */
 public interface IEventBus {
     
@@ -31,6 +35,13 @@ public interface IEventBus {
      */
     void unsubscribe(Class<?> eventType, Object handler);
     
+    /**
+     * Get delivery counters per event type.
+     * 
+     * @return Queue depth, drops and handler latency for each event type
+     */
+    List<EventQueueMetrics> getMetrics();
+    
     /**
      * Start the event bus.
      */
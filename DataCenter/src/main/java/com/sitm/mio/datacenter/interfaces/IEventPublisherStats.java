@@ -0,0 +1,13 @@
+package com.sitm.mio.datacenter.interfaces;
+
+import java.util.List;
+
+import com.sitm.mio.datacenter.model.SubscriberMetrics;
+
+/**
+ * Delivery counters of the event publisher, read by the monitoring console.
+ * Realized by: DataCenterEventPublisherI
+ */
+public interface IEventPublisherStats {
+    List<SubscriberMetrics> getSubscriberMetrics();
+}
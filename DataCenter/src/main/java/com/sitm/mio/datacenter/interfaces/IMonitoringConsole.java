@@ -1,5 +1,7 @@
 package com.sitm.mio.datacenter.interfaces;
 
+import com.sitm.mio.datacenter.component.EnrichedDatagramPersister;
+
 /**
  * Interface for system monitoring and diagnostics.
  * Realized by: ConsolaDeMonitoreo
@@ -9,4 +11,7 @@ public interface IMonitoringConsole {
     Object getMetrics();
     void logEvent(String eventType, Object data);
     boolean isHealthy();
+    void setEventPublisher(IEventPublisherStats eventPublisher);
+    void setDatagramPersister(EnrichedDatagramPersister persister);
+    void setDatagramSource(IDatagramSource datagramSource);
 }
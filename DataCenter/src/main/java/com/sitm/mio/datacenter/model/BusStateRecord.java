@@ -0,0 +1,64 @@
+package com.sitm.mio.datacenter.model;
+
+
+// DTO with the last known state of one bus (a consistent snapshot of its slot in BusStateStore).
+
+public class BusStateRecord {
+
+    private final long busId;
+    private final long lineId;
+    private final double latitude;
+    private final double longitude;
+    private final long timestampMillis;
+    private final long arcId;
+    private final String zoneId;
+    private final double headingDegrees;
+    private final double speedKmh;
+
+    public BusStateRecord(long busId,
+                          long lineId,
+                          double latitude,
+                          double longitude,
+                          long timestampMillis,
+                          long arcId,
+                          String zoneId,
+                          double headingDegrees,
+                          double speedKmh) {
+        this.busId = busId;
+        this.lineId = lineId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timestampMillis = timestampMillis;
+        this.arcId = arcId;
+        this.zoneId = zoneId;
+        this.headingDegrees = headingDegrees;
+        this.speedKmh = speedKmh;
+    }
+
+    public long getBusId() { return busId; }
+    public long getLineId() { return lineId; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public long getTimestampMillis() { return timestampMillis; }
+    // -1 when the fix could not be placed on an arc
+    public long getArcId() { return arcId; }
+    public String getZoneId() { return zoneId; }
+    // -1 until the bus has moved between two close fixes
+    public double getHeadingDegrees() { return headingDegrees; }
+    public double getSpeedKmh() { return speedKmh; }
+
+    @Override
+    public String toString() {
+        return "BusStateRecord{" +
+                "busId=" + busId +
+                ", lineId=" + lineId +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", timestampMillis=" + timestampMillis +
+                ", arcId=" + arcId +
+                ", zoneId='" + zoneId + '\'' +
+                ", headingDegrees=" + headingDegrees +
+                ", speedKmh=" + speedKmh +
+                '}';
+    }
+}
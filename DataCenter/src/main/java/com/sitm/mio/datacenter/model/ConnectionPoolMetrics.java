@@ -0,0 +1,57 @@
+package com.sitm.mio.datacenter.model;
+
+
+// DTO with a snapshot of the database connection pool.
+
+public class ConnectionPoolMetrics {
+
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int totalConnections;
+    private final int threadsAwaiting;
+    private final long acquiredCount;
+    private final double averageWaitMicros;
+    private final double maxWaitMicros;
+    private final long timeoutCount;
+
+    public ConnectionPoolMetrics(int activeConnections,
+                                int idleConnections,
+                                int totalConnections,
+                                int threadsAwaiting,
+                                long acquiredCount,
+                                double averageWaitMicros,
+                                double maxWaitMicros,
+                                long timeoutCount) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.totalConnections = totalConnections;
+        this.threadsAwaiting = threadsAwaiting;
+        this.acquiredCount = acquiredCount;
+        this.averageWaitMicros = averageWaitMicros;
+        this.maxWaitMicros = maxWaitMicros;
+        this.timeoutCount = timeoutCount;
+    }
+
+    public int getActiveConnections() { return activeConnections; }
+    public int getIdleConnections() { return idleConnections; }
+    public int getTotalConnections() { return totalConnections; }
+    public int getThreadsAwaiting() { return threadsAwaiting; }
+    public long getAcquiredCount() { return acquiredCount; }
+    public double getAverageWaitMicros() { return averageWaitMicros; }
+    public double getMaxWaitMicros() { return maxWaitMicros; }
+    public long getTimeoutCount() { return timeoutCount; }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolMetrics{" +
+                "active=" + activeConnections +
+                ", idle=" + idleConnections +
+                ", total=" + totalConnections +
+                ", awaiting=" + threadsAwaiting +
+                ", acquired=" + acquiredCount +
+                ", avgWaitMicros=" + String.format("%.1f", averageWaitMicros) +
+                ", maxWaitMicros=" + String.format("%.1f", maxWaitMicros) +
+                ", timeouts=" + timeoutCount +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.sitm.mio.datacenter.model;
+
+
+// DTO with ingestion counters of a datagram source.
+
+public class DatagramSourceMetrics {
+
+    private final String sourceType;
+    private final long packetsReceived;
+    private final long datagramsPublished;
+    private final long parseFailures;
+    private final long kernelDrops;
+
+    public DatagramSourceMetrics(String sourceType,
+                                long packetsReceived,
+                                long datagramsPublished,
+                                long parseFailures,
+                                long kernelDrops) {
+        this.sourceType = sourceType;
+        this.packetsReceived = packetsReceived;
+        this.datagramsPublished = datagramsPublished;
+        this.parseFailures = parseFailures;
+        this.kernelDrops = kernelDrops;
+    }
+
+    public String getSourceType() { return sourceType; }
+    public long getPacketsReceived() { return packetsReceived; }
+    public long getDatagramsPublished() { return datagramsPublished; }
+    public long getParseFailures() { return parseFailures; }
+    // -1 when the source cannot observe kernel drops
+    public long getKernelDrops() { return kernelDrops; }
+
+    @Override
+    public String toString() {
+        return "DatagramSourceMetrics{" +
+                "sourceType='" + sourceType + '\'' +
+                ", packetsReceived=" + packetsReceived +
+                ", datagramsPublished=" + datagramsPublished +
+                ", parseFailures=" + parseFailures +
+                ", kernelDrops=" + kernelDrops +
+                '}';
+    }
+}
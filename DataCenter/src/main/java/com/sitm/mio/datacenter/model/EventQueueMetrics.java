@@ -0,0 +1,56 @@
+package com.sitm.mio.datacenter.model;
+
+
+// DTO with delivery counters for one event type of the EventBus.
+
+public class EventQueueMetrics {
+
+    private final String eventType;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long published;
+    private final long dropped;
+    private final long handled;
+    private final double averageHandlerMicros;
+    private final double maxHandlerMicros;
+
+    public EventQueueMetrics(String eventType,
+                            int queueDepth,
+                            int queueCapacity,
+                            long published,
+                            long dropped,
+                            long handled,
+                            double averageHandlerMicros,
+                            double maxHandlerMicros) {
+        this.eventType = eventType;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.published = published;
+        this.dropped = dropped;
+        this.handled = handled;
+        this.averageHandlerMicros = averageHandlerMicros;
+        this.maxHandlerMicros = maxHandlerMicros;
+    }
+
+    public String getEventType() { return eventType; }
+    public int getQueueDepth() { return queueDepth; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public long getPublished() { return published; }
+    public long getDropped() { return dropped; }
+    public long getHandled() { return handled; }
+    public double getAverageHandlerMicros() { return averageHandlerMicros; }
+    public double getMaxHandlerMicros() { return maxHandlerMicros; }
+
+    @Override
+    public String toString() {
+        return "EventQueueMetrics{" +
+                "eventType='" + eventType + '\'' +
+                ", depth=" + queueDepth + "/" + queueCapacity +
+                ", published=" + published +
+                ", dropped=" + dropped +
+                ", handled=" + handled +
+                ", avgHandlerMicros=" + String.format("%.1f", averageHandlerMicros) +
+                ", maxHandlerMicros=" + String.format("%.1f", maxHandlerMicros) +
+                '}';
+    }
+}
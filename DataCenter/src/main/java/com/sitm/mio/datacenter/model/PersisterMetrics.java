@@ -0,0 +1,65 @@
+package com.sitm.mio.datacenter.model;
+
+
+// DTO with write-behind counters of the enriched datagram persister.
+
+public class PersisterMetrics {
+
+    private final int backlog;
+    private final int bufferCapacity;
+    private final long rowsWritten;
+    private final long rowsDropped;
+    private final long flushes;
+    private final long failedFlushes;
+    private final long lastFlushMillis;
+    private final long maxFlushMillis;
+    private final double rowsPerSecond;
+
+    public PersisterMetrics(int backlog,
+                           int bufferCapacity,
+                           long rowsWritten,
+                           long rowsDropped,
+                           long flushes,
+                           long failedFlushes,
+                           long lastFlushMillis,
+                           long maxFlushMillis,
+                           double rowsPerSecond) {
+        this.backlog = backlog;
+        this.bufferCapacity = bufferCapacity;
+        this.rowsWritten = rowsWritten;
+        this.rowsDropped = rowsDropped;
+        this.flushes = flushes;
+        this.failedFlushes = failedFlushes;
+        this.lastFlushMillis = lastFlushMillis;
+        this.maxFlushMillis = maxFlushMillis;
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    // Datagrams buffered and not yet written
+    public int getBacklog() { return backlog; }
+    public int getBufferCapacity() { return bufferCapacity; }
+    public long getRowsWritten() { return rowsWritten; }
+    // Datagrams discarded because the buffer stayed full or a batch failed every retry
+    public long getRowsDropped() { return rowsDropped; }
+    public long getFlushes() { return flushes; }
+    public long getFailedFlushes() { return failedFlushes; }
+    // Duration of the last successful COPY (-1 before the first)
+    public long getLastFlushMillis() { return lastFlushMillis; }
+    public long getMaxFlushMillis() { return maxFlushMillis; }
+    // Rows written per second of COPY time
+    public double getRowsPerSecond() { return rowsPerSecond; }
+
+    @Override
+    public String toString() {
+        return "PersisterMetrics{" +
+                "backlog=" + backlog + "/" + bufferCapacity +
+                ", rowsWritten=" + rowsWritten +
+                ", rowsDropped=" + rowsDropped +
+                ", flushes=" + flushes +
+                ", failedFlushes=" + failedFlushes +
+                ", lastFlushMillis=" + lastFlushMillis +
+                ", maxFlushMillis=" + maxFlushMillis +
+                ", rowsPerSecond=" + String.format("%.0f", rowsPerSecond) +
+                '}';
+    }
+}
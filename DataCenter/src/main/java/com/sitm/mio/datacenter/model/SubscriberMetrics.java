@@ -0,0 +1,69 @@
+package com.sitm.mio.datacenter.model;
+
+
+// DTO with delivery counters for one subscriber of the event publisher.
+
+public class SubscriberMetrics {
+
+    private final String subscriber;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long delivered;
+    private final long dropped;
+    private final long failed;
+    private final int consecutiveFailures;
+    private final long lagMillis;
+    private final boolean batchDelivery;
+    private final long batchesSent;
+
+    public SubscriberMetrics(String subscriber,
+                            int queueDepth,
+                            int queueCapacity,
+                            long delivered,
+                            long dropped,
+                            long failed,
+                            int consecutiveFailures,
+                            long lagMillis,
+                            boolean batchDelivery,
+                            long batchesSent) {
+        this.subscriber = subscriber;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.failed = failed;
+        this.consecutiveFailures = consecutiveFailures;
+        this.lagMillis = lagMillis;
+        this.batchDelivery = batchDelivery;
+        this.batchesSent = batchesSent;
+    }
+
+    public String getSubscriber() { return subscriber; }
+    public int getQueueDepth() { return queueDepth; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public long getDelivered() { return delivered; }
+    public long getDropped() { return dropped; }
+    public long getFailed() { return failed; }
+    public int getConsecutiveFailures() { return consecutiveFailures; }
+    // Time from enqueue to acknowledgement of the last delivered datagram (-1 before the first)
+    public long getLagMillis() { return lagMillis; }
+    // False once the subscriber turned out not to implement onEnrichedDatagrams
+    public boolean isBatchDelivery() { return batchDelivery; }
+    // Successful invocations (batches, or single records without batch delivery)
+    public long getBatchesSent() { return batchesSent; }
+
+    @Override
+    public String toString() {
+        return "SubscriberMetrics{" +
+                "subscriber='" + subscriber + '\'' +
+                ", depth=" + queueDepth + "/" + queueCapacity +
+                ", delivered=" + delivered +
+                ", dropped=" + dropped +
+                ", failed=" + failed +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", lagMillis=" + lagMillis +
+                ", batchDelivery=" + batchDelivery +
+                ", batchesSent=" + batchesSent +
+                '}';
+    }
+}
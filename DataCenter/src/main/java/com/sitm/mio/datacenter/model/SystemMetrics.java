@@ -1,5 +1,7 @@
 package com.sitm.mio.datacenter.model;
 
+import java.util.List;
+
 
 // DTO with simple monitoring metrics.
 // Can be extended later with more detailed metrics.
@@ -8,20 +10,47 @@ public class SystemMetrics {
 
     private final long eventsLogged;
     private final long lastUpdatedEpochMillis;
+    private final ConnectionPoolMetrics databasePool;
+    private final List<EventQueueMetrics> eventQueues;
+    private final List<SubscriberMetrics> subscribers;
+    private final PersisterMetrics persister;
+    private final DatagramSourceMetrics datagramSource;
 
-    public SystemMetrics(long eventsLogged, long lastUpdatedEpochMillis) {
+    public SystemMetrics(long eventsLogged, long lastUpdatedEpochMillis,
+                        ConnectionPoolMetrics databasePool,
+                        List<EventQueueMetrics> eventQueues,
+                        List<SubscriberMetrics> subscribers,
+                        PersisterMetrics persister,
+                        DatagramSourceMetrics datagramSource) {
         this.eventsLogged = eventsLogged;
         this.lastUpdatedEpochMillis = lastUpdatedEpochMillis;
+        this.databasePool = databasePool;
+        this.eventQueues = eventQueues;
+        this.subscribers = subscribers;
+        this.persister = persister;
+        this.datagramSource = datagramSource;
     }
 
     public long getEventsLogged() { return eventsLogged; }
     public long getLastUpdatedEpochMillis() { return lastUpdatedEpochMillis; }
+    public ConnectionPoolMetrics getDatabasePool() { return databasePool; }
+    public List<EventQueueMetrics> getEventQueues() { return eventQueues; }
+    public List<SubscriberMetrics> getSubscribers() { return subscribers; }
+    // Null when the enriched datagram persister is disabled
+    public PersisterMetrics getPersister() { return persister; }
+    // Packets, parse failures and kernel drops of the active source (UDP or database)
+    public DatagramSourceMetrics getDatagramSource() { return datagramSource; }
 
     @Override
     public String toString() {
         return "SystemMetrics{" +
                 "eventsLogged=" + eventsLogged +
                 ", lastUpdatedEpochMillis=" + lastUpdatedEpochMillis +
+                ", databasePool=" + databasePool +
+                ", eventQueues=" + eventQueues +
+                ", subscribers=" + subscribers +
+                ", persister=" + persister +
+                ", datagramSource=" + datagramSource +
                 '}';
     }
 }
\ No newline at end of file
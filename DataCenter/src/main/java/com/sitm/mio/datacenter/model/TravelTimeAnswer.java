@@ -0,0 +1,27 @@
+package com.sitm.mio.datacenter.model;
+
+
+// DTO with a citizen travel time message and how long it may be cached.
+
+public class TravelTimeAnswer {
+
+    private final String message;
+    private final long cacheTtlMillis;
+
+    public TravelTimeAnswer(String message, long cacheTtlMillis) {
+        this.message = message;
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    public String getMessage() { return message; }
+    // 0 = no limit from DataCenter (the cache uses its own TTL)
+    public long getCacheTtlMillis() { return cacheTtlMillis; }
+
+    @Override
+    public String toString() {
+        return "TravelTimeAnswer{" +
+                "message='" + message + '\'' +
+                ", cacheTtlMillis=" + cacheTtlMillis +
+                '}';
+    }
+}
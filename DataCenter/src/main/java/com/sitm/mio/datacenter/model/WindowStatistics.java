@@ -0,0 +1,46 @@
+package com.sitm.mio.datacenter.model;
+
+
+// DTO with the sliding-window statistics of one arc or stop pair.
+
+public class WindowStatistics {
+
+    private final long count;
+    private final double mean;
+    private final double stdDev;
+    private final double min;
+    private final double max;
+    private final double p50;
+    private final double p90;
+
+    public WindowStatistics(long count,
+                            double mean,
+                            double stdDev,
+                            double min,
+                            double max,
+                            double p50,
+                            double p90) {
+        this.count = count;
+        this.mean = mean;
+        this.stdDev = stdDev;
+        this.min = min;
+        this.max = max;
+        this.p50 = p50;
+        this.p90 = p90;
+    }
+
+    public long getCount() { return count; }
+    public double getMean() { return mean; }
+    public double getStdDev() { return stdDev; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    // Quantiles estimated from a fixed-bin histogram
+    public double getP50() { return p50; }
+    public double getP90() { return p90; }
+
+    @Override
+    public String toString() {
+        return String.format("WindowStatistics{count=%d, mean=%.2f, stdDev=%.2f, min=%.2f, max=%.2f, p50=%.2f, p90=%.2f}",
+                count, mean, stdDev, min, max, p50, p90);
+    }
+}
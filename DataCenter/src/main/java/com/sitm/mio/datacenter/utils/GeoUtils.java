@@ -0,0 +1,23 @@
+package com.sitm.mio.datacenter.utils;
+
+//Distances and headings between GPS fixes, on a local flat approximation (fine at city scale)
+public class GeoUtils {
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private GeoUtils(){}
+
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dx = (lon2 - lon1) * METERS_PER_DEGREE * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double dy = (lat2 - lat1) * METERS_PER_DEGREE;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    //Heading from the first fix to the second: 0 = north, 90 = east
+    public static double bearingDegrees(double lat1, double lon1, double lat2, double lon2) {
+        double dx = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double dy = lat2 - lat1;
+        double degrees = Math.toDegrees(Math.atan2(dx, dy));
+        return degrees < 0 ? degrees + 360.0 : degrees;
+    }
+}
@@ -0,0 +1,152 @@
+package com.sitm.mio.datacenter.utils;
+
+/**
+ * Fixed-capacity map from long keys to slots 0..capacity-1, so per-key
+ * data can live in primitive arrays indexed by slot.
+ *
+ * Open addressing with linear probing over a power-of-two table kept at
+ * most half full. A slot stays with its key until the key is removed;
+ * removal shifts the following probe run back (no tombstones) and the
+ * freed slot is handed to the next new key, so callers must reset the
+ * data they keep for it. Lookups, inserts and removals do not allocate.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class LongIndexMap {
+
+    private static final int EMPTY = -1;
+
+    private final long[] tableKeys;
+    private final int[] tableSlots;
+    private final long[] slotKeys;
+    private final boolean[] slotFree;
+    // Stack of slots freed by remove()
+    private final int[] freeSlots;
+    private final int mask;
+    private int freeCount;
+    private int slotCount;
+    private int size;
+
+    public LongIndexMap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        this.tableKeys = new long[tableSize];
+        this.tableSlots = new int[tableSize];
+        java.util.Arrays.fill(tableSlots, EMPTY);
+        this.slotKeys = new long[capacity];
+        this.slotFree = new boolean[capacity];
+        this.freeSlots = new int[capacity];
+        this.mask = tableSize - 1;
+    }
+
+    /**
+     * Get the slot of a key.
+     * @return Slot, or -1 if the key is not in the map
+     */
+    public int get(long key) {
+        for (int i = index(key); ; i = (i + 1) & mask) {
+            int slot = tableSlots[i];
+            if (slot == EMPTY) {
+                return -1;
+            }
+            if (tableKeys[i] == key) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Get the slot of a key, assigning the next free slot to a new key.
+     * @return Slot, or -1 if the key is new and the map is full
+     */
+    public int getOrAdd(long key) {
+        for (int i = index(key); ; i = (i + 1) & mask) {
+            int slot = tableSlots[i];
+            if (slot == EMPTY) {
+                if (freeCount > 0) {
+                    slot = freeSlots[--freeCount];
+                    slotFree[slot] = false;
+                } else if (slotCount < slotKeys.length) {
+                    slot = slotCount++;
+                } else {
+                    return -1;
+                }
+                tableKeys[i] = key;
+                tableSlots[i] = slot;
+                slotKeys[slot] = key;
+                size++;
+                return slot;
+            }
+            if (tableKeys[i] == key) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Remove a key and free its slot for reuse.
+     * @return The freed slot, or -1 if the key is not in the map
+     */
+    public int remove(long key) {
+        int i = index(key);
+        while (tableSlots[i] != EMPTY && tableKeys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        int slot = tableSlots[i];
+        if (slot == EMPTY) {
+            return -1;
+        }
+
+        // Move back every later entry of the run that may sit at the hole
+        int hole = i;
+        for (int j = (i + 1) & mask; tableSlots[j] != EMPTY; j = (j + 1) & mask) {
+            if (((j - index(tableKeys[j])) & mask) >= ((j - hole) & mask)) {
+                tableKeys[hole] = tableKeys[j];
+                tableSlots[hole] = tableSlots[j];
+                hole = j;
+            }
+        }
+        tableSlots[hole] = EMPTY;
+
+        slotFree[slot] = true;
+        freeSlots[freeCount++] = slot;
+        size--;
+        return slot;
+    }
+
+    /**
+     * Get the key stored in a slot (0 <= slot < slotCount(), slot not free).
+     */
+    public long keyAt(int slot) {
+        return slotKeys[slot];
+    }
+
+    /**
+     * Whether a slot below slotCount() was freed by remove() and not reused yet.
+     */
+    public boolean isFree(int slot) {
+        return slotFree[slot];
+    }
+
+    /**
+     * Slots handed out so far; every used slot is below it.
+     */
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return slotKeys.length;
+    }
+
+    // Fibonacci hashing spreads sequential IDs over the table
+    private int index(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+}
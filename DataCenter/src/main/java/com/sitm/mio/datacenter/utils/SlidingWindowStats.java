@@ -0,0 +1,276 @@
+package com.sitm.mio.datacenter.utils;
+
+import java.util.Arrays;
+
+import com.sitm.mio.datacenter.model.WindowStatistics;
+
+/**
+ * Sliding-window statistics per long key (arc, stop pair...), kept in
+ * primitive arrays indexed by key slot.
+ *
+ * The window is split into `buckets` time buckets of bucketMillis each,
+ * stored as a ring per key. A bucket holds count, mean and M2 (Welford),
+ * min, max and a fixed-bin histogram of its values. Adding a value touches
+ * one bucket: O(1), no allocation. A bucket is reset when it is reused for
+ * a newer period, which is how old values leave the window. Reading a key
+ * merges its live buckets (Chan et al. for mean and variance, summed
+ * histograms for the quantiles), O(buckets * bins).
+ *
+ * Time is event time: the window ends at the newest timestamp seen, so
+ * replayed history is aggregated the same way as live data. One timestamp
+ * far in the future would therefore expire every key; callers must reject
+ * such values first (see TravelStatsAggregator). Event time stops when
+ * ingestion does, so reads also age the window by the wall-clock time since
+ * the last value: with no datagrams for a whole window, nothing is left.
+ *
+ * At most capacity keys are tracked. When the table is full, keys with no
+ * value left in the window give their slot back (scanned at most once per
+ * bucket, so a table full of live keys does not rescan on every value);
+ * values for further keys are counted as rejected. Thread-safe (one lock
+ * per instance, held only for the O(1) update, the merge or the reclaim).
+ */
+public final class SlidingWindowStats {
+
+    private final LongIndexMap keys;
+    private final int buckets;
+    private final long bucketMillis;
+    private final int bins;
+    private final double binWidth;
+
+    // Per bucket: index = slot * buckets + bucket
+    private final long[] periods;
+    private final int[] counts;
+    private final double[] means;
+    private final double[] m2s;
+    private final double[] mins;
+    private final double[] maxs;
+    // Per bucket and bin: index = (slot * buckets + bucket) * bins + bin
+    private final int[] histogram;
+
+    private long latestPeriod = Long.MIN_VALUE;
+    private long lastAddWallMillis;
+    private long lastReclaimPeriod = Long.MIN_VALUE;
+    private long rejected;
+    private long reclaimed;
+
+    /**
+     * @param capacity Maximum number of keys
+     * @param buckets Buckets in the window
+     * @param bucketMillis Time span of each bucket
+     * @param histogramMax Upper bound of the histogram; larger values go to the last bin
+     * @param bins Histogram bins per bucket
+     */
+    public SlidingWindowStats(int capacity, int buckets, long bucketMillis, double histogramMax, int bins) {
+        if (buckets <= 0 || bucketMillis <= 0 || bins <= 0 || histogramMax <= 0) {
+            throw new IllegalArgumentException("buckets, bucketMillis, bins and histogramMax must be positive");
+        }
+        this.keys = new LongIndexMap(capacity);
+        this.buckets = buckets;
+        this.bucketMillis = bucketMillis;
+        this.bins = bins;
+        this.binWidth = histogramMax / bins;
+
+        int cells = capacity * buckets;
+        this.periods = new long[cells];
+        Arrays.fill(periods, Long.MIN_VALUE);
+        this.counts = new int[cells];
+        this.means = new double[cells];
+        this.m2s = new double[cells];
+        this.mins = new double[cells];
+        this.maxs = new double[cells];
+        this.histogram = new int[cells * bins];
+    }
+
+    /**
+     * Add a value observed at timestampMillis.
+     * @return false if it is older than the window or the key table is full
+     */
+    public synchronized boolean add(long key, double value, long timestampMillis) {
+        long period = Math.floorDiv(timestampMillis, bucketMillis);
+        if (latestPeriod != Long.MIN_VALUE && period <= latestPeriod - buckets) {
+            return false;
+        }
+        int slot = keys.getOrAdd(key);
+        if (slot < 0 && reclaimIdle(period) > 0) {
+            slot = keys.getOrAdd(key);
+        }
+        if (slot < 0) {
+            rejected++;
+            return false;
+        }
+        latestPeriod = Math.max(latestPeriod, period);
+        lastAddWallMillis = System.currentTimeMillis();
+
+        int cell = slot * buckets + (int) Math.floorMod(period, (long) buckets);
+        if (periods[cell] != period) {
+            // Reused for a newer period: what it held has left the window
+            periods[cell] = period;
+            counts[cell] = 0;
+            means[cell] = 0.0;
+            m2s[cell] = 0.0;
+            mins[cell] = Double.MAX_VALUE;
+            maxs[cell] = -Double.MAX_VALUE;
+            Arrays.fill(histogram, cell * bins, cell * bins + bins, 0);
+        }
+
+        int n = ++counts[cell];
+        double delta = value - means[cell];
+        means[cell] += delta / n;
+        m2s[cell] += delta * (value - means[cell]);
+        mins[cell] = Math.min(mins[cell], value);
+        maxs[cell] = Math.max(maxs[cell], value);
+        histogram[cell * bins + binOf(value)]++;
+        return true;
+    }
+
+    /**
+     * Get the statistics of a key over the current window.
+     * @return Statistics, or null if the key has no value in the window
+     */
+    public synchronized WindowStatistics get(long key) {
+        int slot = keys.get(key);
+        return slot < 0 ? null : merge(slot);
+    }
+
+    /**
+     * Get the keys seen so far (including those with no value left in the window).
+     */
+    public synchronized long[] keys() {
+        long[] result = new long[keys.size()];
+        int n = 0;
+        for (int slot = 0; slot < keys.slotCount(); slot++) {
+            if (!keys.isFree(slot)) {
+                result[n++] = keys.keyAt(slot);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    public int capacity() {
+        return keys.capacity();
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * Values dropped because the key table was full.
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Keys dropped after their window emptied, to make room for new ones.
+     */
+    public synchronized long getReclaimed() {
+        return reclaimed;
+    }
+
+    /**
+     * Free the slots of keys with no value left in the window, once per bucket.
+     * @param period Period of the value being added, which may open a newer window
+     * @return Number of slots freed
+     */
+    private int reclaimIdle(long period) {
+        long current = Math.max(currentPeriod(), period);
+        if (current <= lastReclaimPeriod) {
+            return 0;
+        }
+        lastReclaimPeriod = current;
+
+        int freed = 0;
+        for (int slot = 0; slot < keys.slotCount(); slot++) {
+            if (keys.isFree(slot) || hasLiveBucket(slot, current)) {
+                continue;
+            }
+            keys.remove(keys.keyAt(slot));
+            Arrays.fill(periods, slot * buckets, slot * buckets + buckets, Long.MIN_VALUE);
+            Arrays.fill(counts, slot * buckets, slot * buckets + buckets, 0);
+            freed++;
+        }
+        reclaimed += freed;
+        return freed;
+    }
+
+    private boolean hasLiveBucket(int slot, long current) {
+        for (int cell = slot * buckets; cell < slot * buckets + buckets; cell++) {
+            if (counts[cell] > 0 && periods[cell] > current - buckets) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private WindowStatistics merge(int slot) {
+        long current = currentPeriod();
+        long n = 0;
+        double mean = 0.0;
+        double m2 = 0.0;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        long[] merged = new long[bins];
+
+        for (int b = 0; b < buckets; b++) {
+            int cell = slot * buckets + b;
+            if (counts[cell] == 0 || periods[cell] <= current - buckets) {
+                continue;
+            }
+            long nb = counts[cell];
+            long total = n + nb;
+            double delta = means[cell] - mean;
+            mean += delta * nb / total;
+            m2 += m2s[cell] + delta * delta * n * nb / total;
+            n = total;
+            min = Math.min(min, mins[cell]);
+            max = Math.max(max, maxs[cell]);
+            for (int bin = 0; bin < bins; bin++) {
+                merged[bin] += histogram[cell * bins + bin];
+            }
+        }
+
+        if (n == 0) {
+            return null;
+        }
+        double stdDev = n > 1 ? Math.sqrt(m2 / (n - 1)) : 0.0;
+        return new WindowStatistics(n, mean, stdDev, min, max,
+                quantile(merged, n, 0.5, min, max), quantile(merged, n, 0.9, min, max));
+    }
+
+    /**
+     * Newest period of event time, moved forward by the whole buckets of wall
+     * clock elapsed since the last value was added.
+     */
+    private long currentPeriod() {
+        long idleMillis = System.currentTimeMillis() - lastAddWallMillis;
+        return idleMillis > 0 ? latestPeriod + idleMillis / bucketMillis : latestPeriod;
+    }
+
+    /**
+     * Interpolate a quantile inside the bin that holds it, clamped to the
+     * observed range (exact for the last bin, which is open-ended).
+     */
+    private double quantile(long[] merged, long n, double q, double min, double max) {
+        double rank = q * n;
+        long seen = 0;
+        for (int bin = 0; bin < bins; bin++) {
+            long inBin = merged[bin];
+            if (inBin > 0 && seen + inBin >= rank) {
+                double estimate = (bin + (rank - seen) / inBin) * binWidth;
+                return Math.max(min, Math.min(max, estimate));
+            }
+            seen += inBin;
+        }
+        return max;
+    }
+
+    private int binOf(double value) {
+        int bin = (int) (value / binWidth);
+        return bin < 0 ? 0 : Math.min(bin, bins - 1);
+    }
+}
@@ -0,0 +1,266 @@
+package com.sitm.mio.datacenter.utils;
+
+import java.util.List;
+
+import com.sitm.mio.datacenter.model.Stop;
+
+/**
+ * Immutable uniform-grid index over the stop set, used to answer
+ * nearest / second-nearest stop queries without touching the database.
+ *
+ * Coordinates are projected once to a local equirectangular plane (meters),
+ * which is indistinguishable from haversine ordering at city scale.
+ * Stops are stored in primitive arrays sorted by grid cell, so queries
+ * only read arrays and never allocate.
+ *
+ * Instances are never mutated; to pick up new stops build a new index
+ * and swap the reference.
+ */
+public final class StopSpatialIndex {
+
+    /** Returned by {@link #nearestPair} when fewer than two stops exist. */
+    public static final long NO_PAIR = -1L;
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final double DEFAULT_CELL_SIZE_METERS = 250.0;
+
+    private static final StopSpatialIndex EMPTY = new StopSpatialIndex(List.of(), DEFAULT_CELL_SIZE_METERS);
+
+    private final Stop[] stops;
+    private final long[] ids;
+    private final double[] xs;
+    private final double[] ys;
+
+    // cellStart[c] .. cellStart[c + 1] are the slots of the stops in cell c
+    private final int[] cellStart;
+    private final int rows;
+    private final int cols;
+    private final double cellSize;
+    private final double cosRef;
+    private final double minX;
+    private final double minY;
+
+    private StopSpatialIndex(List<Stop> source, double cellSizeMeters) {
+        int n = source.size();
+        this.cellSize = cellSizeMeters;
+
+        double latSum = 0.0;
+        for (Stop s : source) {
+            latSum += s.getLatitude();
+        }
+        this.cosRef = Math.cos(Math.toRadians(n > 0 ? latSum / n : 0.0));
+
+        double[] px = new double[n];
+        double[] py = new double[n];
+        double loX = Double.MAX_VALUE, loY = Double.MAX_VALUE;
+        double hiX = -Double.MAX_VALUE, hiY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Stop s = source.get(i);
+            px[i] = projectX(s.getLongitude());
+            py[i] = projectY(s.getLatitude());
+            loX = Math.min(loX, px[i]);
+            loY = Math.min(loY, py[i]);
+            hiX = Math.max(hiX, px[i]);
+            hiY = Math.max(hiY, py[i]);
+        }
+
+        this.minX = n > 0 ? loX : 0.0;
+        this.minY = n > 0 ? loY : 0.0;
+        this.cols = n > 0 ? (int) ((hiX - loX) / cellSize) + 1 : 1;
+        this.rows = n > 0 ? (int) ((hiY - loY) / cellSize) + 1 : 1;
+
+        // Counting sort of the stops by cell
+        int[] cellOf = new int[n];
+        int[] counts = new int[rows * cols + 1];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = cellIndex(rowOf(py[i]), colOf(px[i]));
+            counts[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) {
+            counts[c + 1] += counts[c];
+        }
+        this.cellStart = counts.clone();
+
+        this.stops = new Stop[n];
+        this.ids = new long[n];
+        this.xs = new double[n];
+        this.ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            int slot = counts[cellOf[i]]++;
+            stops[slot] = source.get(i);
+            ids[slot] = source.get(i).getId();
+            xs[slot] = px[i];
+            ys[slot] = py[i];
+        }
+    }
+
+    /**
+     * Build an index with the default cell size.
+     * @param stops Stops to index (null is treated as empty)
+     * @return New index
+     */
+    public static StopSpatialIndex build(List<Stop> stops) {
+        return build(stops, DEFAULT_CELL_SIZE_METERS);
+    }
+
+    /**
+     * Build an index with a given cell size.
+     * @param stops Stops to index (null is treated as empty)
+     * @param cellSizeMeters Side of each grid cell in meters
+     * @return New index
+     */
+    public static StopSpatialIndex build(List<Stop> stops, double cellSizeMeters) {
+        if (stops == null || stops.isEmpty()) {
+            return EMPTY;
+        }
+        if (cellSizeMeters <= 0) {
+            throw new IllegalArgumentException("cellSizeMeters must be positive: " + cellSizeMeters);
+        }
+        return new StopSpatialIndex(stops, cellSizeMeters);
+    }
+
+    /**
+     * @return An index with no stops
+     */
+    public static StopSpatialIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Find the slot of the stop nearest to a coordinate.
+     * @return Slot index, or -1 if the index is empty
+     */
+    public int nearest(double latitude, double longitude) {
+        long pair = search(latitude, longitude, 1);
+        return pair == NO_PAIR ? -1 : firstOf(pair);
+    }
+
+    /**
+     * Find the slots of the two stops nearest to a coordinate.
+     * The result is packed in a long to keep the query allocation-free;
+     * unpack it with {@link #firstOf(long)} and {@link #secondOf(long)}.
+     *
+     * @return Packed slots, or {@link #NO_PAIR} if fewer than two stops exist
+     */
+    public long nearestPair(double latitude, double longitude) {
+        return search(latitude, longitude, 2);
+    }
+
+    public static int firstOf(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    public static int secondOf(long pair) {
+        return (int) pair;
+    }
+
+    public long stopIdAt(int slot) {
+        return ids[slot];
+    }
+
+    public Stop stopAt(int slot) {
+        return stops[slot];
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Distance in meters from a coordinate to the stop in a slot.
+     */
+    public double distanceMeters(int slot, double latitude, double longitude) {
+        double dx = projectX(longitude) - xs[slot];
+        double dy = projectY(latitude) - ys[slot];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Ring search around the query cell. After finishing ring r every
+     * unvisited stop is at least r * cellSize away, so the search stops
+     * as soon as the k-th best candidate is closer than that.
+     */
+    private long search(double latitude, double longitude, int k) {
+        if (ids.length < k) {
+            return NO_PAIR;
+        }
+
+        double qx = projectX(longitude);
+        double qy = projectY(latitude);
+        int qr = rowOf(qy);
+        int qc = colOf(qx);
+        // Rings below minRing do not touch the grid (query far outside the stop area)
+        int minRing = Math.max(Math.max(-qr, qr - (rows - 1)), Math.max(-qc, qc - (cols - 1)));
+        int maxRing = Math.max(Math.max(qr, rows - 1 - qr), Math.max(qc, cols - 1 - qc));
+
+        int best = -1, second = -1;
+        double bestD = Double.MAX_VALUE, secondD = Double.MAX_VALUE;
+
+        for (int r = Math.max(0, minRing); r <= maxRing; r++) {
+            int rowLo = Math.max(0, qr - r);
+            int rowHi = Math.min(rows - 1, qr + r);
+            int colLo = Math.max(0, qc - r);
+            int colHi = Math.min(cols - 1, qc + r);
+            for (int row = rowLo; row <= rowHi; row++) {
+                boolean edgeRow = row == qr - r || row == qr + r;
+                for (int col = colLo; col <= colHi; col++) {
+                    if (!edgeRow && col != qc - r && col != qc + r) {
+                        // Interior of the ring was already visited; jump to its right edge
+                        if (qc + r > colHi) {
+                            break;
+                        }
+                        col = qc + r - 1;
+                        continue;
+                    }
+                    int cell = cellIndex(row, col);
+                    for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; i++) {
+                        double dx = xs[i] - qx;
+                        double dy = ys[i] - qy;
+                        double d = dx * dx + dy * dy;
+                        if (d < bestD) {
+                            second = best;
+                            secondD = bestD;
+                            best = i;
+                            bestD = d;
+                        } else if (d < secondD) {
+                            second = i;
+                            secondD = d;
+                        }
+                    }
+                }
+            }
+
+            double reach = r * cellSize;
+            double kthD = k == 1 ? bestD : secondD;
+            if (kthD <= reach * reach) {
+                break;
+            }
+        }
+
+        if (k == 1) {
+            return ((long) best) << 32;
+        }
+        return (((long) best) << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private double projectX(double longitude) {
+        return longitude * METERS_PER_DEGREE * cosRef;
+    }
+
+    private double projectY(double latitude) {
+        return latitude * METERS_PER_DEGREE;
+    }
+
+    // Not clamped: queries outside the grid get virtual cells so the ring bound stays valid
+    private int rowOf(double y) {
+        return (int) Math.floor((y - minY) / cellSize);
+    }
+
+    private int colOf(double x) {
+        return (int) Math.floor((x - minX) / cellSize);
+    }
+
+    private int cellIndex(int row, int col) {
+        return row * cols + col;
+    }
+}
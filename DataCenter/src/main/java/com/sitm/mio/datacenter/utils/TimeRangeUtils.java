@@ -0,0 +1,33 @@
+package com.sitm.mio.datacenter.utils;
+
+import java.time.Duration;
+
+//Parses the time ranges used by history queries: a number followed by m, h or d ("1h", "24h", "7d")
+public class TimeRangeUtils {
+
+    private TimeRangeUtils(){}
+
+    public static Duration parse(String timeRange) {
+        if (timeRange == null || timeRange.trim().length() < 2) {
+            throw new IllegalArgumentException("Invalid time range: " + timeRange);
+        }
+        String value = timeRange.trim().toLowerCase();
+        long amount;
+        try {
+            amount = Long.parseLong(value.substring(0, value.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time range: " + timeRange);
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Invalid time range: " + timeRange);
+        }
+
+        switch (value.charAt(value.length() - 1)) {
+            case 'm': return Duration.ofMinutes(amount);
+            case 'h': return Duration.ofHours(amount);
+            case 'd': return Duration.ofDays(amount);
+            default:
+                throw new IllegalArgumentException("Invalid time range unit (m, h or d): " + timeRange);
+        }
+    }
+}
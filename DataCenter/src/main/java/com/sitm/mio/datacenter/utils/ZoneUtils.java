@@ -33,9 +33,27 @@ public class ZoneUtils {
 
         int index = row * COLUMNS + col + 1;
        
+        return zoneName(index);
+    }
+
+    //Zone index (1..40) to its id, e.g. 7 -> "Z07"
+    public static String zoneName(int index) {
         return String.format("Z%02d", index);
     }
 
+    //Zone id to its index, or -1 if it is not a zone id
+    public static int zoneIndexOf(String zoneId) {
+        if (zoneId == null || zoneId.length() < 2 || zoneId.charAt(0) != 'Z') {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(zoneId.substring(1));
+            return index >= 1 && index <= ROWS * COLUMNS ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     private static double clamp(double value, double min, double max) {
         return Math.max(min, Math.min(max, value));
     }
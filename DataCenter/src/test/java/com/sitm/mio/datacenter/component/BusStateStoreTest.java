@@ -0,0 +1,110 @@
+package com.sitm.mio.datacenter.component;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.sitm.mio.datacenter.model.BusStateRecord;
+
+/**
+ * Every field of fix i is derived from i, so a record copied while a
+ * writer was halfway through a slot shows fields of two different fixes.
+ */
+class BusStateStoreTest {
+
+    private static final int UPDATES = 200_000;
+    private static final long SKEW = 60_000L;
+
+    @Test
+    void readerNeverSeesTornRecord() throws Exception {
+        BusStateStore store = new BusStateStore(16, 60_000L, SKEW);
+        long base = System.currentTimeMillis() - 2L * UPDATES;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (!done.get() && torn.get() == null) {
+                BusStateRecord state = store.get(7L);
+                if (state != null) {
+                    check(state, base, torn);
+                }
+            }
+        });
+        reader.start();
+
+        for (int i = 1; i <= UPDATES; i++) {
+            write(store, 7L, i, base);
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(torn.get(), "torn record");
+        check(store.get(7L), base, torn);
+        assertNull(torn.get(), "torn record");
+        assertEquals(UPDATES, store.getUpdates());
+    }
+
+    @Test
+    void snapshotNeverSeesTornRecord() throws Exception {
+        BusStateStore store = new BusStateStore(16, 60_000L, SKEW);
+        long base = System.currentTimeMillis() - 2L * UPDATES;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (!done.get() && torn.get() == null) {
+                for (BusStateRecord state : store.snapshotAll(0L)) {
+                    check(state, base, torn);
+                }
+            }
+        });
+        reader.start();
+
+        for (int i = 1; i <= UPDATES; i++) {
+            write(store, 1L + i % 2, i, base);
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(torn.get(), "torn record");
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void rejectsOlderAndFutureFixes() {
+        BusStateStore store = new BusStateStore(4, 60_000L, SKEW);
+        long now = System.currentTimeMillis();
+
+        assertTrue(store.update(1L, 10L, 3.4, -76.5, now, null, "Z01"));
+        assertFalse(store.update(1L, 10L, 3.4, -76.5, now - 1, null, "Z01"));
+        assertFalse(store.update(1L, 10L, 3.4, -76.5, now + 10 * SKEW, null, "Z01"));
+        assertEquals(now, store.get(1L).getTimestampMillis());
+        assertEquals(1, store.getRejected());
+    }
+
+    private static void write(BusStateStore store, long busId, int i, long base) {
+        store.update(busId, i, latitudeOf(i), -latitudeOf(i), base + i, (long) i, i % 2 == 0 ? "Z01" : "Z02");
+    }
+
+    private static double latitudeOf(int i) {
+        return 3.3 + i * 1e-7;
+    }
+
+    private static void check(BusStateRecord state, long base, AtomicReference<String> torn) {
+        int i = (int) state.getLineId();
+        boolean consistent = state.getLatitude() == latitudeOf(i)
+                && state.getLongitude() == -latitudeOf(i)
+                && state.getTimestampMillis() == base + i
+                && state.getArcId() == i
+                && state.getZoneId().equals(i % 2 == 0 ? "Z01" : "Z02");
+        if (!consistent) {
+            torn.compareAndSet(null, state.toString());
+        }
+    }
+}
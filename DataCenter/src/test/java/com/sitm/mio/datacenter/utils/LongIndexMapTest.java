@@ -0,0 +1,84 @@
+package com.sitm.mio.datacenter.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Removal shifts probe runs back instead of leaving tombstones; a random
+ * mix of inserts and removals must keep every remaining key findable.
+ */
+class LongIndexMapTest {
+
+    @Test
+    void randomInsertsAndRemovesMatchHashMap() {
+        int capacity = 64;
+        LongIndexMap map = new LongIndexMap(capacity);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int step = 0; step < 200_000; step++) {
+            // Few distinct keys, so runs collide and wrap around the table
+            long key = random.nextInt(256);
+            if (random.nextBoolean()) {
+                int slot = map.getOrAdd(key);
+                if (expected.containsKey(key)) {
+                    assertEquals((int) expected.get(key), slot, "slot of " + key);
+                } else if (expected.size() < capacity) {
+                    assertTrue(slot >= 0 && slot < capacity, "slot of new key " + key);
+                    expected.put(key, slot);
+                } else {
+                    assertEquals(-1, slot, "full map accepted " + key);
+                }
+            } else {
+                Integer slot = expected.remove(key);
+                assertEquals(slot == null ? -1 : slot, map.remove(key), "removed slot of " + key);
+            }
+
+            assertEquals(expected.size(), map.size());
+            if (step % 1000 == 0) {
+                for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+                    assertEquals((int) entry.getValue(), map.get(entry.getKey()), "lookup of " + entry.getKey());
+                }
+            }
+        }
+    }
+
+    @Test
+    void removedSlotIsReused() {
+        LongIndexMap map = new LongIndexMap(2);
+        assertEquals(0, map.getOrAdd(10L));
+        assertEquals(1, map.getOrAdd(20L));
+        assertEquals(-1, map.getOrAdd(30L));
+
+        assertEquals(0, map.remove(10L));
+        assertTrue(map.isFree(0));
+        assertEquals(-1, map.get(10L));
+        assertEquals(0, map.getOrAdd(30L));
+        assertEquals(30L, map.keyAt(0));
+        assertEquals(1, map.get(20L));
+    }
+
+    @Test
+    void slotsStayDistinct() {
+        LongIndexMap map = new LongIndexMap(8);
+        Set<Integer> used = new HashSet<>();
+        for (long key = 0; key < 8; key++) {
+            used.add(map.getOrAdd(key * 1024));
+        }
+        used.remove(map.remove(0L));
+        used.remove(map.remove(3072L));
+        for (long key = 100; key < 102; key++) {
+            int slot = map.getOrAdd(key);
+            assertTrue(used.add(slot), "slot handed out twice: " + slot);
+        }
+        assertEquals(8, used.size());
+    }
+}
@@ -7,6 +7,7 @@ import com.zeroc.Ice.Util;
 import com.sitm.mio.observer.component.ProxyClient;
 import com.sitm.mio.observer.ice.ObserverAnalyticsI;
 import com.sitm.mio.observer.ice.EventPublisherI;
+import com.sitm.mio.observer.ice.HistoryExportI;
 import com.sitm.mio.observer.ice.ProxyServerEventSubscriberI;
 import SITM.EventPublisherPrx;
 import SITM.EventSubscriberPrx;
@@ -16,7 +17,7 @@ import SITM.EventSubscriberPrx;
  * 
  * Observer now acts as both:
  * - ICE Client: Queries ProxyServer for analytics data
- * - ICE Server: Exposes Analytics interface for OperationControl
+ * - ICE Server: Exposes Analytics and HistoryExport interfaces for OperationControl
  */
 public class Main {
     
@@ -61,6 +62,7 @@ public class Main {
             // Create ICE servants
             ObserverAnalyticsI analyticsServant = new ObserverAnalyticsI(proxyClient);
             EventPublisherI eventPublisher = new EventPublisherI();
+            HistoryExportI historyExportServant = new HistoryExportI(proxyClient);
             com.sitm.mio.observer.ice.DataCenterEventSubscriberI dataCenterSubscriber = 
                 new com.sitm.mio.observer.ice.DataCenterEventSubscriberI(eventPublisher);
             
@@ -71,6 +73,9 @@ public class Main {
             adapter.add(eventPublisher, Util.stringToIdentity("EventPublisher"));
             System.out.println("EventPublisher servant registered");
             
+            adapter.add(historyExportServant, Util.stringToIdentity("HistoryExport"));
+            System.out.println("HistoryExport servant registered");
+            
             ObjectPrx subscriberObj = adapter.add(dataCenterSubscriber, Util.stringToIdentity("DataCenterSubscriber"));
             System.out.println("DataCenterSubscriber servant registered");
             
@@ -107,6 +112,7 @@ public class Main {
             System.out.println("ICE Server Endpoints:");
             System.out.println("  Analytics:tcp -h localhost -p " + observerPort);
             System.out.println("  EventPublisher:tcp -h localhost -p " + observerPort);
+            System.out.println("  HistoryExport:tcp -h localhost -p " + observerPort);
             System.out.println();
             System.out.println("Event Flow:");
             System.out.println("  ProxyServer → Observer → OperationControl");
@@ -8,18 +8,20 @@ import SITM.SystemStatistics;
 import SITM.ZoneStatistics;
 import SITM.HistoricalData;
 import SITM.HealthCheckPrx;
+import SITM.HistoryExportPrx;
 
 /**
  * ICE RPC client for querying ProxyServer analytics.
  * Replaces HTTP REST API with ICE RPC calls.
  * 
- * Connects to ProxyServer's Analytics and HealthCheck interfaces.
+ * Connects to ProxyServer's Analytics, HealthCheck and HistoryExport interfaces.
  */
 public class ProxyClient {
     
     private final Communicator communicator;
     private final AnalyticsPrx analytics;
     private final HealthCheckPrx healthCheck;
+    private final HistoryExportPrx historyExport;
     private final String proxyServerEndpoint;
     
     public ProxyClient(String host, int port) {
@@ -48,6 +50,10 @@ public class ProxyClient {
                 throw new RuntimeException("Invalid HealthCheck proxy");
             }
             
+            // Create proxy to HistoryExport interface (unchecked: only used on demand)
+            ObjectPrx historyBase = communicator.stringToProxy("HistoryExport:" + proxyServerEndpoint);
+            this.historyExport = HistoryExportPrx.uncheckedCast(historyBase);
+            
             System.out.println("Connected to ProxyServer via ICE");
             
         } catch (Exception e) {
@@ -106,6 +112,14 @@ public class ProxyClient {
         }
     }
     
+    /**
+     * Get the ProxyServer history export proxy, used to relay cursors.
+     * @return HistoryExport proxy
+     */
+    public HistoryExportPrx getHistoryExport() {
+        return historyExport;
+    }
+    
     /**
      * Check if ProxyServer is reachable via ICE ping.
      * @return true if server responds to ping
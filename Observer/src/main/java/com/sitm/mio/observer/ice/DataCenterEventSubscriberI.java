@@ -35,15 +35,35 @@ public class DataCenterEventSubscriberI implements DataCenterEventSubscriber {
         System.out.println("========================================");
         System.out.println();
         
-        // Convert to Event and forward to OperationControl subscribers
+        System.out.println("Forwarding to OperationControl subscribers...");
+        eventPublisher.notifySubscribers(toEvent(datagram));
+    }
+    
+    @Override
+    public void onEnrichedDatagrams(EnrichedDatagram[] datagrams, Current current) {
+        System.out.println("ENRICHED DATAGRAM BATCH RECEIVED FROM DATACENTER: " + datagrams.length + " datagrams");
+        
+        // Forward in publish order
+        for (EnrichedDatagram datagram : datagrams) {
+            eventPublisher.notifySubscribers(toEvent(datagram));
+        }
+    }
+    
+    @Override
+    public void onCacheInvalidation(SITM.CacheInvalidation invalidation, Current current) {
+        // Observer keeps no travel time cache
+    }
+    
+    /**
+     * Convert to Event for OperationControl subscribers.
+     */
+    private SITM.Event toEvent(EnrichedDatagram datagram) {
         SITM.Event event = new SITM.Event();
         event.type = SITM.EventType.RequestProcessed;
         event.source = "DataCenter";
         event.message = String.format("Bus %d in Zone %s (Arc %s)", 
             datagram.busId, datagram.zoneId, datagram.arcId);
         event.timestamp = datagram.timestamp;
-        
-        System.out.println("Forwarding to OperationControl subscribers...");
-        eventPublisher.notifySubscribers(event);
+        return event;
     }
 }
@@ -0,0 +1,68 @@
+package com.sitm.mio.observer.ice;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import com.zeroc.Ice.Current;
+import SITM.HistoryChunk;
+import SITM.HistoryExport;
+import SITM.HistoryExportException;
+import com.sitm.mio.observer.component.ProxyClient;
+
+/**
+ * ICE servant implementation for Observer's HistoryExport interface.
+ * Provides history export cursors to OperationControl.
+ *
+ * Observer acts as a proxy - every call is forwarded asynchronously to
+ * ProxyServer and the chunk is returned as is, so no range is ever held
+ * here.
+ */
+public class HistoryExportI implements HistoryExport {
+
+    private final ProxyClient proxyClient;
+
+    public HistoryExportI(ProxyClient proxyClient) {
+        this.proxyClient = proxyClient;
+        System.out.println("HistoryExportI servant created");
+    }
+
+    @Override
+    public CompletionStage<String> openCursorAsync(String timeRange, Current current) {
+        System.out.println("HistoryExportI: openCursor called for range: " + timeRange);
+        return relay(proxyClient.getHistoryExport().openCursorAsync(timeRange));
+    }
+
+    @Override
+    public CompletionStage<HistoryChunk> fetchChunkAsync(String cursorId, int maxRecords, Current current) {
+        return relay(proxyClient.getHistoryExport().fetchChunkAsync(cursorId, maxRecords));
+    }
+
+    @Override
+    public CompletionStage<Void> closeCursorAsync(String cursorId, Current current) {
+        // Best effort: DataCenter closes idle cursors itself
+        return proxyClient.getHistoryExport().closeCursorAsync(cursorId).exceptionally(e -> null);
+    }
+
+    /**
+     * Pass ProxyServer's answer through; connection failures become a
+     * HistoryExportException so OperationControl sees why the export stopped.
+     */
+    private static <T> CompletableFuture<T> relay(CompletableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof HistoryExportException) {
+                result.completeExceptionally(cause);
+            } else {
+                System.err.println("HistoryExportI: relay to ProxyServer failed: " + cause);
+                result.completeExceptionally(new HistoryExportException("ProxyServer unavailable: " + cause));
+            }
+        });
+        return result;
+    }
+}
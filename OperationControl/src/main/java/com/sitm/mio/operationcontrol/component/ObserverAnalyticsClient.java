@@ -1,5 +1,7 @@
 package com.sitm.mio.operationcontrol.component;
 
+import java.util.function.Consumer;
+
 import com.zeroc.Ice.Communicator;
 import com.zeroc.Ice.ObjectPrx;
 import com.zeroc.Ice.Util;
@@ -7,15 +9,20 @@ import SITM.AnalyticsPrx;
 import SITM.SystemStatistics;
 import SITM.ZoneStatistics;
 import SITM.HistoricalData;
+import SITM.HistoryChunk;
+import SITM.HistoryExportException;
+import SITM.HistoryExportPrx;
+import SITM.HistoryRecord;
 
 /**
  * ICE RPC client for OperationControl to query Observer.
- * Connects to Observer's Analytics interface.
+ * Connects to Observer's Analytics and HistoryExport interfaces.
  */
 public class ObserverAnalyticsClient {
     
     private final Communicator communicator;
     private final AnalyticsPrx analytics;
+    private final HistoryExportPrx historyExport;
     
     public ObserverAnalyticsClient(String host, int port) {
         String endpoint = String.format("tcp -h %s -p %d", host, port);
@@ -34,6 +41,10 @@ public class ObserverAnalyticsClient {
                 throw new RuntimeException("Invalid Analytics proxy");
             }
             
+            // History export is only used on demand
+            this.historyExport = HistoryExportPrx.uncheckedCast(
+                communicator.stringToProxy("HistoryExport:" + endpoint));
+            
             System.out.println("Connected to Observer via ICE");
             
         } catch (Exception e) {
@@ -69,6 +80,51 @@ public class ObserverAnalyticsClient {
         }
     }
     
+    /**
+     * Stream the datagram history of a time range, chunk by chunk.
+     * Unlike getHistoricalData the range is not truncated: records are
+     * handed to the sink as each chunk arrives, so only one chunk is in
+     * memory at a time.
+     * 
+     * @param timeRange Time range (e.g., "1h", "24h", "7d")
+     * @param chunkSize Records per fetch (DataCenter caps it)
+     * @param sink Receives every record, oldest first
+     * @return Number of records exported, or -1 if the export failed
+     */
+    public long exportHistory(String timeRange, int chunkSize, Consumer<HistoryRecord> sink) {
+        String cursorId = null;
+        boolean done = false;
+        long exported = 0;
+        try {
+            cursorId = historyExport.openCursor(timeRange);
+            while (!done) {
+                HistoryChunk chunk = historyExport.fetchChunk(cursorId, chunkSize);
+                for (HistoryRecord record : chunk.records) {
+                    sink.accept(record);
+                }
+                exported += chunk.records.length;
+                done = chunk.done;
+            }
+            System.out.println("[ObserverAnalyticsClient] Exported " + exported + " history records for " + timeRange);
+            return exported;
+        } catch (HistoryExportException e) {
+            System.err.println("Error exporting history from Observer: " + e.reason);
+            return -1;
+        } catch (Exception e) {
+            System.err.println("Error exporting history from Observer: " + e.getMessage());
+            return -1;
+        } finally {
+            // An exhausted cursor is already closed by DataCenter
+            if (cursorId != null && !done) {
+                try {
+                    historyExport.closeCursor(cursorId);
+                } catch (Exception e) {
+                    // DataCenter closes it once idle
+                }
+            }
+        }
+    }
+    
     /**
      * Query travel time between two stops.
      * @param originStopId Origin stop ID
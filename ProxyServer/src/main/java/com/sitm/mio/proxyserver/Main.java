@@ -3,10 +3,12 @@ package com.sitm.mio.proxyserver;
 import com.zeroc.Ice.*;
 import com.sitm.mio.proxyserver.analytics.AnalyticsService;
 import com.sitm.mio.proxyserver.cache.CacheManager;
+import com.sitm.mio.proxyserver.config.ConfigLoader;
 import com.sitm.mio.proxyserver.ice.AnalyticsI;
 import com.sitm.mio.proxyserver.ice.DataCenterClient;
 import com.sitm.mio.proxyserver.ice.EventPublisherI;
 import com.sitm.mio.proxyserver.ice.HealthCheckI;
+import com.sitm.mio.proxyserver.ice.HistoryExportI;
 import com.sitm.mio.proxyserver.ice.ProxyServerI;
 import com.sitm.mio.proxyserver.service.RequestRouter;
 
@@ -23,6 +25,14 @@ import com.sitm.mio.proxyserver.service.RequestRouter;
  * - ICE RPC for Observer analytics
  * - Cache with TTL for performance
  * - Event streaming support (ICE events)
+ * - Sharding: several instances can run side by side, each on its own
+ *   port (-Dproxyserver.port, -Dproxyserver.shard.id); Citizens pick the
+ *   shard for a route by consistent hashing, so each caches its own slice
+ * - History export relay: Observer pages through DataCenter history
+ *   cursors here chunk by chunk
+ * - Asynchronous dispatch of Citizen queries: a cache miss does not hold
+ *   an ICE thread while DataCenter answers, so throughput is bounded by
+ *   DataCenter rather than by the adapter's thread pool
  */
 public class Main {
     
@@ -35,15 +45,24 @@ public class Main {
         Communicator communicator = null;
         
         try {
-            // Initialize ICE communicator
-            communicator = Util.initialize(args);
+            // Initialize ICE communicator (adapter thread pool from config.proxyserver)
+            InitializationData initData = new InitializationData();
+            initData.properties = Util.createProperties(args);
+            ConfigLoader.applyThreadPool(initData.properties, "ProxyServerAdapter.ThreadPool");
+            communicator = Util.initialize(args, initData);
             System.out.println("ICE Communicator initialized");
             
             // Create object adapter
+            int port = ConfigLoader.getProxyServerIcePort();
             ObjectAdapter adapter = communicator.createObjectAdapterWithEndpoints(
-                "ProxyServerAdapter", "tcp -h 0.0.0.0 -p 10000"
+                "ProxyServerAdapter", "tcp -h 0.0.0.0 -p " + port
             );
-            System.out.println("ICE ObjectAdapter created on port 10000");
+            System.out.println("ICE ObjectAdapter created on port " + port + " (threads: " +
+                initData.properties.getProperty("ProxyServerAdapter.ThreadPool.Size") + "-" +
+                initData.properties.getProperty("ProxyServerAdapter.ThreadPool.SizeMax") + ")");
+            if (!ConfigLoader.getShardId().isEmpty()) {
+                System.out.println("Running as shard: " + ConfigLoader.getShardId());
+            }
             
             System.out.println();
             System.out.println("Initializing business logic...");
@@ -53,7 +72,7 @@ public class Main {
             System.out.println("RequestRouter initialized");
             
             CacheManager cacheManager = requestRouter.getCacheManager();
-            AnalyticsService analyticsService = new AnalyticsService(cacheManager);
+            AnalyticsService analyticsService = new AnalyticsService(cacheManager, requestRouter);
             System.out.println("AnalyticsService initialized");
             
             System.out.println();
@@ -64,6 +83,7 @@ public class Main {
             AnalyticsI analyticsServant = new AnalyticsI(analyticsService);
             HealthCheckI healthCheckServant = new HealthCheckI();
             EventPublisherI eventPublisher = new EventPublisherI();
+            HistoryExportI historyExportServant = new HistoryExportI();
             
             // Add servants to adapter
             adapter.add(proxyServerServant, Util.stringToIdentity("ProxyServer"));
@@ -78,6 +98,9 @@ public class Main {
             adapter.add(eventPublisher, Util.stringToIdentity("EventPublisher"));
             System.out.println("EventPublisher servant registered");
             
+            adapter.add(historyExportServant, Util.stringToIdentity("HistoryExport"));
+            System.out.println("HistoryExport servant registered");
+            
             // Activate adapter
             adapter.activate();
             System.out.println("ObjectAdapter activated");
@@ -92,6 +115,7 @@ public class Main {
             // Connect ICE client to RequestRouter
             requestRouter.setDataCenterClient(dataCenterIceClient);
             System.out.println("DataCenter ICE client connected to RequestRouter");
+            historyExportServant.setDataCenterClient(dataCenterIceClient);
             
             // Test connection
             if (dataCenterIceClient.ping()) {
@@ -109,10 +133,11 @@ public class Main {
             System.out.println("╚════════════════════════════════════════╝");
             System.out.println();
             System.out.println("ICE Server Endpoints:");
-            System.out.println("  ProxyServer:tcp -h localhost -p 10000");
-            System.out.println("  Analytics:tcp -h localhost -p 10000");
-            System.out.println("  HealthCheck:tcp -h localhost -p 10000");
-            System.out.println("  EventPublisher:tcp -h localhost -p 10000");
+            System.out.println("  ProxyServer:tcp -h localhost -p " + port);
+            System.out.println("  Analytics:tcp -h localhost -p " + port);
+            System.out.println("  HealthCheck:tcp -h localhost -p " + port);
+            System.out.println("  EventPublisher:tcp -h localhost -p " + port);
+            System.out.println("  HistoryExport:tcp -h localhost -p " + port);
             System.out.println();
             System.out.println("DataCenter Connection:");
             System.out.println("  Subscribed to enriched datagram events");
@@ -1,6 +1,7 @@
 package com.sitm.mio.proxyserver.analytics;
 
 import com.sitm.mio.proxyserver.cache.CacheManager;
+import com.sitm.mio.proxyserver.service.RequestRouter;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -15,11 +16,17 @@ public class AnalyticsService {
     private final StatisticsCollector globalStats;
     private final Map<String, StatisticsCollector> zoneStats;
     private final CacheManager cacheManager;
+    private final RequestRouter requestRouter;
     
     public AnalyticsService(CacheManager cacheManager) {
+        this(cacheManager, null);
+    }
+    
+    public AnalyticsService(CacheManager cacheManager, RequestRouter requestRouter) {
         this.globalStats = new StatisticsCollector();
         this.zoneStats = new ConcurrentHashMap<>();
         this.cacheManager = cacheManager;
+        this.requestRouter = requestRouter;
         
         System.out.println("AnalyticsService initialized");
     }
@@ -54,7 +61,26 @@ public class AnalyticsService {
         
         // Add cache manager stats if available
         if (cacheManager != null) {
-            stats.put("cacheSize", cacheManager.getCacheSize());
+            var cacheStats = cacheManager.getStats();
+            stats.put("cacheSize", cacheStats.getSize());
+            stats.put("cacheMaxEntries", cacheStats.getMaxEntries());
+            stats.put("cacheEstimatedBytes", cacheStats.getEstimatedBytes());
+            stats.put("cacheEvictionPolicy", cacheStats.getEvictionPolicy());
+            stats.put("cacheEvictions", cacheStats.getEvictions());
+            stats.put("cacheExpirations", cacheStats.getExpirations());
+            stats.put("cacheLoads", cacheStats.getLoads());
+            stats.put("cacheStorageHitRate", cacheStats.getHitRate());
+            stats.put("cacheStaleHits", cacheManager.getStaleHitCount());
+            stats.put("cacheRefreshes", cacheManager.getRefreshCount());
+            stats.put("cacheRefreshFailures", cacheManager.getRefreshFailureCount());
+            stats.put("cacheInvalidations", cacheManager.getInvalidationCount());
+            stats.put("cacheDiscardedLoads", cacheManager.getDiscardedLoadCount());
+        }
+        
+        // Add request coalescing stats if available
+        if (requestRouter != null) {
+            stats.put("dataCenterRequests", requestRouter.getOriginatingRequests());
+            stats.put("coalescedRequests", requestRouter.getCoalescedRequests());
         }
         
         return stats;
@@ -1,6 +1,9 @@
 package com.sitm.mio.proxyserver.cache;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import SITM.CitizenInformation;
+import com.sitm.mio.proxyserver.config.ConfigLoader;
 
 /**
  * Cache entry storing data with timestamp and type.
@@ -11,17 +14,65 @@ public class CacheEntry {
     private final Object value;
     private final long timestamp;
     private final CacheType type;
+    private final long expiresAt;
+    private final long staleUntil;
+    private final int estimatedBytes;
+    private final AtomicInteger hitCount = new AtomicInteger();
 
     /**
      * Create a cache entry with type information.
+     * Expires after the TTL configured for its type, or sooner if the value
+     * is a CitizenInformation with a shorter ttlMillis.
      * @param value The cached data (CitizenInformation, SystemStatistics, etc.)
      * @param timestamp When the entry was created
      * @param type The type of cached data
      */
     public CacheEntry(Object value, long timestamp, CacheType type) {
+        this(value, timestamp, type, ttlFor(value, ConfigLoader.getCacheTTLMillis(type)),
+             ConfigLoader.getCacheStaleGraceMillis(type));
+    }
+    
+    /**
+     * TTL of a value: the type's TTL, capped by the ttlMillis a
+     * CitizenInformation carries (e.g. a live answer from DataCenter).
+     * @param typeTtlMillis TTL configured for the value's type
+     */
+    public static long ttlFor(Object value, long typeTtlMillis) {
+        if (value instanceof CitizenInformation) {
+            long ttl = ((CitizenInformation) value).ttlMillis;
+            if (ttl > 0 && ttl < typeTtlMillis) {
+                return ttl;
+            }
+        }
+        return typeTtlMillis;
+    }
+    
+    /**
+     * Create a cache entry with an explicit time-to-live.
+     * @param value The cached data
+     * @param timestamp When the entry was created
+     * @param type The type of cached data
+     * @param ttlMillis Time-to-live in milliseconds
+     */
+    public CacheEntry(Object value, long timestamp, CacheType type, long ttlMillis) {
+        this(value, timestamp, type, ttlMillis, 0L);
+    }
+    
+    /**
+     * Create a cache entry that may still be served for a while after it expires.
+     * @param value The cached data
+     * @param timestamp When the entry was created
+     * @param type The type of cached data
+     * @param ttlMillis Time-to-live in milliseconds
+     * @param staleGraceMillis How long after expiring the stale value may be served
+     */
+    public CacheEntry(Object value, long timestamp, CacheType type, long ttlMillis, long staleGraceMillis) {
         this.value = value;
         this.timestamp = timestamp;
         this.type = type;
+        this.expiresAt = timestamp + ttlMillis;
+        this.staleUntil = expiresAt + staleGraceMillis;
+        this.estimatedBytes = estimateBytes(value);
     }
     
     /**
@@ -60,6 +111,53 @@ public class CacheEntry {
         return timestamp;
     }
     
+    /**
+     * Get the time at which this entry expires.
+     * @return Expiration time in milliseconds
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+    
+    /**
+     * Get the time after which not even a stale read may use this entry.
+     * @return End of the stale grace window in milliseconds
+     */
+    public long getStaleUntil() {
+        return staleUntil;
+    }
+    
+    /**
+     * Check if this entry is past even its stale grace window.
+     * @param now Current time in milliseconds
+     */
+    public boolean isUnusable(long now) {
+        return now >= staleUntil;
+    }
+    
+    /**
+     * Count a read of this entry.
+     * @return Number of reads so far
+     */
+    public int recordHit() {
+        return hitCount.incrementAndGet();
+    }
+    
+    /**
+     * Get the number of reads of this entry since it was stored.
+     */
+    public int getHitCount() {
+        return hitCount.get();
+    }
+    
+    /**
+     * Check if this entry has expired.
+     * @param now Current time in milliseconds
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+    
     /**
      * Get the cache type.
      * @return CacheType
@@ -68,6 +166,34 @@ public class CacheEntry {
         return type;
     }
     
+    /**
+     * Get the approximate heap footprint of the entry and its value.
+     * @return Estimated size in bytes
+     */
+    public int getEstimatedBytes() {
+        return estimatedBytes;
+    }
+    
+    /**
+     * Rough heap size of a cached value: object headers, fields and string
+     * characters. Good enough to bound memory, not an exact measurement.
+     */
+    private static int estimateBytes(Object value) {
+        int entryOverhead = 32;
+        if (value instanceof CitizenInformation) {
+            return entryOverhead + 32 + stringBytes(((CitizenInformation) value).message);
+        }
+        if (value instanceof SITM.EnrichedDatagram) {
+            SITM.EnrichedDatagram d = (SITM.EnrichedDatagram) value;
+            return entryOverhead + 72 + stringBytes(d.zoneId) + stringBytes(d.arcId);
+        }
+        return entryOverhead + 256;
+    }
+    
+    private static int stringBytes(String s) {
+        return s == null ? 0 : 40 + s.length();
+    }
+    
     /**
      * Check if this entry is for citizen data.
      */
@@ -1,31 +1,121 @@
 package com.sitm.mio.proxyserver.cache;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
 import SITM.CitizenInformation;
+import com.sitm.mio.proxyserver.config.ConfigLoader;
 import com.sitm.mio.proxyserver.interfaces.ICacheManagement;
 import com.sitm.mio.proxyserver.interfaces.ICachePolicy;
 
 /**
  * Cache manager responsible for storing and retrieving cached citizen information.
- * Implements caching policies including TTL-based eviction.
+ * Implements caching policies including TTL-based expiration and
+ * size-bounded eviction (TTL/FIFO, LRU, LFU or W-TinyLFU).
+ * A background sweeper removes expired entries every cache.expiry.tick.ms,
+ * so entries that are never read again do not stay in memory.
+ *
+ * Reads that pass a loader also get stale-while-revalidate and
+ * refresh-ahead: an expired entry is still served during its grace window
+ * while a background thread reloads it, and an entry read often enough is
+ * reloaded once most of its TTL has passed, before anyone sees it expire.
+ *
+ * Invalidation wins over loads already in flight: the time of the last
+ * invalidation of each key is kept for a while, and a value loaded by a
+ * query that started before it is not stored (put with loadStart).
  */
 public class CacheManager implements ICacheManagement {
 
     private final CacheStorage storage;
     private final ICachePolicy cachePolicy;
+    private final String policyName;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final ScheduledExecutorService expirySweeper;
+    
+    private final double refreshAheadFraction;
+    private final int refreshMinHits;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final ConcurrentHashMap<String, Boolean> refreshing = new ConcurrentHashMap<>();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    
+    // Longer than any DataCenter query, so no load outlives the record of an invalidation
+    private static final long INVALIDATION_MEMORY_NANOS = TimeUnit.MINUTES.toNanos(5);
+    // key -> System.nanoTime() of its last invalidation; updated and checked under compute()
+    private final ConcurrentHashMap<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private final LongAdder discardedLoads = new LongAdder();
 
     /**
-     * Create a cache manager with TTL from configuration.
+     * Create a cache manager with TTL, bounds and eviction policy from configuration.
      */
     public CacheManager() {
-        // Load TTL from configuration
-        long ttl = com.sitm.mio.proxyserver.config.ConfigLoader.getCacheTTLMillis();
+        // Load TTL and bounds from configuration
+        long ttl = ConfigLoader.getCacheTTLMillis();
+        int maxEntries = ConfigLoader.getMaxCacheEntries();
+        long maxBytes = ConfigLoader.getMaxCacheBytes();
+        
+        this.policyName = ConfigLoader.getCacheEvictionPolicy();
+        this.cachePolicy = createPolicy(policyName, ttl, maxEntries);
         
         // Create storage with persistence enabled
-        this.storage = new CacheStorage(ttl);
-        this.cachePolicy = new SimpleCachePolicy(ttl);
+        this.storage = new CacheStorage(ttl, cachePolicy, maxEntries, maxBytes);
+        
+        long tickMillis = ConfigLoader.getCacheExpiryTickMillis();
+        this.expirySweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CacheExpirySweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        expirySweeper.scheduleAtFixedRate(this::sweepExpired, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        
+        this.refreshAheadFraction = ConfigLoader.getCacheRefreshAheadFraction();
+        this.refreshMinHits = ConfigLoader.getCacheRefreshMinHits();
+        int refreshThreads = Math.max(1, ConfigLoader.getCacheRefreshThreads());
+        AtomicInteger refreshThreadCount = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1024), r -> {
+                    Thread t = new Thread(r, "CacheRefresh-" + refreshThreadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
         
         System.out.println("CacheManager initialized with TTL: " + (ttl / 60000) + " minutes");
-        System.out.println("  JSON persistence enabled: cache/proxyserver-cache.json");
+        System.out.println("  Bounds: " + maxEntries + " entries, " + (maxBytes / (1024 * 1024)) + " MB");
+        System.out.println("  Eviction policy: " + policyName);
+        System.out.println("  Expiry sweep every " + tickMillis + " ms");
+        System.out.println("  Binary persistence enabled: " + ConfigLoader.getCachePersistenceDir() + "/proxyserver-cache.snap");
+    }
+    
+    /**
+     * Create the eviction policy named in cache.eviction.policy.
+     */
+    private static ICachePolicy createPolicy(String name, long ttl, int maxEntries) {
+        switch (name) {
+            case "LRU":
+                return new LruCachePolicy(ttl);
+            case "LFU":
+                return new LfuCachePolicy(ttl);
+            case "W_TINYLFU":
+                return new WTinyLfuCachePolicy(ttl, maxEntries);
+            case "TTL":
+                return new SimpleCachePolicy(ttl);
+            default:
+                System.err.println("Unknown cache.eviction.policy '" + name + "', using W_TINYLFU");
+                return new WTinyLfuCachePolicy(ttl, maxEntries);
+        }
     }
 
     /**
@@ -36,16 +126,102 @@ public class CacheManager implements ICacheManagement {
     public CitizenInformation get(String key) {
         CacheEntry entry = storage.get(key);
         if (entry == null) {
+            misses.increment();
             return null;
         }
         if (cachePolicy.shouldEvict(key, entry)) {
-            storage.remove(key);
+            storage.expire(key, entry);
+            misses.increment();
             return null;
         }
-        cachePolicy.recordAccess(key, entry);
+        hits.increment();
         return entry.getValue();
     }
 
+    private void sweepExpired() {
+        try {
+            long now = System.nanoTime();
+            invalidatedAt.values().removeIf(at -> now - at > INVALIDATION_MEMORY_NANOS);
+            storage.expireEntries(System.currentTimeMillis());
+        } catch (Exception e) {
+            System.err.println("CacheManager: Expiry sweep failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get cached citizen information, serving stale values and refreshing
+     * hot entries in the background.
+     * Returns the cached value while it is fresh, or while it is expired but
+     * within its stale grace window (a refresh is then started). Fresh
+     * entries read at least cache.refresh.min.hits times are refreshed once
+     * cache.refresh.ahead.fraction of their TTL has passed.
+     * @param key The cache key
+     * @param cacheType The type under which refreshed values are stored
+     * @param loader Loads the current value; may throw on failure
+     * @return CitizenInformation or null if not found or past the grace window
+     */
+    public CitizenInformation get(String key, CacheType cacheType, Callable<CitizenInformation> loader) {
+        CacheEntry entry = storage.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (entry.isUnusable(now)) {
+            storage.expire(key, entry);
+            misses.increment();
+            return null;
+        }
+        if (cachePolicy.shouldEvict(key, entry)) {
+            // Expired but within the grace window: serve it and revalidate
+            staleHits.increment();
+            refreshAsync(key, cacheType, loader);
+            return entry.getValue();
+        }
+        hits.increment();
+        if (isDueForRefreshAhead(entry, now)) {
+            refreshAsync(key, cacheType, loader);
+        }
+        return entry.getValue();
+    }
+    
+    private boolean isDueForRefreshAhead(CacheEntry entry, long now) {
+        if (refreshAheadFraction <= 0.0 || refreshAheadFraction >= 1.0 || entry.getHitCount() < refreshMinHits) {
+            return false;
+        }
+        long ttl = entry.getExpiresAt() - entry.getTimestamp();
+        return now - entry.getTimestamp() >= (long) (ttl * refreshAheadFraction);
+    }
+    
+    /**
+     * Reload a key in the background, at most one refresh per key at a time.
+     * On failure the current (possibly stale) entry is kept.
+     */
+    private void refreshAsync(String key, CacheType cacheType, Callable<CitizenInformation> loader) {
+        if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    long loadStart = beginLoad();
+                    CitizenInformation value = loader.call();
+                    if (value != null && put(key, value, cacheType, loadStart)) {
+                        refreshes.increment();
+                    }
+                } catch (Exception e) {
+                    refreshFailures.increment();
+                    System.err.println("CacheManager: Refresh of " + key + " failed: " + e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Refresh queue full: the next read will try again
+            refreshing.remove(key);
+        }
+    }
+
     /**
      * Store citizen information in cache.
      * @param key The cache key
@@ -54,7 +230,38 @@ public class CacheManager implements ICacheManagement {
     public void put(String key, CitizenInformation value, CacheType cacheType) {
         CacheEntry entry = new CacheEntry(value, System.currentTimeMillis(), cacheType);
         storage.put(key, entry);
-        cachePolicy.recordInsertion(key, entry);
+        loads.increment();
+    }
+    
+    /**
+     * Mark the start of a query whose result will be stored with
+     * put(key, value, type, loadStart).
+     * @return Load start, to pass to put
+     */
+    public long beginLoad() {
+        return System.nanoTime();
+    }
+    
+    /**
+     * Store citizen information loaded by a query, unless the key was
+     * invalidated after the query started (the value may predate the change).
+     * @param loadStart Value of beginLoad() taken before the query
+     * @return false if the value was discarded
+     */
+    public boolean put(String key, CitizenInformation value, CacheType cacheType, long loadStart) {
+        boolean[] stored = {false};
+        // Under the key's lock in invalidatedAt, so an invalidation cannot slip between check and put
+        invalidatedAt.compute(key, (k, at) -> {
+            if (at == null || at - loadStart < 0) {
+                put(key, value, cacheType);
+                stored[0] = true;
+            }
+            return at;
+        });
+        if (!stored[0]) {
+            discardedLoads.increment();
+        }
+        return stored[0];
     }
     
     /**
@@ -66,7 +273,26 @@ public class CacheManager implements ICacheManagement {
     public void put(String key, Object value, CacheType cacheType) {
         CacheEntry entry = new CacheEntry(value, System.currentTimeMillis(), cacheType);
         storage.put(key, entry);
-        cachePolicy.recordInsertion(key, entry);
+        loads.increment();
+    }
+    
+    /**
+     * Remove an entry whose source data has changed.
+     * @param key The cache key
+     * @return true if an entry was removed
+     */
+    public boolean invalidate(String key) {
+        boolean[] removed = {false};
+        invalidatedAt.compute(key, (k, at) -> {
+            // Not a read: no hit or policy access for an entry about to go
+            removed[0] = storage.remove(key);
+            return System.nanoTime();
+        });
+        if (!removed[0]) {
+            return false;
+        }
+        invalidations.increment();
+        return true;
     }
     
     /**
@@ -76,4 +302,51 @@ public class CacheManager implements ICacheManagement {
     public int getCacheSize() {
         return storage.size();
     }
+    
+    /**
+     * Get the number of expired entries served within their grace window.
+     */
+    public long getStaleHitCount() {
+        return staleHits.sum();
+    }
+    
+    /**
+     * Get the number of entries reloaded in the background.
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+    
+    /**
+     * Get the number of background reloads that failed.
+     */
+    public long getRefreshFailureCount() {
+        return refreshFailures.sum();
+    }
+    
+    /**
+     * Get the number of entries removed by invalidation.
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+    
+    /**
+     * Get the number of loaded values not stored because their key was
+     * invalidated while they were being loaded.
+     */
+    public long getDiscardedLoadCount() {
+        return discardedLoads.sum();
+    }
+    
+    /**
+     * Get hit, miss, load and eviction counters.
+     * @return Snapshot of cache statistics
+     */
+    public CacheStats getStats() {
+        return new CacheStats(policyName, storage.size(), storage.getMaxEntries(),
+                storage.getEstimatedBytes(), storage.getMaxBytes(),
+                hits.sum(), misses.sum(), loads.sum(),
+                storage.getEvictionCount(), storage.getExpirationCount());
+    }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.sitm.mio.proxyserver.cache;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import SITM.CitizenInformation;
+import com.sitm.mio.proxyserver.config.ConfigLoader;
 
 import java.io.*;
 import java.nio.file.*;
@@ -136,13 +137,13 @@ public class CachePersistence {
             for (Map.Entry<String, CacheEntryDTO> entry : cacheData.getEntries().entrySet()) {
                 CacheEntryDTO dto = entry.getValue();
                 
-                // Check if entry is still valid (not expired)
+                // Check if entry is still valid (not expired under its type's TTL)
+                CacheType type = parseType(dto.getType());
+                long ttl = type != null ? ConfigLoader.getCacheTTLMillis(type) : ttlMillis;
                 long age = now - dto.getTimestamp();
-                if (age <= ttlMillis) {
+                if (type != null && age < ttl) {
                     try {
-                        // Determine cache type
-                        CacheType type = CacheType.valueOf(dto.getType());
-                        
+
                         // Deserialize based on type
                         Object value;
                         switch (type) {
@@ -192,6 +193,15 @@ public class CachePersistence {
         }
     }
     
+    private static CacheType parseType(String name) {
+        try {
+            return CacheType.valueOf(name);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            System.err.println("Unknown cache type: " + name);
+            return null;
+        }
+    }
+    
     /**
      * Delete the cache file.
      * @return true if deleted successfully
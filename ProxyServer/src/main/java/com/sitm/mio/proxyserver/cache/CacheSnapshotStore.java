@@ -0,0 +1,451 @@
+package com.sitm.mio.proxyserver.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import SITM.CitizenInformation;
+import SITM.EnrichedDatagram;
+import com.sitm.mio.proxyserver.config.ConfigLoader;
+
+/**
+ * Binary cache persistence: periodic snapshots plus an append-only change log.
+ *
+ * Both files hold length-prefixed records:
+ *   int length | byte op | key | long timestamp | byte type | byte valueTag | value
+ * (a REMOVE record stops after the key). Strings are an int byte length
+ * followed by UTF-8. A snapshot starts with a header carrying the log
+ * generation it pairs with; puts and removes after it go to
+ * proxyserver-cache.&lt;generation&gt;.log, which is written out every
+ * flush interval, so a crash loses at most that much.
+ *
+ * A checkpoint first switches to a new log generation, then writes the
+ * snapshot next to the old one and renames it into place, then deletes
+ * the older logs. Replaying every log from the snapshot's generation on,
+ * in order, restores the latest state of each key even though the map
+ * keeps changing while the snapshot is written. Checkpoints run one at a
+ * time, since they share the temporary snapshot file.
+ *
+ * Load maps the snapshot read-only and walks the records. Expired records
+ * are skipped by their length without decoding the value.
+ */
+class CacheSnapshotStore {
+
+    private static final int MAGIC = 0x534D4331; // "SMC1"
+    private static final int VERSION = 1;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte VALUE_CITIZEN = 1;
+    private static final byte VALUE_DATAGRAM = 2;
+    private static final byte VALUE_CITIZEN_TIMED = 3; // Citizen answer with timestamp and TTL
+    private static final String SNAPSHOT_FILE = "proxyserver-cache.snap";
+    private static final String LOG_PREFIX = "proxyserver-cache.";
+    private static final String LOG_SUFFIX = ".log";
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final Path snapshotPath;
+    private final Object logLock = new Object();
+    // Taken before logLock, never inside it
+    private final Object checkpointLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(); // Guarded by logLock
+    private FileChannel logChannel; // Guarded by logLock
+    private long generation; // Guarded by logLock
+
+    CacheSnapshotStore(String directory) {
+        this.directory = Paths.get(directory);
+        this.snapshotPath = this.directory.resolve(SNAPSHOT_FILE);
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not create cache directory: " + e.getMessage());
+        }
+    }
+
+    boolean hasSnapshot() {
+        return Files.exists(snapshotPath);
+    }
+
+    /**
+     * Replay the snapshot and the change logs after it.
+     * @param onPut Receives every live entry (later records win)
+     * @param onRemove Receives every removed key
+     * @return Number of records read
+     */
+    int load(BiConsumer<String, CacheEntry> onPut, Consumer<String> onRemove) throws IOException {
+        long now = System.currentTimeMillis();
+        long[] ttlFor = new long[CacheType.values().length];
+        long[] graceFor = new long[ttlFor.length];
+        for (CacheType type : CacheType.values()) {
+            ttlFor[type.ordinal()] = ConfigLoader.getCacheTTLMillis(type);
+            graceFor[type.ordinal()] = ConfigLoader.getCacheStaleGraceMillis(type);
+        }
+        int records = 0;
+        long fromGeneration = 0L;
+
+        // Before anything can fail: the next checkpoint must start above every log
+        // on disk, or it would leave newer-numbered stale logs to be replayed later
+        List<Long> logGenerations = logGenerations();
+        if (!logGenerations.isEmpty()) {
+            synchronized (logLock) {
+                generation = Math.max(generation, logGenerations.get(logGenerations.size() - 1));
+            }
+        }
+
+        if (Files.exists(snapshotPath)) {
+            try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                    throw new IOException("Not a cache snapshot: " + snapshotPath);
+                }
+                fromGeneration = buffer.getLong();
+                records += readRecords(buffer, now, ttlFor, graceFor, onPut, onRemove);
+            }
+        }
+        for (long logGeneration : logGenerations) {
+            if (logGeneration < fromGeneration) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(logPath(logGeneration), StandardOpenOption.READ)) {
+                if (channel.size() > 0) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    records += readRecords(buffer, now, ttlFor, graceFor, onPut, onRemove);
+                }
+            }
+        }
+        synchronized (logLock) {
+            generation = Math.max(generation, fromGeneration);
+        }
+        return records;
+    }
+
+    /**
+     * Queue a put for the change log. Values of unsupported types are not persisted.
+     */
+    void logPut(String key, CacheEntry entry) {
+        byte[] record = encodePut(key, entry);
+        if (record != null) {
+            append(record);
+        }
+    }
+
+    void logRemove(String key) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + key.length());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_REMOVE);
+            writeString(out, key);
+            append(bytes.toByteArray());
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+        }
+    }
+
+    private void append(byte[] record) {
+        synchronized (logLock) {
+            if (logChannel == null) {
+                return; // Not open yet (loading) or closed
+            }
+            pending.write(record.length >>> 24);
+            pending.write(record.length >>> 16);
+            pending.write(record.length >>> 8);
+            pending.write(record.length);
+            pending.write(record, 0, record.length);
+        }
+    }
+
+    /**
+     * Write queued change-log records to the current log file.
+     */
+    void flushLog() throws IOException {
+        synchronized (logLock) {
+            if (logChannel == null || pending.size() == 0) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+            pending = new ByteArrayOutputStream();
+        }
+    }
+
+    /**
+     * Write a full snapshot of the given entries and drop the change logs it covers.
+     * @return Number of entries written
+     */
+    int checkpoint(Map<String, CacheEntry> entries) throws IOException {
+        synchronized (checkpointLock) {
+            return writeCheckpoint(entries);
+        }
+    }
+
+    private int writeCheckpoint(Map<String, CacheEntry> entries) throws IOException {
+        long snapshotGeneration;
+        synchronized (logLock) {
+            flushLog();
+            snapshotGeneration = generation + 1;
+            openLog(snapshotGeneration);
+        }
+
+        Path tempFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        int written = 0;
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(snapshotGeneration);
+            for (Map.Entry<String, CacheEntry> entry : entries.entrySet()) {
+                byte[] record = encodePut(entry.getKey(), entry.getValue());
+                if (record == null) {
+                    continue;
+                }
+                if (buffer.remaining() < 4 + record.length) {
+                    drain(channel, buffer);
+                }
+                if (buffer.remaining() < 4 + record.length) {
+                    drain(channel, ByteBuffer.allocate(4).putInt(record.length));
+                    drain(channel, ByteBuffer.allocate(record.length).put(record));
+                } else {
+                    buffer.putInt(record.length).put(record);
+                }
+                written++;
+            }
+            drain(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (long logGeneration : logGenerations()) {
+            if (logGeneration < snapshotGeneration) {
+                Files.deleteIfExists(logPath(logGeneration));
+            }
+        }
+        return written;
+    }
+
+    void close() {
+        synchronized (logLock) {
+            try {
+                flushLog();
+            } catch (IOException e) {
+                System.err.println("CacheSnapshotStore: Failed to flush change log: " + e.getMessage());
+            }
+            closeLog();
+        }
+    }
+
+    /**
+     * Delete the snapshot and every change log; logging continues in a fresh log.
+     */
+    void clear() throws IOException {
+        synchronized (checkpointLock) {
+            synchronized (logLock) {
+                boolean open = logChannel != null;
+                closeLog();
+                pending = new ByteArrayOutputStream();
+                Files.deleteIfExists(snapshotPath);
+                for (long logGeneration : logGenerations()) {
+                    Files.deleteIfExists(logPath(logGeneration));
+                }
+                if (open) {
+                    openLog(generation + 1);
+                }
+            }
+        }
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    private void openLog(long newGeneration) throws IOException {
+        FileChannel channel = FileChannel.open(logPath(newGeneration), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        closeLog();
+        logChannel = channel;
+        generation = newGeneration;
+    }
+
+    private void closeLog() {
+        if (logChannel != null) {
+            try {
+                logChannel.close();
+            } catch (IOException e) {
+                System.err.println("CacheSnapshotStore: Failed to close change log: " + e.getMessage());
+            }
+            logChannel = null;
+        }
+    }
+
+    private Path logPath(long logGeneration) {
+        return directory.resolve(LOG_PREFIX + logGeneration + LOG_SUFFIX);
+    }
+
+    private List<Long> logGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length());
+                try {
+                    generations.add(Long.parseLong(number));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int readRecords(ByteBuffer buffer, long now, long[] ttlFor, long[] graceFor,
+                                   BiConsumer<String, CacheEntry> onPut, Consumer<String> onRemove) {
+        int records = 0;
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break; // Torn tail of a log written during a crash
+            }
+            int end = buffer.position() + length;
+            try {
+                byte op = buffer.get();
+                String key = readString(buffer);
+                if (op == OP_REMOVE) {
+                    onRemove.accept(key);
+                } else if (op == OP_PUT) {
+                    long timestamp = buffer.getLong();
+                    int typeOrdinal = buffer.get();
+                    if (typeOrdinal >= 0 && typeOrdinal < ttlFor.length
+                            && now - timestamp < ttlFor[typeOrdinal] + graceFor[typeOrdinal]) {
+                        CacheType type = CacheType.values()[typeOrdinal];
+                        Object value = readValue(buffer);
+                        if (value != null) {
+                            onPut.accept(key, new CacheEntry(value, timestamp, type,
+                                    CacheEntry.ttlFor(value, ttlFor[typeOrdinal]), graceFor[typeOrdinal]));
+                        }
+                    } else {
+                        // Expired: skip the value, but a stale put still replaces older state
+                        onRemove.accept(key);
+                    }
+                }
+                records++;
+            } catch (RuntimeException e) {
+                System.err.println("CacheSnapshotStore: Skipping corrupt record: " + e);
+            }
+            buffer.position(end);
+        }
+        return records;
+    }
+
+    private static byte[] encodePut(String key, CacheEntry entry) {
+        Object value = entry.getRawValue();
+        if (!(value instanceof CitizenInformation) && !(value instanceof EnrichedDatagram)) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entry.getEstimatedBytes());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_PUT);
+            writeString(out, key);
+            out.writeLong(entry.getTimestamp());
+            out.writeByte(entry.getType().ordinal());
+            if (value instanceof CitizenInformation) {
+                CitizenInformation info = (CitizenInformation) value;
+                out.writeByte(VALUE_CITIZEN_TIMED);
+                writeString(out, info.message);
+                out.writeLong(info.timestamp);
+                out.writeLong(info.ttlMillis);
+            } else {
+                EnrichedDatagram d = (EnrichedDatagram) value;
+                out.writeByte(VALUE_DATAGRAM);
+                out.writeLong(d.datagramId);
+                out.writeLong(d.busId);
+                out.writeLong(d.lineId);
+                out.writeDouble(d.latitude);
+                out.writeDouble(d.longitude);
+                writeString(out, d.zoneId);
+                writeString(out, d.arcId);
+                out.writeLong(d.timestamp);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            return null; // ByteArrayOutputStream does not throw
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case VALUE_CITIZEN: {
+                // Written before answers carried a TTL: not cacheable by Citizens
+                CitizenInformation info = new CitizenInformation();
+                info.message = readString(buffer);
+                return info;
+            }
+            case VALUE_CITIZEN_TIMED: {
+                CitizenInformation info = new CitizenInformation();
+                info.message = readString(buffer);
+                info.timestamp = buffer.getLong();
+                info.ttlMillis = buffer.getLong();
+                return info;
+            }
+            case VALUE_DATAGRAM: {
+                EnrichedDatagram d = new EnrichedDatagram();
+                d.datagramId = buffer.getLong();
+                d.busId = buffer.getLong();
+                d.lineId = buffer.getLong();
+                d.latitude = buffer.getDouble();
+                d.longitude = buffer.getDouble();
+                d.zoneId = readString(buffer);
+                d.arcId = readString(buffer);
+                d.timestamp = buffer.getLong();
+                return d;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+package com.sitm.mio.proxyserver.cache;
+
+/**
+ * Snapshot of cache counters and bounds.
+ */
+public class CacheStats {
+    private final String evictionPolicy;
+    private final int size;
+    private final int maxEntries;
+    private final long estimatedBytes;
+    private final long maxBytes;
+    private final long hits;
+    private final long misses;
+    private final long loads;
+    private final long evictions;
+    private final long expirations;
+
+    public CacheStats(String evictionPolicy, int size, int maxEntries,
+                      long estimatedBytes, long maxBytes,
+                      long hits, long misses, long loads,
+                      long evictions, long expirations) {
+        this.evictionPolicy = evictionPolicy;
+        this.size = size;
+        this.maxEntries = maxEntries;
+        this.estimatedBytes = estimatedBytes;
+        this.maxBytes = maxBytes;
+        this.hits = hits;
+        this.misses = misses;
+        this.loads = loads;
+        this.evictions = evictions;
+        this.expirations = expirations;
+    }
+
+    public String getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Values stored after being fetched (puts).
+     */
+    public long getLoads() {
+        return loads;
+    }
+
+    /**
+     * Entries removed to stay within the size bounds.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Entries removed because their TTL ran out.
+     */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats[policy=%s, size=%d/%d, bytes=%d/%d, hits=%d, misses=%d, hitRate=%.2f%%, loads=%d, evictions=%d, expirations=%d]",
+                evictionPolicy, size, maxEntries, estimatedBytes, maxBytes,
+                hits, misses, getHitRate() * 100, loads, evictions, expirations);
+    }
+}
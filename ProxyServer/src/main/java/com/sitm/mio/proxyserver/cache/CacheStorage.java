@@ -1,31 +1,81 @@
 package com.sitm.mio.proxyserver.cache;
 
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+import com.sitm.mio.proxyserver.config.ConfigLoader;
+import com.sitm.mio.proxyserver.interfaces.ICachePolicy;
 import com.sitm.mio.proxyserver.interfaces.ICacheStorage;
 
 /**
- * Cache storage with JSON persistence support.
- * Automatically loads cache on startup and saves on shutdown.
+ * Bounded cache storage with binary persistence support.
+ * Automatically loads cache on startup and saves on shutdown; in between,
+ * changes go to an append-only log flushed every cache.log.flush.ms and
+ * a full snapshot is checkpointed every cache.checkpoint.interval.seconds
+ * (see CacheSnapshotStore). A cache saved by older versions as JSON is
+ * imported once on first start.
+ *
+ * Holds at most maxEntries entries and about maxBytes estimated bytes;
+ * when a put goes over either bound the eviction policy picks victims.
+ * Lookups read the map without locking. Policy bookkeeping runs under
+ * one lock: writes always take it, while reads only record the access
+ * if the lock is free, so a busy cache loses a few access hints
+ * instead of making readers wait.
+ *
+ * Every entry is also scheduled on an ExpiryTimingWheel, so
+ * expireEntries() removes expired entries that are never read again
+ * without scanning the map.
  */
 public class CacheStorage implements ICacheStorage {
 
+    // Approximate heap cost of a map node plus the key string header
+    private static final int KEY_OVERHEAD_BYTES = 72;
+    // Longest wait for a running checkpoint at shutdown
+    private static final long SHUTDOWN_WAIT_SECONDS = 30L;
+
     private final Map<String, CacheEntry> storage = new ConcurrentHashMap<>();
-    private final CachePersistence persistence;
+    private final ICachePolicy policy;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long totalBytes = 0L; // Guarded by lock
+    private final ExpiryTimingWheel expiryWheel; // Guarded by lock
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final CachePersistence persistence; // Legacy JSON, read once for migration
+    private final CacheSnapshotStore snapshotStore;
     private final boolean persistenceEnabled;
+    private ScheduledExecutorService persistenceScheduler;
 
     /**
      * Create cache storage with persistence enabled.
      * @param ttlMillis Time-to-live for cache validation
+     * @param policy Eviction policy (its bookkeeping is driven by this storage)
+     * @param maxEntries Maximum number of entries
+     * @param maxBytes Maximum estimated size in bytes
      */
-    public CacheStorage(long ttlMillis) {
+    public CacheStorage(long ttlMillis, ICachePolicy policy, int maxEntries, long maxBytes) {
+        this.policy = policy;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.expiryWheel = new ExpiryTimingWheel(ConfigLoader.getCacheExpiryTickMillis(), System.currentTimeMillis());
         this.persistence = new CachePersistence(ttlMillis);
+        this.snapshotStore = new CacheSnapshotStore(ConfigLoader.getCachePersistenceDir());
         this.persistenceEnabled = true;
         
         // Load cache from disk on startup
         loadCache();
         
+        // Checkpoint right away: starts the change log and folds in the old logs
+        saveCache();
+        startPersistenceScheduler();
+        
         // Register shutdown hook to save cache
         registerShutdownHook();
     }
@@ -33,24 +83,140 @@ public class CacheStorage implements ICacheStorage {
     /**
      * Create cache storage without persistence (for testing).
      */
-    public CacheStorage() {
+    public CacheStorage(ICachePolicy policy, int maxEntries, long maxBytes) {
+        this.policy = policy;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.expiryWheel = new ExpiryTimingWheel(ConfigLoader.getCacheExpiryTickMillis(), System.currentTimeMillis());
         this.persistence = null;
+        this.snapshotStore = null;
         this.persistenceEnabled = false;
     }
 
     @Override
     public CacheEntry get(String key) {
-        return storage.get(key);
+        CacheEntry entry = storage.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.recordHit();
+        if (lock.tryLock()) {
+            try {
+                if (storage.get(key) == entry) {
+                    policy.recordAccess(key, entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return entry;
     }
 
     @Override
     public void put(String key, CacheEntry entry) {
-        storage.put(key, entry);
+        lock.lock();
+        try {
+            CacheEntry previous = storage.put(key, entry);
+            if (previous != null) {
+                totalBytes -= weigh(key, previous);
+                policy.recordRemoval(key);
+            }
+            totalBytes += weigh(key, entry);
+            policy.recordInsertion(key, entry);
+            expiryWheel.schedule(key, entry);
+            if (persistenceEnabled) {
+                snapshotStore.logPut(key, entry);
+            }
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public void remove(String key) {
-        storage.remove(key);
+    public boolean remove(String key) {
+        lock.lock();
+        try {
+            CacheEntry removed = storage.remove(key);
+            if (removed != null) {
+                totalBytes -= weigh(key, removed);
+                policy.recordRemoval(key);
+                expiryWheel.cancel(key);
+                if (persistenceEnabled) {
+                    snapshotStore.logRemove(key);
+                }
+            }
+            return removed != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Remove an expired entry found by a reader, unless a fresh put has
+     * already replaced it.
+     * @return true if the entry was removed
+     */
+    public boolean expire(String key, CacheEntry entry) {
+        lock.lock();
+        try {
+            if (!storage.remove(key, entry)) {
+                return false;
+            }
+            totalBytes -= weigh(key, entry);
+            policy.recordRemoval(key);
+            expiryWheel.cancel(key);
+            expirations.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Remove every entry whose TTL has run out by the given time.
+     * Called periodically by the expiry sweeper.
+     * @param now Current time in milliseconds
+     * @return Number of entries removed
+     */
+    public int expireEntries(long now) {
+        int[] removed = {0};
+        lock.lock();
+        try {
+            expiryWheel.advance(now, (key, entry) -> {
+                if (storage.remove(key, entry)) {
+                    totalBytes -= weigh(key, entry);
+                    policy.recordRemoval(key);
+                    expirations.increment();
+                    removed[0]++;
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+        return removed[0];
+    }
+    
+    private void evictIfNeeded() {
+        while (storage.size() > maxEntries || totalBytes > maxBytes) {
+            String victim = policy.selectEvictionCandidate();
+            if (victim == null) {
+                return;
+            }
+            CacheEntry removed = storage.remove(victim);
+            if (removed != null) {
+                totalBytes -= weigh(victim, removed);
+                expiryWheel.cancel(victim);
+                if (persistenceEnabled) {
+                    snapshotStore.logRemove(victim);
+                }
+                evictions.increment();
+            }
+        }
+    }
+    
+    private static long weigh(String key, CacheEntry entry) {
+        return KEY_OVERHEAD_BYTES + 2L * key.length() + entry.getEstimatedBytes();
     }
     
     /**
@@ -60,6 +226,40 @@ public class CacheStorage implements ICacheStorage {
         return storage.size();
     }
     
+    /**
+     * Get the estimated size of all entries in bytes.
+     */
+    public long getEstimatedBytes() {
+        lock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    /**
+     * Get the number of entries evicted to stay within the bounds.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+    
+    /**
+     * Get the number of entries removed because their TTL ran out.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+    
     /**
      * Get all cache entries (for persistence).
      */
@@ -75,10 +275,19 @@ public class CacheStorage implements ICacheStorage {
             return;
         }
         
+        long start = System.nanoTime();
         try {
-            Map<String, CacheEntry> loadedEntries = persistence.load();
-            storage.putAll(loadedEntries);
-            System.out.println("CacheStorage: Loaded " + loadedEntries.size() + " entries from disk");
+            if (!snapshotStore.hasSnapshot() && persistence.getCacheFilePath().toFile().exists()) {
+                // First start after the switch from JSON: import the old file
+                Map<String, CacheEntry> loadedEntries = persistence.load();
+                for (Map.Entry<String, CacheEntry> entry : loadedEntries.entrySet()) {
+                    put(entry.getKey(), entry.getValue());
+                }
+            }
+            // Through put()/remove() so the bounds and the policy apply to loaded entries too
+            int records = snapshotStore.load(this::put, this::remove);
+            System.out.println("CacheStorage: Loaded " + storage.size() + " entries from " + records +
+                              " records in " + (System.nanoTime() - start) / 1_000_000 + " ms");
         } catch (Exception e) {
             System.err.println("CacheStorage: Failed to load cache: " + e.getMessage());
         }
@@ -93,15 +302,37 @@ public class CacheStorage implements ICacheStorage {
         }
         
         try {
-            boolean success = persistence.save(storage);
-            if (success) {
-                System.out.println("CacheStorage: Cache saved successfully");
-            }
+            long start = System.nanoTime();
+            int written = snapshotStore.checkpoint(storage);
+            System.out.println("CacheStorage: Checkpointed " + written + " entries in " +
+                              (System.nanoTime() - start) / 1_000_000 + " ms");
         } catch (Exception e) {
             System.err.println("CacheStorage: Failed to save cache: " + e.getMessage());
         }
     }
     
+    /**
+     * Flush the change log and checkpoint periodically in the background.
+     */
+    private void startPersistenceScheduler() {
+        persistenceScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CacheCheckpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        long flushMillis = ConfigLoader.getCacheLogFlushMillis();
+        persistenceScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshotStore.flushLog();
+            } catch (Exception e) {
+                System.err.println("CacheStorage: Failed to flush change log: " + e.getMessage());
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        long checkpointSeconds = ConfigLoader.getCacheCheckpointIntervalSeconds();
+        persistenceScheduler.scheduleWithFixedDelay(this::saveCache,
+                checkpointSeconds, checkpointSeconds, TimeUnit.SECONDS);
+    }
+    
     /**
      * Register shutdown hook to auto-save cache.
      */
@@ -112,7 +343,15 @@ public class CacheStorage implements ICacheStorage {
         
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("CacheStorage: Saving cache on shutdown...");
+            persistenceScheduler.shutdown();
+            try {
+                // Let a running checkpoint finish before writing the final one
+                persistenceScheduler.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
             saveCache();
+            snapshotStore.close();
         }, "CacheStorage-Shutdown"));
     }
     
@@ -120,9 +359,24 @@ public class CacheStorage implements ICacheStorage {
      * Clear all cache entries and delete persistence file.
      */
     public void clearAll() {
-        storage.clear();
+        lock.lock();
+        try {
+            for (String key : new ArrayList<>(storage.keySet())) {
+                policy.recordRemoval(key);
+                expiryWheel.cancel(key);
+            }
+            storage.clear();
+            totalBytes = 0L;
+        } finally {
+            lock.unlock();
+        }
         if (persistenceEnabled) {
             persistence.clear();
+            try {
+                snapshotStore.clear();
+            } catch (Exception e) {
+                System.err.println("CacheStorage: Failed to delete snapshot: " + e.getMessage());
+            }
         }
         System.out.println("CacheStorage: Cache cleared");
     }
@@ -0,0 +1,175 @@
+package com.sitm.mio.proxyserver.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Hierarchical timing wheel that finds expired cache entries without
+ * scanning the cache.
+ *
+ * Three wheels of 64 slots each. With a 1 s tick the first wheel covers
+ * about a minute at one-tick resolution, the second about an hour and the
+ * third about three days. Entries due later wait in the farthest slot
+ * until they come closer. Scheduling and cancelling are O(1). Each tick
+ * moves the slot at the head of the next wheel down into the finer one,
+ * then expires the entries in the current first-wheel slot. Every entry
+ * is cascaded at most twice, so the cost per expired entry is O(1)
+ * amortized.
+ *
+ * Not thread-safe; CacheStorage calls it under its lock.
+ */
+class ExpiryTimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 3;
+
+    private static final class Node {
+        private final String key;
+        private final CacheEntry entry;
+        private final long dueTick;
+        private Node prev;
+        private Node next;
+        private Node[] slots;
+        private int slot;
+
+        private Node(String key, CacheEntry entry, long dueTick) {
+            this.key = key;
+            this.entry = entry;
+            this.dueTick = dueTick;
+        }
+    }
+
+    private final long tickMillis;
+    private final Node[][] wheels = new Node[LEVELS][WHEEL_SIZE];
+    private final Map<String, Node> nodes = new HashMap<>();
+    private long currentTick;
+
+    ExpiryTimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedule an entry for removal at the end of its stale grace window
+     * (its expiration time when it has none), replacing any earlier
+     * schedule for the same key.
+     */
+    void schedule(String key, CacheEntry entry) {
+        cancel(key);
+        long removeAt = entry.getStaleUntil();
+        if (removeAt == Long.MAX_VALUE) {
+            return;
+        }
+        // Round up so an entry is never found due before it has expired
+        long dueTick = Math.max(currentTick + 1, (removeAt + tickMillis - 1) / tickMillis);
+        Node node = new Node(key, entry, dueTick);
+        nodes.put(key, node);
+        place(node);
+    }
+
+    /**
+     * Forget the schedule of a removed key.
+     */
+    void cancel(String key) {
+        Node node = nodes.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Advance the wheel to the given time and hand every entry that expired
+     * on the way to the consumer.
+     */
+    void advance(long nowMillis, BiConsumer<String, CacheEntry> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+            }
+
+            Node[] slots = wheels[0];
+            int slot = (int) (currentTick & WHEEL_MASK);
+            Node node = slots[slot];
+            slots[slot] = null;
+            while (node != null) {
+                Node next = node.next;
+                node.prev = null;
+                node.next = null;
+                node.slots = null;
+                if (node.dueTick <= currentTick) {
+                    nodes.remove(node.key);
+                    expired.accept(node.key, node.entry);
+                } else {
+                    place(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    private void cascade(int level, int slot) {
+        Node[] slots = wheels[level];
+        Node node = slots[slot];
+        slots[slot] = null;
+        while (node != null) {
+            Node next = node.next;
+            node.prev = null;
+            node.next = null;
+            node.slots = null;
+            place(node);
+            node = next;
+        }
+    }
+
+    private void place(Node node) {
+        long delta = node.dueTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        long tick = node.dueTick;
+        if (delta >= 1L << (WHEEL_BITS * LEVELS)) {
+            // Beyond the last wheel: park in its farthest slot and re-place on cascade
+            tick = currentTick + (1L << (WHEEL_BITS * LEVELS)) - 1;
+        }
+        int slot = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Node[] slots = wheels[level];
+        node.slots = slots;
+        node.slot = slot;
+        node.prev = null;
+        node.next = slots[slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        slots[slot] = node;
+    }
+
+    private static void unlink(Node node) {
+        if (node.slots == null) {
+            return;
+        }
+        if (node.prev == null) {
+            node.slots[node.slot] = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.slots = null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.sitm.mio.proxyserver.cache;
+
+/**
+ * Approximate access counter for the TinyLFU admission filter.
+ *
+ * Count-min sketch of 4-bit counters (16 per long), four counters per key.
+ * Counts saturate at 15 and are all halved after sampleSize increments, so
+ * old popularity fades and the sketch adapts to a changing workload.
+ * Not thread-safe; callers synchronize.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param maximumSize Expected number of distinct hot keys (the cache capacity)
+     */
+    FrequencySketch(int maximumSize) {
+        int size = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = 10 * Math.max(16, maximumSize);
+    }
+
+    /**
+     * Estimated number of recent accesses of the key (0-15).
+     */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int min = 15;
+        for (int i = 0; i < 4; i++) {
+            long h = hash * SEEDS[i];
+            int index = (int) (h >>> 32) & tableMask;
+            int offset = (int) ((h >>> 28) & 15L) << 2;
+            min = Math.min(min, (int) ((table[index] >>> offset) & 15L));
+        }
+        return min;
+    }
+
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            long h = hash * SEEDS[i];
+            int index = (int) (h >>> 32) & tableMask;
+            int offset = (int) ((h >>> 28) & 15L) << 2;
+            long mask = 15L << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Halve every counter (aging).
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
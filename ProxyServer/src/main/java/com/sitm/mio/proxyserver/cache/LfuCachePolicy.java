@@ -0,0 +1,118 @@
+package com.sitm.mio.proxyserver.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * TTL expiration with least-frequently-used eviction.
+ *
+ * O(1) LFU: keys sit in buckets of equal access count, and the buckets
+ * form a list ordered by count. An access moves a key to the next bucket;
+ * eviction takes the oldest key of the first (least used) bucket, so ties
+ * are broken by recency.
+ */
+public class LfuCachePolicy extends SimpleCachePolicy {
+
+    private static final class Bucket {
+        private final long count;
+        private final LinkedHashSet<String> keys = new LinkedHashSet<>();
+        private Bucket prev;
+        private Bucket next;
+
+        private Bucket(long count) {
+            this.count = count;
+        }
+    }
+
+    private final Map<String, Bucket> bucketOf = new HashMap<>();
+    private Bucket head; // Lowest count
+
+    public LfuCachePolicy(long ttlMillis) {
+        super(ttlMillis);
+    }
+
+    @Override
+    public void recordInsertion(String key, CacheEntry entry) {
+        if (bucketOf.containsKey(key)) {
+            return;
+        }
+        Bucket first = head;
+        if (first == null || first.count != 1) {
+            first = insertAfter(null, 1);
+        }
+        first.keys.add(key);
+        bucketOf.put(key, first);
+    }
+
+    @Override
+    public void recordAccess(String key, CacheEntry entry) {
+        Bucket bucket = bucketOf.get(key);
+        if (bucket == null) {
+            return;
+        }
+        Bucket next = bucket.next;
+        if (next == null || next.count != bucket.count + 1) {
+            next = insertAfter(bucket, bucket.count + 1);
+        }
+        bucket.keys.remove(key);
+        next.keys.add(key);
+        bucketOf.put(key, next);
+        if (bucket.keys.isEmpty()) {
+            unlink(bucket);
+        }
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        Bucket bucket = bucketOf.remove(key);
+        if (bucket != null) {
+            bucket.keys.remove(key);
+            if (bucket.keys.isEmpty()) {
+                unlink(bucket);
+            }
+        }
+    }
+
+    @Override
+    public String selectEvictionCandidate() {
+        if (head == null) {
+            return null;
+        }
+        Iterator<String> it = head.keys.iterator();
+        String victim = it.next();
+        it.remove();
+        bucketOf.remove(victim);
+        if (head.keys.isEmpty()) {
+            unlink(head);
+        }
+        return victim;
+    }
+
+    private Bucket insertAfter(Bucket prev, long count) {
+        Bucket bucket = new Bucket(count);
+        bucket.prev = prev;
+        bucket.next = prev == null ? head : prev.next;
+        if (bucket.next != null) {
+            bucket.next.prev = bucket;
+        }
+        if (prev == null) {
+            head = bucket;
+        } else {
+            prev.next = bucket;
+        }
+        return bucket;
+    }
+
+    private void unlink(Bucket bucket) {
+        if (bucket.prev == null) {
+            head = bucket.next;
+        } else {
+            bucket.prev.next = bucket.next;
+        }
+        if (bucket.next != null) {
+            bucket.next.prev = bucket.prev;
+        }
+    }
+}
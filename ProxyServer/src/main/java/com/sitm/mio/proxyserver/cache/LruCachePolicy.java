@@ -0,0 +1,11 @@
+package com.sitm.mio.proxyserver.cache;
+
+/**
+ * TTL expiration with least-recently-used eviction.
+ */
+public class LruCachePolicy extends SimpleCachePolicy {
+
+    public LruCachePolicy(long ttlMillis) {
+        super(ttlMillis, true);
+    }
+}
@@ -1,18 +1,65 @@
 package com.sitm.mio.proxyserver.cache;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
 import com.sitm.mio.proxyserver.interfaces.ICachePolicy;
 
+/**
+ * TTL expiration with FIFO eviction: when the cache is full the oldest
+ * inserted entry goes first, which with a single TTL is also the one
+ * closest to expiring.
+ *
+ * Bookkeeping is not thread-safe; CacheStorage calls it under its lock.
+ */
 public class SimpleCachePolicy implements ICachePolicy {
 
     private final long ttlMillis;
+    // Keys, oldest first (in access order for LRU)
+    private final LinkedHashMap<String, Boolean> order;
 
     public SimpleCachePolicy(long ttlMillis) {
+        this(ttlMillis, false);
+    }
+
+    protected SimpleCachePolicy(long ttlMillis, boolean accessOrder) {
         this.ttlMillis = ttlMillis;
+        this.order = new LinkedHashMap<>(16, 0.75f, accessOrder);
     }
 
     @Override
     public boolean shouldEvict(String key, CacheEntry entry) {
-        long now = System.currentTimeMillis();
-        return (now - entry.getTimestamp()) > ttlMillis;
+        // Per-type TTL, fixed when the entry was created
+        return entry.isExpired(System.currentTimeMillis());
+    }
+
+    @Override
+    public void recordInsertion(String key, CacheEntry entry) {
+        order.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public void recordAccess(String key, CacheEntry entry) {
+        order.get(key); // Moves the key to the end in access order
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        order.remove(key);
+    }
+
+    @Override
+    public String selectEvictionCandidate() {
+        Iterator<String> it = order.keySet().iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        String eldest = it.next();
+        it.remove();
+        return eldest;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
     }
-}
\ No newline at end of file
+}
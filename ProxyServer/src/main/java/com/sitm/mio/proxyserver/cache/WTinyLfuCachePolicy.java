@@ -0,0 +1,122 @@
+package com.sitm.mio.proxyserver.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * TTL expiration with W-TinyLFU eviction.
+ *
+ * New keys enter a small LRU window (1% of the capacity). Keys leaving
+ * the window compete for a place in the main area against its eviction
+ * victim, and the one a FrequencySketch has seen more often stays. The
+ * main area is a segmented LRU: keys accessed again move from probation
+ * (20%) to protected (80%). One-hit wonders, such as most single cached
+ * datagrams, stay in the window and never push out popular stop pairs.
+ */
+public class WTinyLfuCachePolicy extends SimpleCachePolicy {
+
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+    private final FrequencySketch sketch;
+
+    // Each segment is kept in LRU order, eldest first
+    private final LinkedHashMap<String, Boolean> window = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Boolean> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Boolean> protectedSegment = new LinkedHashMap<>();
+
+    public WTinyLfuCachePolicy(long ttlMillis, int maxEntries) {
+        super(ttlMillis);
+        int capacity = Math.max(2, maxEntries);
+        this.windowMax = Math.max(1, capacity / 100);
+        this.mainMax = capacity - windowMax;
+        this.protectedMax = (int) (mainMax * 0.8);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public void recordInsertion(String key, CacheEntry entry) {
+        sketch.increment(key);
+        window.put(key, Boolean.TRUE);
+
+        // While the main area has room, the window overflow moves there directly
+        while (window.size() > windowMax && mainSize() < mainMax) {
+            probation.put(pollEldest(window), Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void recordAccess(String key, CacheEntry entry) {
+        sketch.increment(key);
+        if (window.remove(key) != null) {
+            window.put(key, Boolean.TRUE);
+        } else if (probation.remove(key) != null) {
+            protectedSegment.put(key, Boolean.TRUE);
+            if (protectedSegment.size() > protectedMax) {
+                probation.put(pollEldest(protectedSegment), Boolean.TRUE);
+            }
+        } else if (protectedSegment.remove(key) != null) {
+            protectedSegment.put(key, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedSegment.remove(key);
+        }
+    }
+
+    @Override
+    public String selectEvictionCandidate() {
+        if (window.size() > windowMax) {
+            String candidate = pollEldest(window);
+            String victim = eldest(probation);
+            if (victim == null) {
+                victim = eldest(protectedSegment);
+            }
+            if (victim == null) {
+                return candidate;
+            }
+
+            // TinyLFU admission: the more frequent of the two stays
+            if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                if (probation.remove(victim) == null) {
+                    protectedSegment.remove(victim);
+                }
+                probation.put(candidate, Boolean.TRUE);
+                return victim;
+            }
+            return candidate;
+        }
+
+        // Window within bounds (e.g. evicting for the byte limit): take from main first
+        String victim = pollEldest(probation);
+        if (victim == null) {
+            victim = pollEldest(protectedSegment);
+        }
+        if (victim == null) {
+            victim = pollEldest(window);
+        }
+        return victim;
+    }
+
+    private int mainSize() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    private static String eldest(LinkedHashMap<String, Boolean> segment) {
+        Iterator<String> it = segment.keySet().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    private static String pollEldest(LinkedHashMap<String, Boolean> segment) {
+        Iterator<String> it = segment.keySet().iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        String key = it.next();
+        it.remove();
+        return key;
+    }
+}
@@ -85,6 +85,17 @@ public class ConfigLoader {
         properties.setProperty("datacenter.timeout.seconds", "30");
         properties.setProperty("cache.ttl.minutes", "10");
         properties.setProperty("cache.max.entries", "1000");
+        properties.setProperty("cache.max.bytes", "67108864");
+        properties.setProperty("cache.eviction.policy", "W_TINYLFU");
+        properties.setProperty("cache.ttl.system_stats.seconds", "60");
+        properties.setProperty("cache.expiry.tick.ms", "1000");
+        properties.setProperty("cache.stale.citizen.seconds", "60");
+        properties.setProperty("cache.refresh.ahead.fraction", "0.8");
+        properties.setProperty("cache.refresh.min.hits", "3");
+        properties.setProperty("cache.refresh.threads", "2");
+        properties.setProperty("cache.persistence.dir", "cache");
+        properties.setProperty("cache.log.flush.ms", "1000");
+        properties.setProperty("cache.checkpoint.interval.seconds", "300");
     }
     
     /**
@@ -93,9 +104,14 @@ public class ConfigLoader {
     private static void setIceDefaults() {
         iceProperties.setProperty("DataCenter.Proxy", "DataCenter:tcp -h localhost -p 10003");
         iceProperties.setProperty("DataCenterEventPublisher.Proxy", "DataCenterEventPublisher:tcp -h localhost -p 10003");
+        iceProperties.setProperty("DataCenterHistoryExport.Proxy", "HistoryExport:tcp -h localhost -p 10003");
         iceProperties.setProperty("ProxyServerAdapter.Endpoints", "tcp -h 0.0.0.0 -p 10004");
         iceProperties.setProperty("Ice.ThreadPool.Client.Size", "2");
         iceProperties.setProperty("Ice.ThreadPool.Client.SizeMax", "5");
+        iceProperties.setProperty("ProxyServerAdapter.ThreadPool.Size", "4");
+        iceProperties.setProperty("ProxyServerAdapter.ThreadPool.SizeMax", "8");
+        iceProperties.setProperty("ProxyServerEventAdapter.ThreadPool.Size", "1");
+        iceProperties.setProperty("ProxyServerEventAdapter.ThreadPool.SizeMax", "1");
         iceProperties.setProperty("Ice.Warn.Connections", "1");
         iceProperties.setProperty("Ice.Trace.Network", "0");
     }
@@ -116,6 +132,26 @@ public class ConfigLoader {
         return properties.getProperty("server.host", "0.0.0.0");
     }
     
+    /**
+     * Get the ICE port Citizens connect to.
+     * -Dproxyserver.port overrides proxyserver.ice.port, so several shards can
+     * run from the same configuration.
+     * @return ICE port
+     */
+    public static int getProxyServerIcePort() {
+        return Integer.parseInt(System.getProperty("proxyserver.port",
+            properties.getProperty("proxyserver.ice.port", "10000")));
+    }
+    
+    /**
+     * Get the shard name of this instance (-Dproxyserver.shard.id or proxyserver.shard.id).
+     * Empty when running a single, unsharded ProxyServer.
+     * @return Shard name
+     */
+    public static String getShardId() {
+        return System.getProperty("proxyserver.shard.id", properties.getProperty("proxyserver.shard.id", ""));
+    }
+    
     /**
      * Get DataCenter URL.
      * @return DataCenter URL
@@ -148,6 +184,92 @@ public class ConfigLoader {
         return getCacheTTLMinutes() * 60 * 1000L;
     }
     
+    /**
+     * Get cache TTL for one type of cached data.
+     * Read from cache.ttl.{type}.seconds, falling back to cache.ttl.minutes.
+     * @param type The type of cached data
+     * @return Cache TTL in milliseconds
+     */
+    public static long getCacheTTLMillis(com.sitm.mio.proxyserver.cache.CacheType type) {
+        String seconds = properties.getProperty("cache.ttl." + type.name().toLowerCase() + ".seconds");
+        if (seconds == null) {
+            return getCacheTTLMillis();
+        }
+        return Long.parseLong(seconds.trim()) * 1000L;
+    }
+    
+    /**
+     * Get how long an expired entry of one type may still be served while
+     * it is refreshed in the background (stale-while-revalidate).
+     * Read from cache.stale.{type}.seconds; 0 disables stale reads.
+     * @param type The type of cached data
+     * @return Grace window in milliseconds
+     */
+    public static long getCacheStaleGraceMillis(com.sitm.mio.proxyserver.cache.CacheType type) {
+        String seconds = properties.getProperty("cache.stale." + type.name().toLowerCase() + ".seconds", "0");
+        return Long.parseLong(seconds.trim()) * 1000L;
+    }
+    
+    /**
+     * Get the fraction of the TTL after which hot entries are refreshed ahead of expiry.
+     * @return Fraction between 0 and 1; 0 or 1 disables refresh-ahead
+     */
+    public static double getCacheRefreshAheadFraction() {
+        return Double.parseDouble(properties.getProperty("cache.refresh.ahead.fraction", "0.8"));
+    }
+    
+    /**
+     * Get the number of reads after which an entry counts as hot for refresh-ahead.
+     * @return Minimum hits
+     */
+    public static int getCacheRefreshMinHits() {
+        return Integer.parseInt(properties.getProperty("cache.refresh.min.hits", "3"));
+    }
+    
+    /**
+     * Get the number of background refresh threads.
+     * @return Refresh thread count
+     */
+    public static int getCacheRefreshThreads() {
+        return Integer.parseInt(properties.getProperty("cache.refresh.threads", "2"));
+    }
+    
+    /**
+     * Get the directory holding the cache snapshot and change logs.
+     * @return Directory path
+     */
+    public static String getCachePersistenceDir() {
+        String dir = properties.getProperty("cache.persistence.dir", "cache");
+        // Shards on one host must not share snapshot files
+        String shardId = getShardId();
+        return shardId.isEmpty() ? dir : dir + "/" + shardId;
+    }
+    
+    /**
+     * Get how often the cache change log is written to disk.
+     * Bounds how much of the cache a crash can lose.
+     * @return Flush interval in milliseconds
+     */
+    public static long getCacheLogFlushMillis() {
+        return Long.parseLong(properties.getProperty("cache.log.flush.ms", "1000"));
+    }
+    
+    /**
+     * Get how often a full cache snapshot is written.
+     * @return Checkpoint interval in seconds
+     */
+    public static long getCacheCheckpointIntervalSeconds() {
+        return Long.parseLong(properties.getProperty("cache.checkpoint.interval.seconds", "300"));
+    }
+    
+    /**
+     * Get the tick of the background expiry sweeper.
+     * @return Sweep interval in milliseconds
+     */
+    public static long getCacheExpiryTickMillis() {
+        return Long.parseLong(properties.getProperty("cache.expiry.tick.ms", "1000"));
+    }
+    
     /**
      * Get maximum number of cache entries.
      * @return Maximum cache entries
@@ -156,6 +278,22 @@ public class ConfigLoader {
         return Integer.parseInt(properties.getProperty("cache.max.entries", "1000"));
     }
     
+    /**
+     * Get maximum estimated cache size in bytes.
+     * @return Maximum cache size in bytes
+     */
+    public static long getMaxCacheBytes() {
+        return Long.parseLong(properties.getProperty("cache.max.bytes", "67108864"));
+    }
+    
+    /**
+     * Get cache eviction policy used when the cache is full.
+     * @return "TTL" (oldest first), "LRU", "LFU" or "W_TINYLFU"
+     */
+    public static String getCacheEvictionPolicy() {
+        return properties.getProperty("cache.eviction.policy", "W_TINYLFU").toUpperCase().replace('-', '_');
+    }
+    
     /**
      * Check if cache is enabled.
      * @return true if cache is enabled
@@ -208,12 +346,37 @@ public class ConfigLoader {
         return iceProperties.getProperty("DataCenterEventPublisher.Proxy", "DataCenterEventPublisher:tcp -h localhost -p 10003");
     }
     
+    /**
+     * Get DataCenter history export proxy string.
+     * @return History export proxy string
+     */
+    public static String getDataCenterHistoryExportProxy() {
+        return iceProperties.getProperty("DataCenterHistoryExport.Proxy", "HistoryExport:tcp -h localhost -p 10003");
+    }
+    
     /**
      * Get ProxyServer adapter endpoints.
      * @return Adapter endpoints
      */
     public static String getProxyServerAdapterEndpoints() {
-        return iceProperties.getProperty("ProxyServerAdapter.Endpoints", "tcp -h 0.0.0.0 -p 10004");
+        return System.getProperty("proxyserver.event.endpoints",
+            iceProperties.getProperty("ProxyServerAdapter.Endpoints", "tcp -h 0.0.0.0 -p 10004"));
+    }
+    
+    /**
+     * Copy a thread pool's sizes from the ICE configuration into the
+     * properties of a communicator, unless given on the command line.
+     * @param target Properties the communicator is initialized with
+     * @param threadPool Thread pool prefix, e.g. "ProxyServerAdapter.ThreadPool"
+     *                   for an object adapter or "Ice.ThreadPool.Client"
+     */
+    public static void applyThreadPool(com.zeroc.Ice.Properties target, String threadPool) {
+        for (String setting : new String[] {".Size", ".SizeMax"}) {
+            String value = iceProperties.getProperty(threadPool + setting);
+            if (value != null && target.getProperty(threadPool + setting).isEmpty()) {
+                target.setProperty(threadPool + setting, value);
+            }
+        }
     }
     
     /**
@@ -222,16 +385,32 @@ public class ConfigLoader {
     public static void printConfiguration() {
         System.out.println("=== ProxyServer Configuration ===");
         System.out.println("Server: " + getServerHost() + ":" + getServerPort());
+        System.out.println("ICE Port: " + getProxyServerIcePort());
+        System.out.println("Shard: " + (getShardId().isEmpty() ? "(single instance)" : getShardId()));
         System.out.println("DataCenter URL: " + getDataCenterUrl());
         System.out.println("DataCenter Timeout: " + getDataCenterTimeout() + "s");
         System.out.println("Cache TTL: " + getCacheTTLMinutes() + " minutes");
+        for (com.sitm.mio.proxyserver.cache.CacheType type : com.sitm.mio.proxyserver.cache.CacheType.values()) {
+            System.out.println("  " + type + " TTL: " + (getCacheTTLMillis(type) / 1000) + "s");
+        }
+        System.out.println("Cache Expiry Tick: " + getCacheExpiryTickMillis() + "ms");
+        System.out.println("Citizen Stale Grace: " + (getCacheStaleGraceMillis(com.sitm.mio.proxyserver.cache.CacheType.CITIZEN) / 1000) + "s");
+        System.out.println("Refresh Ahead: at " + getCacheRefreshAheadFraction() + " of TTL after " + getCacheRefreshMinHits() + " hits");
         System.out.println("Cache Enabled: " + isCacheEnabled());
         System.out.println("Max Cache Entries: " + getMaxCacheEntries());
+        System.out.println("Max Cache Bytes: " + getMaxCacheBytes());
+        System.out.println("Cache Eviction Policy: " + getCacheEvictionPolicy());
         System.out.println("================================");
         System.out.println("=== ICE Configuration ===");
         System.out.println("DataCenter Proxy: " + getDataCenterProxy());
         System.out.println("Event Publisher Proxy: " + getDataCenterEventPublisherProxy());
+        System.out.println("History Export Proxy: " + getDataCenterHistoryExportProxy());
         System.out.println("Adapter Endpoints: " + getProxyServerAdapterEndpoints());
+        for (String adapter : new String[] {"ProxyServerAdapter", "ProxyServerEventAdapter"}) {
+            System.out.println(adapter + " Threads: " +
+                getIceProperty(adapter + ".ThreadPool.Size", "1") + "-" +
+                getIceProperty(adapter + ".ThreadPool.SizeMax", "1"));
+        }
         System.out.println("========================");
     }
 }
@@ -1,12 +1,16 @@
 package com.sitm.mio.proxyserver.ice;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.zeroc.Ice.Communicator;
+import com.zeroc.Ice.InitializationData;
 import com.zeroc.Ice.ObjectAdapter;
 import com.zeroc.Ice.ObjectPrx;
 import com.zeroc.Ice.Util;
 import SITM.DataCenterPrx;
 import SITM.DataCenterEventPublisherPrx;
 import SITM.DataCenterEventSubscriberPrx;
+import SITM.HistoryExportPrx;
 import SITM.CitizenInfoRequest;
 import SITM.CitizenInfoResponse;
 import com.sitm.mio.proxyserver.cache.CacheManager;
@@ -19,6 +23,7 @@ import com.sitm.mio.proxyserver.config.ConfigLoader;
  * - Connect to DataCenter ICE server
  * - Query citizen information (travel times)
  * - Subscribe to enriched datagram events
+ * - Relay history export cursors
  * - Manage ICE communicator lifecycle
  */
 public class DataCenterClient {
@@ -26,6 +31,7 @@ public class DataCenterClient {
     private Communicator communicator;
     private DataCenterPrx dataCenterProxy;
     private DataCenterEventPublisherPrx eventPublisherProxy;
+    private HistoryExportPrx historyExportProxy;
     private DataCenterEventSubscriberI subscriberServant;
     private ObjectAdapter adapter;
     private final CacheManager cacheManager;
@@ -43,8 +49,12 @@ public class DataCenterClient {
         try {
             System.out.println("[DataCenterClient] Initializing ICE connection...");
             
-            // Create ICE communicator
-            communicator = Util.initialize(args);
+            // Create ICE communicator; DataCenter replies are processed in its client thread pool
+            InitializationData initData = new InitializationData();
+            initData.properties = Util.createProperties(args);
+            ConfigLoader.applyThreadPool(initData.properties, "Ice.ThreadPool.Client");
+            ConfigLoader.applyThreadPool(initData.properties, "ProxyServerEventAdapter.ThreadPool");
+            communicator = Util.initialize(args, initData);
             
             // Get DataCenter proxy from configuration
             String dataCenterProxyStr = ConfigLoader.getDataCenterProxy();
@@ -68,6 +78,10 @@ public class DataCenterClient {
                 throw new RuntimeException("Invalid EventPublisher proxy: " + eventPublisherProxyStr);
             }
             
+            // History export is optional: unchecked so an older DataCenter does not fail startup
+            String historyExportProxyStr = ConfigLoader.getDataCenterHistoryExportProxy();
+            historyExportProxy = HistoryExportPrx.uncheckedCast(communicator.stringToProxy(historyExportProxyStr));
+            
             // Create object adapter for receiving events
             String adapterEndpoints = ConfigLoader.getProxyServerAdapterEndpoints();
             adapter = communicator.createObjectAdapterWithEndpoints("ProxyServerEventAdapter", adapterEndpoints);
@@ -136,6 +150,58 @@ public class DataCenterClient {
         }
     }
     
+    /**
+     * Query citizen information from DataCenter without blocking the caller.
+     * Failures complete the future with an error response, as in
+     * getCitizenInformation.
+     * 
+     * @param originStopId Origin stop ID
+     * @param destinationStopId Destination stop ID
+     * @return Future citizen information response
+     */
+    public CompletableFuture<CitizenInfoResponse> getCitizenInformationAsync(long originStopId, long destinationStopId) {
+        System.out.println("[DataCenterClient] Querying citizen info (async): " + originStopId + " -> " + destinationStopId);
+        
+        CompletableFuture<CitizenInfoResponse> future;
+        try {
+            future = dataCenterProxy.getCitizenInformationAsync(new CitizenInfoRequest(originStopId, destinationStopId));
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.exceptionally(e -> {
+            System.err.println("[DataCenterClient] Query failed: " + e.getMessage());
+            return new CitizenInfoResponse("Error querying DataCenter: " + e.getMessage(), false, System.currentTimeMillis(), 0L);
+        });
+    }
+    
+    /**
+     * Query citizen information for several stop pairs in one call without
+     * blocking the caller. Failures complete the future with an error
+     * response per request.
+     * 
+     * @param requests Origin and destination stop IDs
+     * @return Future citizen information responses, in request order
+     */
+    public CompletableFuture<CitizenInfoResponse[]> getCitizenInformationBatchAsync(CitizenInfoRequest[] requests) {
+        System.out.println("[DataCenterClient] Querying citizen info batch (async): " + requests.length + " pairs");
+        
+        CompletableFuture<CitizenInfoResponse[]> future;
+        try {
+            future = dataCenterProxy.getCitizenInformationBatchAsync(requests);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.exceptionally(e -> {
+            System.err.println("[DataCenterClient] Batch query failed: " + e.getMessage());
+            CitizenInfoResponse[] errorResponses = new CitizenInfoResponse[requests.length];
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < requests.length; i++) {
+                errorResponses[i] = new CitizenInfoResponse("Error querying DataCenter: " + e.getMessage(), false, now, 0L);
+            }
+            return errorResponses;
+        });
+    }
+    
     /**
      * Submit travel time statistics to DataCenter.
      * Forwards data from OperationControl via ProxyServer to DataCenter.
@@ -200,6 +266,15 @@ public class DataCenterClient {
         }
     }
     
+    /**
+     * Get the DataCenter history export proxy.
+     * 
+     * @return History export proxy, or null before initialize
+     */
+    public HistoryExportPrx getHistoryExportProxy() {
+        return historyExportProxy;
+    }
+    
     /**
      * Get the DataCenter proxy for direct access.
      * 
@@ -2,11 +2,13 @@ package com.sitm.mio.proxyserver.ice;
 
 import com.zeroc.Ice.Current;
 
+import SITM.CacheInvalidation;
 import SITM.DataCenterEventSubscriber;
 import SITM.EnrichedDatagram;
 
 import com.sitm.mio.proxyserver.cache.CacheManager;
 import com.sitm.mio.proxyserver.cache.CacheType;
+import com.sitm.mio.proxyserver.service.RequestRouter;
 
 /**
  * ICE Servant that receives enriched datagrams from DataCenter.
@@ -37,4 +39,22 @@ public class DataCenterEventSubscriberI implements DataCenterEventSubscriber {
         
         System.out.println("[ProxyServer] Cached enriched datagram with key: " + cacheKey);
     }
+    
+    @Override
+    public void onEnrichedDatagrams(EnrichedDatagram[] datagrams, Current current) {
+        for (EnrichedDatagram datagram : datagrams) {
+            String cacheKey = CacheType.SYSTEM_STATS.createKey("datagram_" + datagram.datagramId);
+            cacheManager.put(cacheKey, datagram, CacheType.SYSTEM_STATS);
+        }
+        
+        System.out.println("[ProxyServer] Cached batch of " + datagrams.length + " enriched datagrams");
+    }
+    
+    @Override
+    public void onCacheInvalidation(CacheInvalidation invalidation, Current current) {
+        String cacheKey = RequestRouter.citizenCacheKey(invalidation.originStopId, invalidation.destinationStopId);
+        if (cacheManager.invalidate(cacheKey)) {
+            System.out.println("[ProxyServer] Invalidated cached travel time: " + cacheKey);
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package com.sitm.mio.proxyserver.ice;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import com.zeroc.Ice.Current;
+import SITM.HistoryChunk;
+import SITM.HistoryExport;
+import SITM.HistoryExportException;
+import SITM.HistoryExportPrx;
+
+/**
+ * ICE servant implementation for HistoryExport interface.
+ * Relays history export cursors from Observer to DataCenter.
+ *
+ * Nothing is buffered here: each call is forwarded asynchronously and the
+ * chunk DataCenter returns is passed back as is, so a ProxyServer holds at
+ * most the chunks in flight, never a whole range. Cursor IDs are
+ * DataCenter's, which is why any ProxyServer shard can relay any cursor.
+ */
+public class HistoryExportI implements HistoryExport {
+
+    private volatile DataCenterClient dataCenterClient;
+
+    public HistoryExportI() {
+        System.out.println("HistoryExportI servant created");
+    }
+
+    /**
+     * Set the DataCenter client once it is connected.
+     */
+    public void setDataCenterClient(DataCenterClient dataCenterClient) {
+        this.dataCenterClient = dataCenterClient;
+    }
+
+    @Override
+    public CompletionStage<String> openCursorAsync(String timeRange, Current current) {
+        System.out.println("ICE RPC: openCursor(" + timeRange + ")");
+
+        HistoryExportPrx dataCenter = dataCenter();
+        if (dataCenter == null) {
+            return CompletableFuture.failedFuture(new HistoryExportException("DataCenter not connected"));
+        }
+        return relay(dataCenter.openCursorAsync(timeRange));
+    }
+
+    @Override
+    public CompletionStage<HistoryChunk> fetchChunkAsync(String cursorId, int maxRecords, Current current) {
+        HistoryExportPrx dataCenter = dataCenter();
+        if (dataCenter == null) {
+            return CompletableFuture.failedFuture(new HistoryExportException("DataCenter not connected"));
+        }
+        return relay(dataCenter.fetchChunkAsync(cursorId, maxRecords));
+    }
+
+    @Override
+    public CompletionStage<Void> closeCursorAsync(String cursorId, Current current) {
+        HistoryExportPrx dataCenter = dataCenter();
+        if (dataCenter == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // Best effort: DataCenter closes idle cursors itself
+        return dataCenter.closeCursorAsync(cursorId).exceptionally(e -> null);
+    }
+
+    private HistoryExportPrx dataCenter() {
+        DataCenterClient client = dataCenterClient;
+        return client != null ? client.getHistoryExportProxy() : null;
+    }
+
+    /**
+     * Pass DataCenter's answer through; connection failures become a
+     * HistoryExportException so the caller sees why the export stopped.
+     */
+    private static <T> CompletableFuture<T> relay(CompletableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof HistoryExportException) {
+                result.completeExceptionally(cause);
+            } else {
+                System.err.println("History export relay to DataCenter failed: " + cause);
+                result.completeExceptionally(new HistoryExportException("DataCenter unavailable: " + cause));
+            }
+        });
+        return result;
+    }
+}
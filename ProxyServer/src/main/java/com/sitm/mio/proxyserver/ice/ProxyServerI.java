@@ -1,5 +1,7 @@
 package com.sitm.mio.proxyserver.ice;
 
+import java.util.concurrent.CompletionStage;
+
 import com.zeroc.Ice.Current;
 import SITM.*;
 import com.sitm.mio.proxyserver.service.RequestRouter;
@@ -7,6 +9,10 @@ import com.sitm.mio.proxyserver.service.RequestRouter;
 /**
  * ICE servant implementation for ProxyServer interface.
  * Handles RPC calls from Citizen module.
+ *
+ * Queries use asynchronous dispatch: the ICE thread returns as soon as the
+ * request is routed, and the answer is sent when the cache or DataCenter
+ * completes it.
  */
 public class ProxyServerI implements ProxyServer {
     
@@ -18,12 +24,20 @@ public class ProxyServerI implements ProxyServer {
     }
     
     @Override
-    public CitizenInformation getCitizenInformation(long originId, long destinationId, Current current) {
+    public CompletionStage<CitizenInformation> getCitizenInformationAsync(long originId, long destinationId, Current current) {
         System.out.println("ICE RPC: getCitizenInformation(" + originId + ", " + destinationId + ")");
         
         // Process through RequestRouter (uses cache + DataCenter)
-        // RequestRouter now returns ICE CitizenInformation directly
-        return requestRouter.getCitizenInformation(originId, destinationId);
+        // Completes immediately on a cache hit, when DataCenter answers otherwise
+        return requestRouter.getCitizenInformationAsync(originId, destinationId);
+    }
+    
+    @Override
+    public CompletionStage<CitizenInformation[]> getCitizenInformationBatchAsync(StopPair[] pairs, Current current) {
+        System.out.println("ICE RPC: getCitizenInformationBatch(" + pairs.length + " pairs)");
+        
+        // Cached pairs are answered locally, misses go to DataCenter in one call
+        return requestRouter.getCitizenInformationBatchAsync(pairs);
     }
     
     @Override
@@ -18,7 +18,15 @@ public interface ICachePolicy {
         // Implementaciones pueden sobrescribir según necesidad
     }
 
-   
+    
+    default void recordRemoval(String key) {
+        // Implementaciones pueden sobrescribir según necesidad
+    }
+
+    /**
+     * Choose the key to evict when the cache is over its bounds and forget it.
+     * @return Key to evict, or null if the policy tracks no keys
+     */
     default String selectEvictionCandidate() {
         return null;
     }
@@ -11,5 +11,5 @@ public interface ICacheStorage {
     void put(String key, CacheEntry entry);
 
     
-    void remove(String key);
+    boolean remove(String key);
 }
\ No newline at end of file
@@ -1,21 +1,46 @@
 package com.sitm.mio.proxyserver.service;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
 import SITM.CitizenInformation;
 import SITM.CitizenInfoResponse;
 import SITM.CitizenInfoRequest;
+import SITM.StopPair;
 import SITM.TravelTimeSubmission;
 import com.sitm.mio.proxyserver.ice.DataCenterClient;
 import com.sitm.mio.proxyserver.cache.CacheManager;
 import com.sitm.mio.proxyserver.cache.CacheType;
+import com.sitm.mio.proxyserver.config.ConfigLoader;
 
 /**
  * Request router that handles requests from citizens.
  * Routes requests through cache and delegates to DataCenter via ICE.
+ *
+ * Concurrent misses on the same stop pair are coalesced: the first one
+ * queries DataCenter and the others wait for its answer, so an expired
+ * popular route costs one DataCenter query instead of one per citizen.
+ *
+ * Batch queries answer the cached pairs locally and fetch all the misses
+ * from DataCenter in one call.
+ *
+ * Lookups return futures: a miss is completed by the DataCenter reply
+ * instead of holding the caller's thread, so the ICE servant can dispatch
+ * asynchronously.
  */
 public class RequestRouter {
 
     private final CacheManager cacheManager;
     private DataCenterClient dataCenterClient;
+    
+    // Misses currently being fetched from DataCenter, by cache key
+    private final ConcurrentHashMap<String, CompletableFuture<CitizenInformation>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder originatingRequests = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
 
     public RequestRouter() {
         this.cacheManager = new CacheManager();
@@ -29,44 +54,249 @@ public class RequestRouter {
         this.dataCenterClient = client;
     }
 
-    public CitizenInformation getCitizenInformation(long originId, long destinationId) {
-        String key = originId + "-" + destinationId;
+    /**
+     * Get travel time information for a stop pair.
+     * The answer tells the Citizen how long it may cache it (the time left
+     * of its TTL here, 0 for errors and stale answers).
+     * Completes at once on a cache hit; on a miss, when DataCenter answers,
+     * without blocking the calling thread meanwhile.
+     */
+    public CompletableFuture<CitizenInformation> getCitizenInformationAsync(long originId, long destinationId) {
+        return lookup(originId, destinationId)
+                .thenApply(info -> withRemainingTtl(info, System.currentTimeMillis()));
+    }
+    
+    /**
+     * Get travel time information for several stop pairs.
+     * Cached pairs are answered from the cache; the misses are fetched from
+     * DataCenter in one batched call, except those another request is
+     * already fetching, which wait for it. A pair repeated in the batch is
+     * fetched once.
+     *
+     * @return One answer per pair, in the same order as pairs
+     */
+    public CompletableFuture<CitizenInformation[]> getCitizenInformationBatchAsync(StopPair[] pairs) {
+        CitizenInformation[] results = new CitizenInformation[pairs.length];
+        Map<String, CompletableFuture<CitizenInformation>> misses = new HashMap<>();
+        Map<String, StopPair> toFetch = new LinkedHashMap<>();
+        int cached = 0;
+        
+        for (int i = 0; i < pairs.length; i++) {
+            long originId = pairs[i].originId;
+            long destinationId = pairs[i].destinationId;
+            String key = citizenCacheKey(originId, destinationId);
+            if (misses.containsKey(key)) {
+                continue;
+            }
+            
+            CitizenInformation info = cacheManager.get(key, CacheType.CITIZEN,
+                    () -> loadFromDataCenter(originId, destinationId));
+            if (info != null) {
+                results[i] = info;
+                cached++;
+                continue;
+            }
+            
+            CompletableFuture<CitizenInformation> pending = new CompletableFuture<>();
+            CompletableFuture<CitizenInformation> existing = inFlight.putIfAbsent(key, pending);
+            if (existing != null) {
+                coalescedRequests.increment();
+                misses.put(key, existing);
+            } else {
+                misses.put(key, pending);
+                toFetch.put(key, pairs[i]);
+            }
+        }
+        
+        System.out.println("[RequestRouter] Batch of " + pairs.length + " pairs: " +
+                cached + " cached, " + toFetch.size() + " fetched from DataCenter");
+        
+        if (!toFetch.isEmpty()) {
+            originatingRequests.add(toFetch.size());
+            fetchCitizenInformationBatch(toFetch, misses);
+        }
+        
+        return CompletableFuture.allOf(misses.values().toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < pairs.length; i++) {
+                if (results[i] == null) {
+                    results[i] = misses.get(citizenCacheKey(pairs[i].originId, pairs[i].destinationId)).join();
+                }
+                results[i] = withRemainingTtl(results[i], now);
+            }
+            return results;
+        });
+    }
+    
+    private CompletableFuture<CitizenInformation> lookup(long originId, long destinationId) {
+        String key = citizenCacheKey(originId, destinationId);
         
-        // Check cache first
-        CitizenInformation info = cacheManager.get(key);
+        // Check cache first (may serve a stale value while it is refreshed)
+        CitizenInformation info = cacheManager.get(key, CacheType.CITIZEN,
+                () -> loadFromDataCenter(originId, destinationId));
         if (info != null) {
             System.out.println("Cache HIT for key: " + key);
-            return info;
+            return CompletableFuture.completedFuture(info);
         }
         
         System.out.println("Cache MISS for key: " + key);
         
+        // Join the query already in flight for this key, if any
+        CompletableFuture<CitizenInformation> pending = new CompletableFuture<>();
+        CompletableFuture<CitizenInformation> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            coalescedRequests.increment();
+            System.out.println("Coalesced request for key: " + key);
+            return existing;
+        }
+        
+        originatingRequests.increment();
+        fetchCitizenInformation(key, originId, destinationId).whenComplete((result, error) -> {
+            // Cached (if successful) before removal, so later requests hit the cache
+            inFlight.remove(key, pending);
+            pending.complete(result != null ? result : errorInformation("Error: DataCenter request failed"));
+        });
+        return pending;
+    }
+    
+    private CompletableFuture<CitizenInformation> fetchCitizenInformation(String key, long originId, long destinationId) {
         // Query DataCenter via ICE
-        if (dataCenterClient == null) {
+        DataCenterClient client = dataCenterClient;
+        if (client == null) {
             System.err.println("[RequestRouter] DataCenter client not initialized!");
-            CitizenInformation errorInfo = new CitizenInformation();
-            errorInfo.message = "Error: DataCenter not available";
-            return errorInfo;
+            return CompletableFuture.completedFuture(errorInformation("Error: DataCenter not available"));
         }
         
-        try {
-            CitizenInfoResponse iceResponse = dataCenterClient.getCitizenInformation(originId, destinationId);
-            
-            // Convert ICE response to CitizenInformation
-            CitizenInformation dcInfo = new CitizenInformation();
-            dcInfo.message = iceResponse.message;
-            
-            // Store in cache for future requests
-            cacheManager.put(key, dcInfo, CacheType.CITIZEN);
-            
-            return dcInfo;
-            
-        } catch (Exception e) {
-            System.err.println("[RequestRouter] Error querying DataCenter: " + e.getMessage());
-            CitizenInformation errorInfo = new CitizenInformation();
-            errorInfo.message = "Error: " + e.getMessage();
-            return errorInfo;
+        long loadStart = cacheManager.beginLoad();
+        return client.getCitizenInformationAsync(originId, destinationId).thenApply(response -> {
+            try {
+                CitizenInformation dcInfo = toCitizenInformation(response);
+                
+                // Store in cache for future requests (unless invalidated meanwhile)
+                cacheManager.put(key, dcInfo, CacheType.CITIZEN, loadStart);
+                
+                return dcInfo;
+                
+            } catch (Exception e) {
+                System.err.println("[RequestRouter] Error querying DataCenter: " + e.getMessage());
+                return errorInformation("Error: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Fetch the given pairs from DataCenter in one call, cache the answers
+     * and complete their in-flight futures.
+     */
+    private void fetchCitizenInformationBatch(Map<String, StopPair> toFetch,
+                                              Map<String, CompletableFuture<CitizenInformation>> futures) {
+        String[] keys = toFetch.keySet().toArray(new String[0]);
+        CompletableFuture<CitizenInfoResponse[]> responses;
+        long loadStart = cacheManager.beginLoad();
+        
+        DataCenterClient client = dataCenterClient;
+        if (client == null) {
+            System.err.println("[RequestRouter] DataCenter client not initialized!");
+            responses = CompletableFuture.completedFuture(new CitizenInfoResponse[0]);
+        } else {
+            CitizenInfoRequest[] requests = new CitizenInfoRequest[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                StopPair pair = toFetch.get(keys[i]);
+                requests[i] = new CitizenInfoRequest(pair.originId, pair.destinationId);
+            }
+            responses = client.getCitizenInformationBatchAsync(requests);
         }
+        
+        responses.whenComplete((answers, error) -> {
+            for (int i = 0; i < keys.length; i++) {
+                CitizenInformation result;
+                if (answers == null || i >= answers.length) {
+                    result = errorInformation("Error: DataCenter request failed");
+                } else {
+                    try {
+                        result = toCitizenInformation(answers[i]);
+                        cacheManager.put(keys[i], result, CacheType.CITIZEN, loadStart);
+                    } catch (Exception e) {
+                        result = errorInformation("Error: " + e.getMessage());
+                    }
+                }
+                // Cached (if successful) before removal, so later requests hit the cache
+                CompletableFuture<CitizenInformation> pending = futures.get(keys[i]);
+                inFlight.remove(keys[i], pending);
+                pending.complete(result);
+            }
+        });
+    }
+    
+    /**
+     * Query DataCenter for a stop pair, without touching the cache.
+     * Also used by the cache to refresh entries in the background.
+     */
+    private CitizenInformation loadFromDataCenter(long originId, long destinationId) {
+        DataCenterClient client = dataCenterClient;
+        if (client == null) {
+            throw new IllegalStateException("DataCenter client not initialized");
+        }
+        return toCitizenInformation(client.getCitizenInformation(originId, destinationId));
+    }
+    
+    /**
+     * Convert a DataCenter answer to a cacheable CitizenInformation.
+     * @throws IllegalStateException if the answer reports a failed query
+     */
+    private static CitizenInformation toCitizenInformation(CitizenInfoResponse iceResponse) {
+        if (iceResponse.message != null && iceResponse.message.startsWith("Error querying DataCenter")) {
+            // DataCenterClient reports failures in the message; don't let them replace cached answers
+            throw new IllegalStateException(iceResponse.message);
+        }
+        
+        // Convert ICE response to CitizenInformation
+        CitizenInformation dcInfo = new CitizenInformation();
+        dcInfo.message = iceResponse.message;
+        dcInfo.timestamp = System.currentTimeMillis();
+        dcInfo.ttlMillis = ConfigLoader.getCacheTTLMillis(CacheType.CITIZEN);
+        if (iceResponse.ttlMillis > 0) {
+            // Live answers from DataCenter only hold until its statistics window slides
+            dcInfo.ttlMillis = Math.min(dcInfo.ttlMillis, iceResponse.ttlMillis);
+        }
+        return dcInfo;
+    }
+    
+    /**
+     * Cache key of the travel time between two stops.
+     */
+    public static String citizenCacheKey(long originId, long destinationId) {
+        return originId + "-" + destinationId;
+    }
+    
+    /**
+     * Copy an answer for a Citizen, with the time left of its TTL (0 for
+     * errors and stale answers). The cached instance is shared between
+     * requests, so it is never modified.
+     */
+    private static CitizenInformation withRemainingTtl(CitizenInformation info, long now) {
+        long remaining = info.ttlMillis > 0 ? Math.max(0L, info.timestamp + info.ttlMillis - now) : 0L;
+        return new CitizenInformation(info.message, info.timestamp, remaining);
+    }
+    
+    private static CitizenInformation errorInformation(String message) {
+        CitizenInformation errorInfo = new CitizenInformation();
+        errorInfo.message = message;
+        return errorInfo;
+    }
+    
+    /**
+     * Get the number of cache misses that queried DataCenter.
+     */
+    public long getOriginatingRequests() {
+        return originatingRequests.sum();
+    }
+    
+    /**
+     * Get the number of cache misses served by another request's DataCenter query.
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.sum();
     }
     
     /**
@@ -94,6 +324,9 @@ public class RequestRouter {
         try {
             dataCenterClient.submitTravelTime(submission);
             System.out.println("[RequestRouter] Travel time submitted successfully");
+            
+            // Drop the old answer now; DataCenter's invalidation event covers the other ProxyServers
+            cacheManager.invalidate(citizenCacheKey(submission.originStopId, submission.destinationStopId));
         } catch (Exception e) {
             System.err.println("[RequestRouter] Error submitting travel time: " + e.getMessage());
             e.printStackTrace();
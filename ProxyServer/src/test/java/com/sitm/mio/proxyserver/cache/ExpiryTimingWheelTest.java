@@ -0,0 +1,77 @@
+package com.sitm.mio.proxyserver.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Entries due at the edges of each wheel (63/64 ticks for the first,
+ * 4095/4096 for the second, 262144 past the last) must fire on their own
+ * tick, whatever the phase of the wheel when they were scheduled.
+ */
+class ExpiryTimingWheelTest {
+
+    private static final long TICK = 1000L;
+    private static final long[] DELAYS = {
+        1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 4159, 4160, 262143, 262144, 262145, 300000
+    };
+
+    @Test
+    void firesAtLevelBoundariesFromTickZero() {
+        assertFiresOnTime(0L);
+    }
+
+    @Test
+    void firesAtLevelBoundariesFromMidWheel() {
+        assertFiresOnTime(37L);
+    }
+
+    @Test
+    void firesAtLevelBoundariesJustBeforeCascade() {
+        assertFiresOnTime(4095L);
+    }
+
+    @Test
+    void cancelledEntryNeverFires() {
+        ExpiryTimingWheel wheel = new ExpiryTimingWheel(TICK, 0L);
+        wheel.schedule("a", entry(0L, 64));
+        wheel.schedule("b", entry(0L, 64));
+        wheel.cancel("a");
+
+        Map<String, Long> fired = new HashMap<>();
+        wheel.advance(100 * TICK, (key, entry) -> fired.put(key, 0L));
+
+        assertEquals(1, fired.size());
+        assertTrue(fired.containsKey("b"));
+        assertEquals(0, wheel.size());
+    }
+
+    private static void assertFiresOnTime(long startTick) {
+        long start = startTick * TICK;
+        ExpiryTimingWheel wheel = new ExpiryTimingWheel(TICK, start);
+        for (long delay : DELAYS) {
+            wheel.schedule("k" + delay, entry(start, delay));
+        }
+
+        Map<String, Long> fired = new HashMap<>();
+        long last = DELAYS[DELAYS.length - 1];
+        for (long tick = 1; tick <= last; tick++) {
+            long now = tick;
+            wheel.advance(start + tick * TICK, (key, entry) -> fired.put(key, now));
+        }
+
+        for (long delay : DELAYS) {
+            long firedAt = fired.getOrDefault("k" + delay, -1L);
+            assertEquals(delay, firedAt, "tick of k" + delay);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    private static CacheEntry entry(long now, long delayTicks) {
+        return new CacheEntry("value", now, CacheType.CITIZEN, delayTicks * TICK, 0L);
+    }
+}
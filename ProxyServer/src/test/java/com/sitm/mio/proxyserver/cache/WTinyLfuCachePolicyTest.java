@@ -0,0 +1,115 @@
+package com.sitm.mio.proxyserver.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Drives the policy the way CacheStorage does (insert, then evict the
+ * selected candidates until the cache fits) and checks that keys seen
+ * once never push out keys that keep being read.
+ */
+class WTinyLfuCachePolicyTest {
+
+    private static final long TTL = 60_000L;
+
+    @Test
+    void oneHitKeyNeverEvictsFrequentKey() {
+        int capacity = 100;
+        int hot = 50;
+        WTinyLfuCachePolicy policy = new WTinyLfuCachePolicy(TTL, capacity);
+        Set<String> cache = new HashSet<>();
+
+        for (int i = 0; i < hot; i++) {
+            insert(policy, cache, capacity, "hot" + i);
+        }
+        for (int i = hot; i < capacity; i++) {
+            insert(policy, cache, capacity, "cold" + i);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < hot; i++) {
+                access(policy, cache, "hot" + i);
+            }
+        }
+
+        for (int i = 0; i < 10 * capacity; i++) {
+            insert(policy, cache, capacity, "once" + i);
+            assertTrue(cache.containsAll(hotKeys(hot)), "hot key evicted by once" + i);
+        }
+        assertEquals(capacity, cache.size());
+    }
+
+    @Test
+    void scanOfOneHitKeysKeepsWorkingSet() {
+        int capacity = 1000;
+        int hot = 200;
+        WTinyLfuCachePolicy policy = new WTinyLfuCachePolicy(TTL, capacity);
+        Set<String> cache = new HashSet<>();
+        int next = 0;
+
+        // Long enough for the sketch to age several times
+        for (int round = 0; round < 500; round++) {
+            for (int i = 0; i < hot; i++) {
+                String key = "hot" + i;
+                if (!access(policy, cache, key)) {
+                    insert(policy, cache, capacity, key);
+                }
+            }
+            for (int i = 0; i < 50; i++) {
+                insert(policy, cache, capacity, "once" + next++);
+            }
+            if (round > 0) {
+                assertTrue(cache.containsAll(hotKeys(hot)), "hot key evicted in round " + round);
+            }
+        }
+        assertEquals(capacity, cache.size());
+    }
+
+    @Test
+    void keyReadOnceMoreOutlivesOneHitKeys() {
+        int capacity = 10;
+        WTinyLfuCachePolicy policy = new WTinyLfuCachePolicy(TTL, capacity);
+        Set<String> cache = new HashSet<>();
+
+        for (int i = 0; i < capacity; i++) {
+            insert(policy, cache, capacity, "k" + i);
+        }
+        access(policy, cache, "k1");
+        for (int i = 0; i < 100; i++) {
+            insert(policy, cache, capacity, "once" + i);
+        }
+
+        assertTrue(cache.contains("k1"));
+        assertFalse(cache.contains("once0"));
+    }
+
+    private static void insert(WTinyLfuCachePolicy policy, Set<String> cache, int capacity, String key) {
+        cache.add(key);
+        policy.recordInsertion(key, new CacheEntry("value", 0L, CacheType.CITIZEN, TTL));
+        while (cache.size() > capacity) {
+            String victim = policy.selectEvictionCandidate();
+            assertTrue(cache.remove(victim), "victim not cached: " + victim);
+        }
+    }
+
+    private static boolean access(WTinyLfuCachePolicy policy, Set<String> cache, String key) {
+        if (!cache.contains(key)) {
+            return false;
+        }
+        policy.recordAccess(key, null);
+        return true;
+    }
+
+    private static Set<String> hotKeys(int count) {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            keys.add("hot" + i);
+        }
+        return keys;
+    }
+}